@@ -0,0 +1,107 @@
+package ftputil.benchmarks;
+
+import ftputil.FtpClient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads of a whole remote directory with different file-size distributions.
+ * Content is discarded, so only the transfer path of the client is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class DownloadBenchmark {
+
+    /**
+     * Files in the remote directory:
+     * <ul>
+     *     <li>small - 50 files of 4 KB</li>
+     *     <li>large - 4 files of 8 MB</li>
+     *     <li>mixed - 100 files from 1 KB to 1 MB, a few up to 8 MB</li>
+     * </ul>
+     */
+    @Param({"small", "large", "mixed"})
+    public String distribution;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"0", "262144"})
+    public int bufferSize;
+
+    private FakeServer server;
+    private FtpClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new FakeServer();
+
+        switch (distribution) {
+            case "small":
+                for (int i = 0; i < 50; i++) {
+                    server.addFile("small_" + i, 4 * 1024);
+                }
+                break;
+            case "large":
+                for (int i = 0; i < 4; i++) {
+                    server.addFile("large_" + i, 8 * 1024 * 1024);
+                }
+                break;
+            case "mixed":
+                for (int i = 0; i < 100; i++) {
+                    // mostly small files and a long tail of larger ones
+                    int size = i % 25 == 0 ? 8 * 1024 * 1024 : 1024 << (i % 11);
+                    server.addFile("mixed_" + i, size);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+
+        server.start();
+
+        client = server.connect();
+        client.setThreads(threads);
+        client.setBufferSize(bufferSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void downloadAllFiles(Blackhole blackhole) throws IOException {
+        client.downloadAllFiles(FakeServer.REMOTE_DIR
+                , (Path file) -> new DiscardingOutputStream(blackhole)
+                , blackhole::consume);
+    }
+
+    private static class DiscardingOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        DiscardingOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ftputil.benchmarks;
+
+import ftputil.FtpClient;
+import org.apache.commons.net.ftp.FTPClient;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * In-process FTP server with a directory of generated files,
+ * set up the same way as in the integration tests.
+ */
+class FakeServer implements AutoCloseable {
+    static final URI SERVER = URI.create("localhost");
+    static final Path REMOTE_DIR = Path.of("/pub/data");
+
+    private final FakeFtpServer fakeFtpServer = new FakeFtpServer();
+    private final FileSystem fileSystem = new UnixFakeFileSystem();
+    // content is the same for every run of a benchmark
+    private final Random random = new Random(42);
+
+    FakeServer() {
+        // setup default account
+        UserAccount anonymous = new UserAccount();
+        anonymous.setPasswordRequiredForLogin(false);
+        anonymous.setUsername("anonymous");
+        anonymous.setHomeDirectory("/");
+
+        fakeFtpServer.addUserAccount(anonymous);
+
+        fileSystem.add(new DirectoryEntry(REMOTE_DIR.toString()));
+
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.setSystemName("Unix");
+        // any free port
+        fakeFtpServer.setServerControlPort(0);
+    }
+
+    /**
+     * Adds a file of random content to the remote directory.
+     */
+    FakeServer addFile(String name, int size) {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+
+        FileEntry entry = new FileEntry(REMOTE_DIR.resolve(name).toString());
+        entry.setContents(content);
+        fileSystem.add(entry);
+
+        return this;
+    }
+
+    FakeServer start() {
+        fakeFtpServer.start();
+        return this;
+    }
+
+    /**
+     * Opens a new logged-in session to the server.
+     */
+    FtpClient connect() throws IOException {
+        return FtpClient.getClient(SERVER, new FTPClient()
+                , fakeFtpServer.getServerControlPort(), "anonymous", "");
+    }
+
+    @Override
+    public void close() {
+        fakeFtpServer.stop();
+    }
+}
@@ -0,0 +1,61 @@
+package ftputil.benchmarks;
+
+import ftputil.FtpClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing of remote directories of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class ListingBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int files;
+
+    @Param({"100", "1000"})
+    public int listPageSize;
+
+    private FakeServer server;
+    private FtpClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new FakeServer();
+        for (int i = 0; i < files; i++) {
+            server.addFile(String.format("file_%05d.json", i), 64);
+        }
+        server.start();
+
+        client = server.connect();
+        client.setListPageSize(listPageSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public List<FTPFile> listFiles() throws IOException {
+        return client.listFiles(FakeServer.REMOTE_DIR);
+    }
+
+    @Benchmark
+    public void streamFiles(Blackhole blackhole) throws IOException {
+        try (var entries = client.streamFiles(FakeServer.REMOTE_DIR)) {
+            entries.forEach(blackhole::consume);
+        }
+    }
+}
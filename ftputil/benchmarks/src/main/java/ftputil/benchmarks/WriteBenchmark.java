@@ -0,0 +1,70 @@
+package ftputil.benchmarks;
+
+import ftputil.LocalOutputProvider;
+import ftputil.Manifest;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Writes of downloaded content into the local directory,
+ * chunk by chunk the way transfers hand it over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class WriteBenchmark {
+
+    @Param({"4096", "1048576"})
+    public int fileSize;
+
+    @Param({"0", "262144"})
+    public int bufferSize;
+
+    @Param({"false", "true"})
+    public boolean manifest;
+
+    private final Path file = Path.of("file.bin");
+    private final byte[] chunk = new byte[8 * 1024];
+
+    private Path localDir;
+    private LocalOutputProvider provider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(chunk);
+
+        localDir = Files.createTempDirectory("ftputil-bench");
+
+        provider = new LocalOutputProvider(localDir);
+        provider.setBufferSize(bufferSize);
+        if (manifest) {
+            provider.setManifest(Manifest.empty(localDir));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(localDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        try (var out = provider.open(file, 0)) {
+            for (int written = 0; written < fileSize; written += chunk.length) {
+                out.write(chunk, 0, Math.min(chunk.length, fileSize - written));
+            }
+        }
+    }
+}
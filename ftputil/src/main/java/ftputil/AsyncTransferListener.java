@@ -0,0 +1,176 @@
+package ftputil;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers events to another listener from a thread of its own, so that
+ * slow listeners such as console output do not hold up the transfers.
+ * <p>
+ * Events are delivered in the order they are published and publishing
+ * never waits for the listener. Byte progress events take up to a fixed
+ * number of places in the queue and are dropped beyond that, since later
+ * ones supersede them. All other events are kept, there are only a few
+ * of them per file. Close the listener to deliver the remaining events
+ * and stop the delivery thread.
+ */
+public class AsyncTransferListener implements TransferListener, Closeable {
+    // tells the delivery thread that there are no more events
+    private static final Runnable STOP = () -> {};
+
+    private final TransferListener listener;
+    private final BlockingQueue<Runnable> events = new LinkedBlockingQueue<>();
+    // byte progress events waiting for delivery, at most capacity
+    private final int capacity;
+    private final AtomicInteger progressQueued = new AtomicInteger();
+    private final Thread dispatcher;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    public AsyncTransferListener(TransferListener listener, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Event buffer capacity should be positive: " + capacity);
+        }
+
+        this.listener = listener;
+        this.capacity = capacity;
+
+        dispatcher = new Thread(this::dispatch, "ftputil-events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Number of byte progress events dropped because too many were waiting for delivery.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void sessionOpened(URI server, long connectNanos, long loginNanos) {
+        publish(() -> listener.sessionOpened(server, connectNanos, loginNanos));
+    }
+
+    @Override
+    public void listed(Path remoteDir, int entries, long nanos) {
+        publish(() -> listener.listed(remoteDir, entries, nanos));
+    }
+
+    @Override
+    public void fileStarted(Path file, int index, int total) {
+        publish(() -> listener.fileStarted(file, index, total));
+    }
+
+    @Override
+    public void firstByte(Path file, long nanos) {
+        publish(() -> listener.firstByte(file, nanos));
+    }
+
+    @Override
+    public void bytesTransferred(Path file, long bytes, long size) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (progressQueued.incrementAndGet() > capacity) {
+            progressQueued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+
+        events.offer(() -> {
+            progressQueued.decrementAndGet();
+            listener.bytesTransferred(file, bytes, size);
+        });
+    }
+
+    @Override
+    public void fileCompleted(Path file, long bytes, long nanos) {
+        publish(() -> listener.fileCompleted(file, bytes, nanos));
+    }
+
+    @Override
+    public void fileVerified(Path file, ChecksumAlgorithm algorithm) {
+        publish(() -> listener.fileVerified(file, algorithm));
+    }
+
+    @Override
+    public void polled(Path remoteDir, int changed, int removed, long nextPollNanos) {
+        publish(() -> listener.polled(remoteDir, changed, removed, nextPollNanos));
+    }
+
+    @Override
+    public void fileSkipped(Path file, String reason) {
+        publish(() -> listener.fileSkipped(file, reason));
+    }
+
+    @Override
+    public void fileRetried(Path file, String reason) {
+        publish(() -> listener.fileRetried(file, reason));
+    }
+
+    @Override
+    public void fileFailed(Path file, String reason) {
+        publish(() -> listener.fileFailed(file, reason));
+    }
+
+    @Override
+    public void message(String message) {
+        publish(() -> listener.message(message));
+    }
+
+    /**
+     * Waits until the events published so far are delivered and stops the delivery thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            events.offer(STOP);
+            dispatcher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish(Runnable event) {
+        if (closed) {
+            return;
+        }
+
+        // the queue is unbounded, the transfer threads never wait here
+        events.offer(event);
+    }
+
+    private void dispatch() {
+        while (true) {
+            Runnable event;
+            try {
+                event = events.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            if (event == STOP) {
+                return;
+            }
+
+            try {
+                event.run();
+            } catch (RuntimeException ex) {
+                // a failing listener should not stop the delivery of later events
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package ftputil;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Jobs of a batch run read from a properties file, so that one process
+ * mirrors many directories instead of one JVM launch per directory.
+ * <p>
+ * Keys are the long command line options. Keys without a prefix apply to
+ * every job, keys prefixed with the name of a job listed under {@code jobs}
+ * apply to that job only. Flags take {@code true} or {@code false},
+ * options that may be repeated take values separated by whitespace:
+ * <pre>
+ * server = ftp.ebi.ac.uk
+ * remotedir = /pub/databases/opentargets/platform/latest/output/etl/json/
+ * localdir = ./data/
+ * threads = 4
+ *
+ * jobs = diseases targets
+ * diseases.dir = diseases
+ * targets.dir = targets
+ * targets.sync = true
+ * targets.include = *.json *.parquet
+ *
+ * batch.sessions = 8
+ * max-rate = 10M
+ * </pre>
+ * {@code batch.sessions} is the number of sessions all jobs share
+ * (default 4) and {@code batch.sessions-per-host} the limit for any one
+ * server (default the same). {@code max-rate} and {@code rate-schedule}
+ * limit the bandwidth of all jobs together and cannot be set per job.
+ * Jobs cannot use {@code watch}, a batch runs every job once.
+ */
+public class BatchConfig {
+    static final String JOBS_KEY = "jobs";
+    static final String SESSIONS_KEY = "batch.sessions";
+    static final String SESSIONS_PER_HOST_KEY = "batch.sessions-per-host";
+    static final int DEFAULT_SESSIONS = 4;
+
+    // options whose values are split into several
+    private static final Set<String> REPEATABLE = Set.of("include", "exclude");
+    // options that apply to the batch as a whole instead of to every job
+    private static final String MAX_RATE_KEY = "max-rate";
+    private static final String RATE_SCHEDULE_KEY = "rate-schedule";
+    private static final Set<String> BATCH_WIDE = Set.of(MAX_RATE_KEY, RATE_SCHEDULE_KEY);
+
+    private final List<Job> jobs;
+    private final int sessions;
+    private final int sessionsPerHost;
+    private final long maxRate;
+    private final RateSchedule rateSchedule;
+
+    private BatchConfig(List<Job> jobs, int sessions, int sessionsPerHost
+            , long maxRate, RateSchedule rateSchedule) {
+        this.jobs = jobs;
+        this.sessions = sessions;
+        this.sessionsPerHost = sessionsPerHost;
+        this.maxRate = maxRate;
+        this.rateSchedule = rateSchedule;
+    }
+
+    /**
+     * Batch file given on the command line, null for a single job.
+     */
+    static Path batchFile(String... args) throws ParseException {
+        Option batchOp = new CliParser().getBatchOption();
+
+        // stops at the first option of a single job
+        CommandLine line = new DefaultParser().parse(new Options().addOption(batchOp), args, true);
+
+        return line.hasOption(batchOp) ? Path.of(line.getOptionValue(batchOp)) : null;
+    }
+
+    public static BatchConfig load(Path file) throws IOException, ParseException {
+        Properties properties = new Properties();
+        try (var reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        return parse(properties);
+    }
+
+    /**
+     * Reads the jobs and checks their options the way the command line does.
+     */
+    public static BatchConfig parse(Properties properties) throws ParseException {
+        String names = properties.getProperty(JOBS_KEY, "").trim();
+        if (names.isEmpty()) {
+            throw new ParseException("No jobs listed under: " + JOBS_KEY);
+        }
+
+        Set<String> jobNames = new LinkedHashSet<>(List.of(names.split("[\\s,]+")));
+
+        Map<String, Option> options = new HashMap<>();
+        for (Option option : new CliParser().getOptions()) {
+            options.put(option.getLongOpt(), option);
+        }
+
+        // a typo would otherwise go unnoticed
+        for (String key : properties.stringPropertyNames()) {
+            if (key.equals(JOBS_KEY) || key.equals(SESSIONS_KEY) || key.equals(SESSIONS_PER_HOST_KEY)) {
+                continue;
+            }
+
+            int dot = key.indexOf('.');
+            if (dot >= 0 && !jobNames.contains(key.substring(0, dot))) {
+                throw new ParseException("Unknown job in key: " + key);
+            }
+            if (!options.containsKey(key.substring(dot + 1))) {
+                throw new ParseException("Unknown option in key: " + key);
+            }
+            if (dot >= 0 && BATCH_WIDE.contains(key.substring(dot + 1))) {
+                throw new ParseException("Option applies to the whole batch: " + key);
+            }
+        }
+
+        List<Job> jobs = new ArrayList<>();
+        for (String name : jobNames) {
+            CliParser cli = new CliParser();
+            try {
+                cli.parse(args(properties, name, options.values()));
+            } catch (ParseException ex) {
+                throw new ParseException("Job " + name + ": " + ex.getMessage());
+            }
+            // a watching job never ends, and neither would the batch
+            if (cli.getWatch() > 0) {
+                throw new ParseException("Job " + name + ": watch mode cannot be used in a batch");
+            }
+            jobs.add(new Job(name, cli));
+        }
+
+        int sessions = parsePositiveInt(properties, SESSIONS_KEY, DEFAULT_SESSIONS);
+        int sessionsPerHost = parsePositiveInt(properties, SESSIONS_PER_HOST_KEY, sessions);
+
+        long maxRate = 0;
+        RateSchedule rateSchedule = null;
+        String key = MAX_RATE_KEY;
+        try {
+            if (properties.getProperty(MAX_RATE_KEY) != null) {
+                maxRate = Sizes.parse(properties.getProperty(MAX_RATE_KEY));
+            }
+            key = RATE_SCHEDULE_KEY;
+            if (properties.getProperty(RATE_SCHEDULE_KEY) != null) {
+                rateSchedule = RateSchedule.parse(properties.getProperty(RATE_SCHEDULE_KEY));
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Key " + key + ": " + ex.getMessage());
+        }
+
+        return new BatchConfig(Collections.unmodifiableList(jobs), sessions, sessionsPerHost
+                , maxRate, rateSchedule);
+    }
+
+    // command line of the job, its own keys take precedence over the shared ones
+    private static String[] args(Properties properties, String job, Iterable<Option> options)
+            throws ParseException {
+        List<String> args = new ArrayList<>();
+
+        for (Option option : options) {
+            String key = option.getLongOpt();
+            if (BATCH_WIDE.contains(key)) {
+                continue;
+            }
+
+            String value = properties.getProperty(job + "." + key, properties.getProperty(key));
+            if (value == null) {
+                continue;
+            }
+            value = value.trim();
+
+            if (!option.hasArg()) {
+                if (!value.equals("true") && !value.equals("false")) {
+                    throw new ParseException("Option " + key + " should be true or false: " + value);
+                }
+                if (value.equals("true")) {
+                    args.add("--" + key);
+                }
+            } else if (REPEATABLE.contains(key)) {
+                for (String part : value.split("\\s+")) {
+                    args.add("--" + key);
+                    args.add(part);
+                }
+            } else {
+                args.add("--" + key);
+                args.add(value);
+            }
+        }
+
+        return args.toArray(String[]::new);
+    }
+
+    private static int parsePositiveInt(Properties properties, String key, int defaultValue)
+            throws ParseException {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+
+        throw new ParseException("Key " + key + " should be a positive number: " + value);
+    }
+
+    public List<Job> getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Sessions all jobs share at a time.
+     */
+    public int getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Sessions all jobs share at a time on any one server.
+     */
+    public int getSessionsPerHost() {
+        return sessionsPerHost;
+    }
+
+    /**
+     * Bytes per second of all jobs together, 0 for unlimited.
+     */
+    public long getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * Rates of all jobs together by time of day, null for none.
+     */
+    public RateSchedule getRateSchedule() {
+        return rateSchedule;
+    }
+
+    /**
+     * Named job with its options parsed as if given on the command line.
+     */
+    public static class Job {
+        private final String name;
+        private final CliParser options;
+
+        Job(String name, CliParser options) {
+            this.name = name;
+            this.options = options;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public CliParser getOptions() {
+            return options;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs the jobs of a batch in one process.
+ * <p>
+ * The jobs share a pool of logged-in sessions limited per server and in
+ * total, so that later jobs take over the sessions of earlier ones instead
+ * of logging in again. Every job starts with a session of its own and takes
+ * additional ones while the limits allow. One session of the total is kept
+ * free of job starts for the transfers of the running jobs.
+ * A bandwidth limit of the batch is one limiter shared by all jobs.
+ * A report of every job and of the whole batch is printed at the end.
+ */
+class BatchRun {
+    // idle sessions are kept for the next job this long
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    private final BatchConfig config;
+    private final Supplier<FTPClient> ftpFactory;
+
+    BatchRun(BatchConfig config) {
+        this(config, FTPClient::new);
+    }
+
+    BatchRun(BatchConfig config, Supplier<FTPClient> ftpFactory) {
+        this.config = config;
+        this.ftpFactory = ftpFactory;
+    }
+
+    /**
+     * Runs every job and returns how they went, in the order of the batch file.
+     */
+    List<Result> run() {
+        long started = System.nanoTime();
+
+        List<Result> results = new ArrayList<>();
+        RateLimiter limiter = rateLimiter();
+
+        try (var pool = new FtpSessionPool(ftpFactory
+                , config.getSessionsPerHost(), config.getSessions(), IDLE_TIMEOUT)) {
+
+            ExecutorService executor = Executors.newFixedThreadPool
+                    (Math.min(config.getJobs().size(), Math.max(1, config.getSessions() - 1)));
+
+            try {
+                List<Future<Result>> jobs = new ArrayList<>();
+                for (var job : config.getJobs()) {
+                    jobs.add(executor.submit(() -> run(job, pool, limiter)));
+                }
+
+                for (int i = 0; i < jobs.size(); i++) {
+                    try {
+                        results.add(jobs.get(i).get());
+                    } catch (ExecutionException ex) {
+                        results.add(new Result(config.getJobs().get(i).getName()
+                                , null, ex.getCause().getMessage(), 0));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            unregister(limiter);
+        }
+
+        printReport(results, System.nanoTime() - started);
+
+        return results;
+    }
+
+    // one limiter for all jobs, null without a limit
+    private RateLimiter rateLimiter() {
+        if (config.getMaxRate() == 0 && config.getRateSchedule() == null) {
+            return null;
+        }
+
+        var limiter = new RateLimiter(config.getMaxRate());
+        limiter.setSchedule(config.getRateSchedule());
+
+        // the rate can be changed from the console for the whole batch
+        if (config.getJobs().stream().anyMatch(job -> job.getOptions().isJmx())) {
+            try {
+                limiter.register("batch");
+            } catch (JMException ex) {
+                System.out.println("Unable to register JMX rate limiter: " + ex.getMessage());
+            }
+        }
+
+        return limiter;
+    }
+
+    private static void unregister(RateLimiter limiter) {
+        if (limiter == null) {
+            return;
+        }
+
+        try {
+            limiter.unregister();
+        } catch (JMException ex) {
+            System.out.println("Unable to unregister JMX rate limiter: " + ex.getMessage());
+        }
+    }
+
+    private Result run(BatchConfig.Job job, FtpSessionPool pool, RateLimiter limiter) {
+        long started = System.nanoTime();
+
+        FtpUtil utility = FtpUtil.of(job.getOptions());
+        utility.setName(job.getName());
+        utility.setSessionPool(pool);
+        utility.setSharedRateLimiter(limiter);
+
+        try {
+            Files.createDirectories(utility.getFullLocalPath());
+
+            utility.run();
+        } catch (IOException ex) {
+            return new Result(job.getName(), utility.getMetrics()
+                    , "Unable to create local directory: " + ex.getMessage(), System.nanoTime() - started);
+        } catch (RuntimeException ex) {
+            // e.g. local files that cannot be written, the other jobs carry on
+            return new Result(job.getName(), utility.getMetrics()
+                    , ex.getMessage(), System.nanoTime() - started);
+        }
+
+        return new Result(job.getName(), utility.getMetrics()
+                , utility.getFailure(), System.nanoTime() - started);
+    }
+
+    private void printReport(List<Result> results, long nanos) {
+        long files = 0;
+        long bytes = 0;
+        long failedFiles = 0;
+        long failedJobs = 0;
+
+        System.out.println();
+        System.out.format("batch: %d jobs, %d sessions", results.size(), config.getSessions());
+        System.out.println();
+
+        for (var result : results) {
+            if (result.getFailure() != null) {
+                failedJobs++;
+                System.out.println("\t[" + result.getName() + "] failed: " + result.getFailure());
+                continue;
+            }
+
+            System.out.format("\t[%s] %d files, %d bytes, failed: %d files, %.0f (ms)"
+                    , result.getName(), result.getFiles(), result.getBytes()
+                    , result.getFailedFiles(), result.getNanos() * 1e-6);
+            System.out.println();
+
+            files += result.getFiles();
+            bytes += result.getBytes();
+            failedFiles += result.getFailedFiles();
+        }
+
+        System.out.println();
+        System.out.format("total: %d files, %d bytes, %.1f KiB/s, failed: %d files, %d jobs"
+                , files, bytes, nanos > 0 ? bytes * 1e9 / nanos / 1024 : 0
+                , failedFiles, failedJobs);
+        System.out.println();
+        System.out.format("elapsed time: %.0f (ms)", nanos * 1e-6);
+        System.out.println();
+    }
+
+    /**
+     * How a job of the batch went.
+     */
+    static class Result {
+        private final String name;
+        private final TransferMetrics metrics;
+        private final String failure;
+        private final long nanos;
+
+        Result(String name, TransferMetrics metrics, String failure, long nanos) {
+            this.name = name;
+            this.metrics = metrics;
+            this.failure = failure;
+            this.nanos = nanos;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Why the job could not run, null if it did.
+         */
+        String getFailure() {
+            return failure;
+        }
+
+        long getFiles() {
+            return metrics == null ? 0 : metrics.getFilesCompleted();
+        }
+
+        long getBytes() {
+            return metrics == null ? 0 : metrics.getBytes();
+        }
+
+        long getFailedFiles() {
+            return metrics == null ? 0 : metrics.getFilesFailed();
+        }
+
+        long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ftputil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+
+/**
+ * Output stream over a file channel. {@link FtpClient} recognizes it and
+ * writes downloaded content to the channel directly from a direct buffer
+ * instead of going through the stream methods.
+ */
+public class ChannelOutputStream extends OutputStream {
+    private final FileChannel channel;
+    // sees every written buffer, e.g. to compute a checksum on the way
+    private final Consumer<ByteBuffer> observer;
+
+    public ChannelOutputStream(FileChannel channel) {
+        this(channel, null);
+    }
+
+    public ChannelOutputStream(FileChannel channel, Consumer<ByteBuffer> observer) {
+        this.channel = channel;
+        this.observer = observer;
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        write(ByteBuffer.wrap(b, off, len));
+    }
+
+    /**
+     * Writes all remaining bytes of the buffer.
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        if (observer != null) {
+            observer.accept(buffer.duplicate());
+        }
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
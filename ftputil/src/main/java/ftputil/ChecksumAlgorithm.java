@@ -0,0 +1,84 @@
+package ftputil;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksums that downloads can be verified with. The names are the ones
+ * used by the FTP HASH command and by checksum files such as SHA256SUMS.
+ */
+public enum ChecksumAlgorithm {
+    SHA_256("SHA-256"),
+    SHA_1("SHA-1"),
+    MD5("MD5"),
+    CRC32("CRC32"),
+    CRC32C("CRC32C");
+
+    private final String name;
+
+    ChecksumAlgorithm(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Name of a checksum file that lists the checksums of all files
+     * of a directory, e.g. SHA256SUMS.
+     */
+    public String getSumsFileName() {
+        return name.replace("-", "") + "SUMS";
+    }
+
+    /**
+     * Algorithm with the given name (case insensitive, dash optional) or null if unknown.
+     */
+    public static ChecksumAlgorithm forName(String name) {
+        String normalized = name.replace("-", "").toUpperCase(Locale.ROOT);
+
+        for (ChecksumAlgorithm algorithm : values()) {
+            if (algorithm.name.replace("-", "").equals(normalized)) {
+                return algorithm;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * New digest to compute the checksum with. CRC values are
+     * digested as four big-endian bytes, the way they are printed in hex.
+     */
+    public MessageDigest newDigest() {
+        switch (this) {
+            case CRC32:
+                return new ChecksumDigest(name, new CRC32());
+            case CRC32C:
+                return new ChecksumDigest(name, new CRC32C());
+            default:
+                try {
+                    return MessageDigest.getInstance(name);
+                } catch (NoSuchAlgorithmException ex) {
+                    // every Java platform has to support SHA-256, SHA-1 and MD5
+                    throw new IllegalStateException("Checksum algorithm is not available: " + name, ex);
+                }
+        }
+    }
+
+    /**
+     * Lower case hex form of a digest.
+     */
+    public static String toHex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
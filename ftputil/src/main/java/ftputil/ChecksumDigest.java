@@ -0,0 +1,45 @@
+package ftputil;
+
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * {@link MessageDigest} over a 32 bit {@link Checksum}, so that CRC values
+ * can be computed with the same streams as cryptographic hashes.
+ */
+class ChecksumDigest extends MessageDigest {
+    private final Checksum checksum;
+
+    ChecksumDigest(String algorithm, Checksum checksum) {
+        super(algorithm);
+        this.checksum = checksum;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        checksum.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        checksum.update(input, offset, len);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long value = checksum.getValue();
+        checksum.reset();
+
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 4;
+    }
+
+    @Override
+    protected void engineReset() {
+        checksum.reset();
+    }
+}
@@ -0,0 +1,15 @@
+package ftputil;
+
+import java.io.IOException;
+
+/**
+ * Content of a downloaded file does not match the checksum published by the server.
+ * What has been written for the file is discarded before it is thrown.
+ */
+public class ChecksumMismatchException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ChecksumMismatchException(String message) {
+        super(message);
+    }
+}
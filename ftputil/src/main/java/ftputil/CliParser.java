@@ -4,12 +4,37 @@ import org.apache.commons.cli.*;
 
 import java.net.URI;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.stream.Collectors;
 
 public class CliParser {
     private URI server;
     private Path remoteBase;
     private Path localBase;
     private Path dir;
+    private int threads = 1;
+    private boolean resume;
+    private boolean sync;
+    private boolean recursive;
+    private int bufferSize;
+    private int segmentThreshold = 1024;
+    private boolean jmx;
+    private int retries = 3;
+    private int retryBackoff = 1000;
+    private ChecksumAlgorithm verify;
+    private long maxRate;
+    private RateSchedule rateSchedule;
+    private boolean virtualThreads;
+    private boolean atomic;
+    private boolean push;
+    private int watch;
+    private int watchMax = 900;
+    private OutputTransform transform;
+    private RemoteFileFilter fileFilter;
 
     private final Option serverURI = Option.builder()
             .option("s")
@@ -47,6 +72,169 @@ public class CliParser {
             .desc("directory to download files from (relative to remotedir) and to (relative to localdir)")
             .build();
 
+    private final Option threadsOp = Option.builder()
+            .option("t")
+            .longOpt("threads")
+            .argName("threads")
+            .hasArg()
+            .desc("number of parallel ftp sessions to download files with (default 1)")
+            .build();
+
+    private final Option resumeOp = Option.builder()
+            .longOpt("resume")
+            .desc("continue partially downloaded local files instead of downloading them again")
+            .build();
+
+    private final Option syncOp = Option.builder()
+            .longOpt("sync")
+            .desc("download only new or modified files (by size and modification time)")
+            .build();
+
+    private final Option atomicOp = Option.builder()
+            .longOpt("atomic")
+            .desc("write files under a .part name and rename them once complete and verified")
+            .build();
+
+    private final Option pushOp = Option.builder()
+            .longOpt("push")
+            .desc("upload local files changed since the last push to the remote dir instead of downloading")
+            .build();
+
+    // handled before the other options, see BatchConfig
+    private final Option batchOp = Option.builder()
+            .longOpt("batch")
+            .argName("file")
+            .hasArg()
+            .desc("run the jobs of a batch file instead of the options above, see below")
+            .build();
+
+    private final Option watchOp = Option.builder()
+            .longOpt("watch")
+            .argName("seconds")
+            .hasArg()
+            .desc("keep polling the remote dir and download new or changed files, at most this often")
+            .build();
+
+    private final Option watchMaxOp = Option.builder()
+            .longOpt("watch-max")
+            .argName("seconds")
+            .hasArg()
+            .desc("longest time between polls while the remote dir does not change, 900 by default")
+            .build();
+
+    private final Option recursiveOp = Option.builder()
+            .longOpt("recursive")
+            .desc("mirror subdirectories of dir as well")
+            .build();
+
+    private final Option bufferSizeOp = Option.builder()
+            .longOpt("buffer-size")
+            .argName("bytes")
+            .hasArg()
+            .desc("size of transfer buffers, files are written with file channels when set")
+            .build();
+
+    private final Option segmentThresholdOp = Option.builder()
+            .longOpt("segment-threshold")
+            .argName("MiB")
+            .hasArg()
+            .desc("download files of at least this size in ranges over several sessions (default 1024, 0 to disable)")
+            .build();
+
+    private final Option jmxOp = Option.builder()
+            .longOpt("jmx")
+            .desc("publish transfer metrics as a JMX MBean while downloading")
+            .build();
+
+    private final Option retriesOp = Option.builder()
+            .longOpt("retries")
+            .argName("retries")
+            .hasArg()
+            .desc("number of times a failed file is retried on a new connection (default 3)")
+            .build();
+
+    private final Option retryBackoffOp = Option.builder()
+            .longOpt("retry-backoff")
+            .argName("ms")
+            .hasArg()
+            .desc("wait before the first retry, doubled for every next one (default 1000)")
+            .build();
+
+    private final Option verifyOp = Option.builder()
+            .longOpt("verify")
+            .argName("algorithm")
+            .hasArg()
+            .desc("verify downloads against checksums from the server: SHA-256, SHA-1, MD5, CRC32 or CRC32C")
+            .build();
+
+    private final Option maxRateOp = Option.builder()
+            .longOpt("max-rate")
+            .argName("rate")
+            .hasArg()
+            .desc("limit of all transfers together in bytes per second, with K, M or G suffix (default unlimited)")
+            .build();
+
+    private final Option rateScheduleOp = Option.builder()
+            .longOpt("rate-schedule")
+            .argName("windows")
+            .hasArg()
+            .desc("limits for times of the day overriding max-rate, e.g. 08:00-18:00=1M,18:00-20:00=4M")
+            .build();
+
+    private final Option virtualThreadsOp = Option.builder()
+            .longOpt("virtual-threads")
+            .desc("download every file in a virtual thread (Java 21+), with threads as the limit of sessions")
+            .build();
+
+    private final Option transformOp = Option.builder()
+            .longOpt("transform")
+            .argName("transform")
+            .hasArg()
+            .desc("gunzip: decompress .gz files while downloading, gzip: compress other files at the fastest level")
+            .build();
+
+    private final Option includeOp = Option.builder()
+            .longOpt("include")
+            .argName("pattern")
+            .hasArg()
+            .desc("download only files matching the pattern, glob (default) or regex:..., may be repeated")
+            .build();
+
+    private final Option excludeOp = Option.builder()
+            .longOpt("exclude")
+            .argName("pattern")
+            .hasArg()
+            .desc("leave out files and directories matching the pattern, glob or regex:..., may be repeated")
+            .build();
+
+    private final Option minSizeOp = Option.builder()
+            .longOpt("min-size")
+            .argName("size")
+            .hasArg()
+            .desc("leave out files smaller than the size in bytes, with K, M or G suffix")
+            .build();
+
+    private final Option maxSizeOp = Option.builder()
+            .longOpt("max-size")
+            .argName("size")
+            .hasArg()
+            .desc("leave out files larger than the size in bytes, with K, M or G suffix")
+            .build();
+
+    private final Option modifiedAfterOp = Option.builder()
+            .longOpt("modified-after")
+            .argName("time")
+            .hasArg()
+            .desc("leave out files modified before the date (2024-01-31) or UTC time (2024-01-31T12:00:00Z)")
+            .build();
+
+    private final Option modifiedBeforeOp = Option.builder()
+            .longOpt("modified-before")
+            .argName("time")
+            .hasArg()
+            .desc("leave out files modified at or after the date or UTC time")
+            .build();
+
     // define options
 
     private final Options options = new Options();
@@ -56,6 +244,42 @@ public class CliParser {
         options.addOption(remoteBaseOp);
         options.addOption(localBaseOp);
         options.addOption(dirOp);
+        options.addOption(threadsOp);
+        options.addOption(resumeOp);
+        options.addOption(syncOp);
+        options.addOption(atomicOp);
+        options.addOption(pushOp);
+        options.addOption(watchOp);
+        options.addOption(watchMaxOp);
+        options.addOption(recursiveOp);
+        options.addOption(bufferSizeOp);
+        options.addOption(segmentThresholdOp);
+        options.addOption(jmxOp);
+        options.addOption(retriesOp);
+        options.addOption(retryBackoffOp);
+        options.addOption(verifyOp);
+        options.addOption(maxRateOp);
+        options.addOption(rateScheduleOp);
+        options.addOption(virtualThreadsOp);
+        options.addOption(transformOp);
+        options.addOption(includeOp);
+        options.addOption(excludeOp);
+        options.addOption(minSizeOp);
+        options.addOption(maxSizeOp);
+        options.addOption(modifiedAfterOp);
+        options.addOption(modifiedBeforeOp);
+        options.addOption(batchOp);
+    }
+
+    // options a batch job can set
+    Collection<Option> getOptions() {
+        return options.getOptions().stream()
+                .filter(option -> option != batchOp)
+                .collect(Collectors.toList());
+    }
+
+    Option getBatchOption() {
+        return batchOp;
     }
 
     public URI getServer() {
@@ -74,6 +298,106 @@ public class CliParser {
         return dir;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Size in MiB from which files are downloaded in ranges.
+     */
+    public int getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public int getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    /**
+     * Checksum algorithm downloads are verified with, null if they are not.
+     */
+    public ChecksumAlgorithm getVerify() {
+        return verify;
+    }
+
+    /**
+     * Limit of all transfers in bytes per second, 0 for unlimited.
+     */
+    public long getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * Limits for times of the day, null if there are none.
+     */
+    public RateSchedule getRateSchedule() {
+        return rateSchedule;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public boolean isAtomic() {
+        return atomic;
+    }
+
+    public boolean isPush() {
+        return push;
+    }
+
+    /**
+     * Shortest time between polls in seconds, 0 to download once.
+     */
+    public int getWatch() {
+        return watch;
+    }
+
+    /**
+     * Longest time between polls of an unchanged directory in seconds.
+     */
+    public int getWatchMax() {
+        return watchMax;
+    }
+
+    /**
+     * Transform of the downloaded content, null to keep it as it is.
+     */
+    public OutputTransform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Filter of the listed files, null to download every file.
+     */
+    public RemoteFileFilter getFileFilter() {
+        return fileFilter;
+    }
+
     public void parse(String... args) throws ParseException {
         // parse the command line
 
@@ -92,14 +416,214 @@ public class CliParser {
         // parse target directory
         dir = Path.of(line.getOptionValue(dirOp));
 
+        // parse number of parallel sessions
+        threads = parsePositiveInt(line, threadsOp, 1);
+
+        // resume partial downloads
+        resume = line.hasOption(resumeOp);
+
+        // skip files that are up to date
+        sync = line.hasOption(syncOp);
+
+        // rename complete files into place
+        atomic = line.hasOption(atomicOp);
+
+        // upload instead of download
+        push = line.hasOption(pushOp);
+
+        // parse poll intervals of watch mode
+        watch = parsePositiveInt(line, watchOp, 0);
+        watchMax = parsePositiveInt(line, watchMaxOp, 900);
+        if (push && watch > 0) {
+            throw new ParseException("Option " + watchOp.getLongOpt()
+                    + " cannot be combined with " + pushOp.getLongOpt());
+        }
+
+        // descend into subdirectories
+        recursive = line.hasOption(recursiveOp);
+
+        // parse transfer buffer size (0 keeps buffered streams)
+        bufferSize = parsePositiveInt(line, bufferSizeOp, 0);
+
+        // parse size of files downloaded in ranges
+        segmentThreshold = parseNonNegativeInt(line, segmentThresholdOp, 1024);
+
+        // publish metrics
+        jmx = line.hasOption(jmxOp);
+
+        // parse retries of failed files (0 for one attempt, files that keep failing are reported and left out)
+        retries = parseNonNegativeInt(line, retriesOp, 3);
+        retryBackoff = parseNonNegativeInt(line, retryBackoffOp, 1000);
+
+        // parse checksum algorithm of verified downloads
+        verify = null;
+        if (line.hasOption(verifyOp)) {
+            verify = ChecksumAlgorithm.forName(line.getOptionValue(verifyOp));
+            if (verify == null) {
+                throw new ParseException("Option " + verifyOp.getLongOpt()
+                        + " should be a supported checksum algorithm: " + line.getOptionValue(verifyOp));
+            }
+        }
+
+        // a virtual thread per file
+        virtualThreads = line.hasOption(virtualThreadsOp);
+
+        // parse content transform
+        transform = null;
+        if (line.hasOption(transformOp)) {
+            String value = line.getOptionValue(transformOp);
+            if (value.equalsIgnoreCase("gunzip")) {
+                transform = OutputTransform.gunzip();
+            } else if (value.equalsIgnoreCase("gzip")) {
+                transform = OutputTransform.gzip(1);
+            } else {
+                throw new ParseException("Option " + transformOp.getLongOpt()
+                        + " should be gunzip or gzip: " + value);
+            }
+        }
+
+        // parse file selection
+        fileFilter = parseFileFilter(line);
+
+        // parse bandwidth limits
+        maxRate = 0;
+        rateSchedule = null;
+        try {
+            if (line.hasOption(maxRateOp)) {
+                maxRate = Sizes.parse(line.getOptionValue(maxRateOp));
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Option " + maxRateOp.getLongOpt() + ": " + ex.getMessage());
+        }
+        try {
+            if (line.hasOption(rateScheduleOp)) {
+                rateSchedule = RateSchedule.parse(line.getOptionValue(rateScheduleOp));
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Option " + rateScheduleOp.getLongOpt() + ": " + ex.getMessage());
+        }
+
         //throw new ParseException("test");
     }
 
+    private RemoteFileFilter parseFileFilter(CommandLine line) throws ParseException {
+        if (!(line.hasOption(includeOp) || line.hasOption(excludeOp)
+                || line.hasOption(minSizeOp) || line.hasOption(maxSizeOp)
+                || line.hasOption(modifiedAfterOp) || line.hasOption(modifiedBeforeOp))) {
+            return null;
+        }
+
+        var filter = new RemoteFileFilter();
+        Option option = null;
+
+        try {
+            option = includeOp;
+            for (String pattern : optionValues(line, includeOp)) {
+                filter.include(pattern);
+            }
+            option = excludeOp;
+            for (String pattern : optionValues(line, excludeOp)) {
+                filter.exclude(pattern);
+            }
+            option = minSizeOp;
+            if (line.hasOption(minSizeOp)) {
+                filter.minSize(Sizes.parse(line.getOptionValue(minSizeOp)));
+            }
+            option = maxSizeOp;
+            if (line.hasOption(maxSizeOp)) {
+                filter.maxSize(Sizes.parse(line.getOptionValue(maxSizeOp)));
+            }
+            option = modifiedAfterOp;
+            if (line.hasOption(modifiedAfterOp)) {
+                filter.modifiedAfter(parseInstant(line.getOptionValue(modifiedAfterOp)));
+            }
+            option = modifiedBeforeOp;
+            if (line.hasOption(modifiedBeforeOp)) {
+                filter.modifiedBefore(parseInstant(line.getOptionValue(modifiedBeforeOp)));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new ParseException("Option " + option.getLongOpt() + ": " + ex.getMessage());
+        }
+
+        return filter;
+    }
+
+    private static String[] optionValues(CommandLine line, Option option) {
+        String[] values = line.getOptionValues(option);
+        return values == null ? new String[0] : values;
+    }
+
+    // a date is the start of the day in UTC
+    private static Instant parseInstant(String value) {
+        return value.contains("T")
+                ? Instant.parse(value)
+                : LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static int parsePositiveInt(CommandLine line, Option option, int defaultValue)
+            throws ParseException {
+        if (!line.hasOption(option)) {
+            return defaultValue;
+        }
+
+        String value = line.getOptionValue(option);
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+
+        throw new ParseException("Option " + option.getLongOpt()
+                + " should be a positive number: " + value);
+    }
+
+    private static int parseNonNegativeInt(CommandLine line, Option option, int defaultValue)
+            throws ParseException {
+        if (!line.hasOption(option)) {
+            return defaultValue;
+        }
+
+        String value = line.getOptionValue(option);
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+
+        throw new ParseException("Option " + option.getLongOpt()
+                + " should be zero or a positive number: " + value);
+    }
+
     public void printReport() {
         System.out.println("\tServer: [" + this.getServer() + "]");
         System.out.println("\tRemote: [" + this.getRemoteBase() + "]");
         System.out.println("\tLocal:  [" + this.getLocalBase() + "]");
         System.out.println("\tDir:    [" + this.getDir() + "]");
+        System.out.println("\tThreads: [" + this.getThreads() + "]");
+        System.out.println("\tResume: [" + this.isResume() + "]");
+        System.out.println("\tSync:   [" + this.isSync() + "]");
+        System.out.println("\tAtomic: [" + this.isAtomic() + "]");
+        System.out.println("\tPush:   [" + this.isPush() + "]");
+        if (watch > 0) {
+            System.out.println("\tWatch:  [" + this.getWatch() + " - " + this.getWatchMax() + " s]");
+        }
+        System.out.println("\tRecursive: [" + this.isRecursive() + "]");
+        System.out.println("\tVirtual threads: [" + this.isVirtualThreads() + "]");
+        System.out.println("\tBuffer: [" + this.getBufferSize() + "]");
+        System.out.println("\tSegment threshold: [" + this.getSegmentThreshold() + " MiB]");
+        System.out.println("\tJMX:    [" + this.isJmx() + "]");
+        System.out.println("\tRetries: [" + this.getRetries() + " after " + this.getRetryBackoff() + " ms]");
+        System.out.println("\tFilter: [" + (fileFilter == null ? "none" : fileFilter) + "]");
+        System.out.println("\tTransform: [" + (transform == null ? "none" : transform) + "]");
+        System.out.println("\tVerify: [" + (verify == null ? "off" : verify.getName()) + "]");
+        System.out.println("\tMax rate: [" + (maxRate == 0 ? "unlimited" : maxRate + " B/s")
+                + (rateSchedule == null ? "" : " schedule " + rateSchedule) + "]");
     }
 
     public void printHelp() {
@@ -108,7 +632,18 @@ public class CliParser {
                 " -s \"ftp.ebi.ac.uk\"" +
                 " -r \"/pub/databases/opentargets/platform/latest/output/etl/json/\"" +
                 " -l \"./data/\"" +
-                " -d \"diseases\"";
+                " -d \"diseases\"" +
+                " -t 4" +
+                "\n\nMany directories in one run:" +
+                "\n java -jar ftputil.jar --batch jobs.properties" +
+                "\n\nThe batch file is a properties file whose keys are the long options," +
+                "\nshared by every job, e.g. server = ftp.ebi.ac.uk, and:" +
+                "\n jobs = <names>                 jobs to run, separated by spaces" +
+                "\n <job>.<long-option> = <value>  option of one job, e.g. diseases.dir" +
+                "\n batch.sessions = <n>           sessions all jobs share (default 4)" +
+                "\n batch.sessions-per-host = <n>  sessions per server (default all)" +
+                "\nmax-rate and rate-schedule limit all jobs together; watch is not" +
+                "\navailable in a batch.";
         formatter.printHelp
                 ("java -jar ftputil.jar"
                         , "\nDownload files from a directory on an ftp server"
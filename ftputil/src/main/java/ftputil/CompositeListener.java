@@ -0,0 +1,89 @@
+package ftputil;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * Passes every event to two listeners in turn.
+ */
+class CompositeListener implements TransferListener {
+    private final TransferListener first;
+    private final TransferListener second;
+
+    CompositeListener(TransferListener first, TransferListener second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void sessionOpened(URI server, long connectNanos, long loginNanos) {
+        first.sessionOpened(server, connectNanos, loginNanos);
+        second.sessionOpened(server, connectNanos, loginNanos);
+    }
+
+    @Override
+    public void listed(Path remoteDir, int entries, long nanos) {
+        first.listed(remoteDir, entries, nanos);
+        second.listed(remoteDir, entries, nanos);
+    }
+
+    @Override
+    public void fileStarted(Path file, int index, int total) {
+        first.fileStarted(file, index, total);
+        second.fileStarted(file, index, total);
+    }
+
+    @Override
+    public void firstByte(Path file, long nanos) {
+        first.firstByte(file, nanos);
+        second.firstByte(file, nanos);
+    }
+
+    @Override
+    public void bytesTransferred(Path file, long bytes, long size) {
+        first.bytesTransferred(file, bytes, size);
+        second.bytesTransferred(file, bytes, size);
+    }
+
+    @Override
+    public void fileCompleted(Path file, long bytes, long nanos) {
+        first.fileCompleted(file, bytes, nanos);
+        second.fileCompleted(file, bytes, nanos);
+    }
+
+    @Override
+    public void fileVerified(Path file, ChecksumAlgorithm algorithm) {
+        first.fileVerified(file, algorithm);
+        second.fileVerified(file, algorithm);
+    }
+
+    @Override
+    public void polled(Path remoteDir, int changed, int removed, long nextPollNanos) {
+        first.polled(remoteDir, changed, removed, nextPollNanos);
+        second.polled(remoteDir, changed, removed, nextPollNanos);
+    }
+
+    @Override
+    public void fileSkipped(Path file, String reason) {
+        first.fileSkipped(file, reason);
+        second.fileSkipped(file, reason);
+    }
+
+    @Override
+    public void fileRetried(Path file, String reason) {
+        first.fileRetried(file, reason);
+        second.fileRetried(file, reason);
+    }
+
+    @Override
+    public void fileFailed(Path file, String reason) {
+        first.fileFailed(file, reason);
+        second.fileFailed(file, reason);
+    }
+
+    @Override
+    public void message(String message) {
+        first.message(message);
+        second.message(message);
+    }
+}
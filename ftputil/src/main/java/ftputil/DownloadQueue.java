@@ -0,0 +1,245 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared queue of remote files worked through by several
+ * logged-in sessions at once.
+ * <p>
+ * Directories are listed page by page and the files of every page are
+ * queued right away, so the other sessions start downloading while the
+ * listing is still being parsed. In recursive mode listings of
+ * subdirectories go to the front of the queue so that the walk keeps
+ * going, and the files they discover go to the back.
+ * <p>
+ * Additional sessions are only opened when there is queued work for them.
+ */
+class DownloadQueue {
+    private interface Task {
+        void run(FtpClient session) throws IOException;
+    }
+
+    // tells a session that there is no more work
+    private static final Task DONE = session -> {};
+
+    private final FtpClient client;
+    private final Path remoteDir;
+    private final OutputProvider outputProvider;
+    private final TransferListener listener;
+    private final boolean recursive;
+
+    private final BlockingDeque<Task> tasks = new LinkedBlockingDeque<>();
+    // queued and running tasks
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger found = new AtomicInteger();
+    private final AtomicInteger started = new AtomicInteger();
+
+    private volatile boolean failed = false;
+
+    // additional sessions, guarded by this
+    private ExecutorService executor;
+    private final List<Future<?>> workers = new ArrayList<>();
+    private int maxSessions = 1;
+
+    DownloadQueue(FtpClient client, Path remoteDir
+            , OutputProvider outputProvider
+            , TransferListener listener
+            , boolean recursive) {
+        this.client = client;
+        this.remoteDir = remoteDir;
+        this.outputProvider = outputProvider;
+        this.listener = listener;
+        this.recursive = recursive;
+    }
+
+    /**
+     * Queues the entries of a listed directory (relative to the remote directory).
+     * Subdirectories are only queued in recursive mode.
+     */
+    void addListing(Path dir, List<FTPFile> entries) {
+        List<Task> downloads = new ArrayList<>();
+
+        for (FTPFile entry : entries) {
+            if (entry.isFile()) {
+                Path file = dir.resolve(entry.getName());
+                downloads.add(session -> download(session, file, entry));
+            } else if (recursive && entry.isDirectory()
+                    && !entry.getName().equals(".") && !entry.getName().equals("..")) {
+                addDirectory(dir.resolve(entry.getName()));
+            }
+        }
+
+        // count the whole page before any of it can be picked up
+        found.addAndGet(downloads.size());
+        pending.addAndGet(downloads.size());
+        downloads.forEach(tasks::offerLast);
+
+        grow();
+    }
+
+    /**
+     * Queues a directory (relative to the remote directory) to be listed.
+     */
+    void addDirectory(Path dir) {
+        pending.incrementAndGet();
+        tasks.offerFirst(session -> {
+            long started = System.nanoTime();
+            int[] entries = {0};
+
+            session.listFiles(remoteDir.resolve(dir), page -> {
+                entries[0] += page.size();
+                addListing(dir, page);
+            });
+
+            listener.listed(remoteDir.resolve(dir), entries[0], System.nanoTime() - started);
+        });
+
+        grow();
+    }
+
+    /**
+     * Works through the queue using up to the given number of sessions.
+     * The session of the client that owns the queue works in the calling
+     * thread, the others are opened when there is work for them and are
+     * closed at the end of the run.
+     */
+    void run(int threads) throws IOException {
+        if (pending.get() == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            maxSessions = threads;
+            executor = Executors.newCachedThreadPool();
+        }
+
+        Throwable failure = null;
+
+        try {
+            work(client);
+        } catch (IOException | RuntimeException ex) {
+            failure = ex;
+        }
+
+        List<Future<?>> sessions;
+        synchronized (this) {
+            // no more sessions from now on
+            executor.shutdown();
+            sessions = new ArrayList<>(workers);
+        }
+
+        try {
+            for (var worker : sessions) {
+                try {
+                    worker.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Download interrupted...", ex);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // rethrow the first failure as if it happened in the calling thread
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IOException("Download failed...", failure);
+        }
+    }
+
+    // opens additional sessions while there is more queued work than sessions
+    private synchronized void grow() {
+        while (executor != null && !executor.isShutdown() && !failed
+                && workers.size() + 1 < maxSessions
+                && workers.size() < tasks.size()
+                && client.reserveSession()) {
+
+            workers.add(executor.submit(() -> {
+                try {
+                    FtpClient session;
+                    try {
+                        session = client.openSession();
+                    } catch (IOException ex) {
+                        // the remaining sessions can still drain the queue
+                        listener.message("Unable to open additional session: " + ex.getMessage());
+                        return null;
+                    }
+
+                    listener.sessionOpened(session.getServer()
+                            , session.getConnectNanos(), session.getLoginNanos());
+
+                    try (session) {
+                        work(session);
+                    }
+                    return null;
+                } finally {
+                    client.releaseSession();
+                }
+            }));
+        }
+    }
+
+    private void work(FtpClient session) throws IOException {
+        while (true) {
+            Task task;
+            try {
+                task = tasks.takeFirst();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Download interrupted...", ex);
+            }
+
+            if (task == DONE || failed) {
+                return;
+            }
+
+            try {
+                task.run(session);
+            } catch (IOException | RuntimeException ex) {
+                // stop the other sessions from taking new work
+                failed = true;
+                stop();
+                throw ex;
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    stop();
+                }
+            }
+        }
+    }
+
+    private void download(FtpClient session, Path file, FTPFile entry) throws IOException {
+        // keep the numbering in order across sessions
+        synchronized (started) {
+            listener.fileStarted(file, started.incrementAndGet(), found.get());
+        }
+
+        session.download(remoteDir, file, entry, outputProvider, listener);
+    }
+
+    private synchronized void stop() {
+        for (int i = 0; i <= workers.size(); i++) {
+            tasks.offerFirst(DONE);
+        }
+    }
+}
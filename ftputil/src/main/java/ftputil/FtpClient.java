@@ -1,35 +1,135 @@
 package ftputil;
 
+import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPListParseEngine;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.io.CopyStreamEvent;
+import org.apache.commons.net.io.CopyStreamListener;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FtpClient implements Closeable {
+    // default port
+    static final int DEFAULT_PORT = 21;
+    // username for public access data
+    static final String DEFAULT_USER = "anonymous";
+    // password for anonymous users
+    static final String DEFAULT_PASSWORD = "";
+    // size of the smallest file downloaded in ranges by default
+    static final long DEFAULT_SEGMENT_THRESHOLD = 1024L * 1024 * 1024;
+    // transfer buffer of range downloads when no buffer size is set
+    private static final int RANGE_BUFFER_SIZE = 64 * 1024;
+    // bytes between two progress events of a file
+    static final long PROGRESS_STEP = 256 * 1024;
+    // writes whose lines wait for the record consumer
+    private static final int RECORD_QUEUE_CAPACITY = 256;
+    // suffix of uploads that are still being stored
+    static final String UPLOAD_SUFFIX = ".part";
+    // part of a local file mapped into memory at a time while uploading
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
     private final FTPClient ftp;
     private final URI server;
 
-    public static FtpClient getClient(URI serverAddress, FTPClient ftp) throws IOException {
-        // default port
-        int port = 21;
-        // username for public access data
-        String user = "anonymous";
-        // password for anonymous users
-        String password = "";
+    // connection details to open additional sessions with
+    private int port;
+    private String user;
+    private String password;
+    // time it took to connect and to log in
+    private long connectNanos;
+    private long loginNanos;
 
+    // number of sessions used by downloadAllFiles
+    private int threads = 1;
+    // sessions that may still be opened besides this one, shared with them
+    private Semaphore sessionBudget = new Semaphore(0);
+    // whether downloadAllFiles descends into subdirectories
+    private boolean recursive = false;
+    // number of entries parsed at a time by streaming listings
+    private int listPageSize = 1000;
+    // whether MLSD may be used for listings when the server supports it
+    private boolean machineListing = true;
+    // whether the server advertises MLST in FEAT, detected on the first listing
+    private Boolean mlsdSupported;
+    // size of transfer buffers, 0 for the commons-net defaults
+    private int bufferSize = 0;
+    // files of at least this size are downloaded in ranges by several sessions, 0 to disable
+    private long segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+    // whether the server advertises REST STREAM in FEAT, detected on the first large file
+    private Boolean restartSupported;
+    // reused by the transfers of this session
+    private byte[] transferBuffer;
+    private ByteBuffer directBuffer;
+    // file being transferred by this session, if any
+    private Transfer transfer;
+    // how failed transfers are retried, null to fail on the first error
+    private RetryPolicy retryPolicy;
+    // downloads are verified against checksums from the server when set
+    private ChecksumAlgorithm checksumAlgorithm;
+    // algorithms of the HASH command in FEAT, detected on the first verified file
+    private List<String> hashAlgorithms;
+    private String selectedHash;
+    // parsed checksum files by path, shared with additional sessions
+    private Map<Path, Map<String, String>> checksumFiles = new ConcurrentHashMap<>();
+    // entries of listings that are kept, null for all
+    private RemoteFileFilter fileFilter;
+    // listings served without a round trip, shared with additional sessions, null to always list
+    private ListingCache listingCache;
+    // whether the server reports MDTM of directories, detected on the first cached listing
+    private Boolean directoryMdtmSupported;
+    // whether downloadAllFiles runs a virtual thread per file when the JDK has them
+    private boolean virtualThreads = false;
+    // source of executors for the virtual thread mode
+    private Supplier<ExecutorService> virtualThreadExecutors = VirtualThreadDownload::newVirtualThreadExecutor;
+    // source of FTPClient instances for additional sessions
+    private Supplier<FTPClient> sessionFactory = FTPClient::new;
+    // pool this session was borrowed from (if any)
+    private FtpSessionPool pool;
+
+    public static FtpClient getClient(URI serverAddress, FTPClient ftp) throws IOException {
         FtpClient client = new FtpClient(serverAddress, ftp);
 
-        client.open(port, user, password);
+        client.open(DEFAULT_PORT, DEFAULT_USER, DEFAULT_PASSWORD);
 
         return client;
     }
@@ -49,8 +149,15 @@ public class FtpClient implements Closeable {
     }
 
     private void open(int port, String user, String password) throws IOException {
+        this.port = port;
+        this.user = user;
+        this.password = password;
+
+        long started = System.nanoTime();
+
         // connect
         ftp.connect(server.toString(), port);
+        connectNanos = System.nanoTime() - started;
 
         // check for connection failures
         if (!FTPReply.isPositiveCompletion(ftp.getReplyCode())) {
@@ -60,8 +167,13 @@ public class FtpClient implements Closeable {
                             + " port: " + port);
         }
 
+        started = System.nanoTime();
+
         // check for login failures
-        if (!ftp.login(user, password)) {
+        boolean loggedIn = ftp.login(user, password);
+        loginNanos = System.nanoTime() - started;
+
+        if (!loggedIn) {
             ftp.disconnect();
             throw new IOException
                     ("Unable to login to FTP Server: " + server
@@ -71,47 +183,1399 @@ public class FtpClient implements Closeable {
         // passive mode to be able to work from inside VMs
         ftp.enterLocalPassiveMode();
 
+        // binary transfers so that bytes arrive as stored on the server;
+        // offsets for REST, ranges and checksums depend on it
+        ftp.setFileType(FTP.BINARY_FILE_TYPE);
+
         // now ready to access files and dirs
     }
 
+    /**
+     * Opens one more logged-in session to the same server
+     * with the same port and credentials as this one.
+     * Sessions borrowed from a pool take the additional session from
+     * the same pool and fail if the pool has no more sessions for the host.
+     */
+    public FtpClient openSession() throws IOException {
+        FtpClient session;
+
+        if (pool != null) {
+            session = pool.tryBorrow(server, port, user, password)
+                    .orElseThrow(() -> new IOException
+                            ("Session limit reached for FTP Server: " + server
+                                    + " port: " + port));
+        } else {
+            session = getClient(server, sessionFactory.get(), port, user, password);
+        }
+
+        configure(session);
+
+        return session;
+    }
+
+    /**
+     * Reserves one of the additional sessions allowed by the number of
+     * threads. Queue workers and range downloads share the reservations,
+     * so the sessions of a run stay within the number of threads.
+     *
+     * @return false if every additional session is taken
+     */
+    boolean reserveSession() {
+        return sessionBudget.tryAcquire();
+    }
+
+    /**
+     * Hands back a session reserved with {@link #reserveSession()}.
+     */
+    void releaseSession() {
+        sessionBudget.release();
+    }
+
+    // transfers of the other session work the same way as ours
+    void configure(FtpClient session) {
+        session.listPageSize = listPageSize;
+        session.machineListing = machineListing;
+        session.setBufferSize(bufferSize);
+        session.threads = threads;
+        session.sessionBudget = sessionBudget;
+        session.segmentThreshold = segmentThreshold;
+        session.retryPolicy = retryPolicy;
+        session.checksumAlgorithm = checksumAlgorithm;
+        session.checksumFiles = checksumFiles;
+        session.fileFilter = fileFilter;
+        session.listingCache = listingCache;
+        session.directoryMdtmSupported = directoryMdtmSupported;
+        session.sessionFactory = sessionFactory;
+    }
+
+    // back to the settings of a new session, for the next borrower of a pooled one;
+    // what was detected about the server is kept
+    void resetSettings() {
+        listPageSize = 1000;
+        machineListing = true;
+        setBufferSize(0);
+        threads = 1;
+        sessionBudget = new Semaphore(0);
+        recursive = false;
+        segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+        retryPolicy = null;
+        checksumAlgorithm = null;
+        checksumFiles = new ConcurrentHashMap<>();
+        fileFilter = null;
+        listingCache = null;
+        virtualThreads = false;
+        virtualThreadExecutors = VirtualThreadDownload::newVirtualThreadExecutor;
+        sessionFactory = FTPClient::new;
+    }
+
+    /**
+     * Checks that the control connection still responds (NOOP).
+     */
+    public boolean isAlive() {
+        try {
+            return ftp.sendNoOp();
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    public URI getServer() {
+        return server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
+    /**
+     * Time it took to connect this session to the server in nanoseconds.
+     */
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * Time it took to log this session in in nanoseconds.
+     */
+    public long getLoginNanos() {
+        return loginNanos;
+    }
+
+    void setPool(FtpSessionPool pool) {
+        this.pool = pool;
+    }
+
+    FtpSessionPool getPool() {
+        return pool;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of concurrent sessions used by {@link #downloadAllFiles}.
+     * This session is always one of them, the rest are opened on demand.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be positive: " + threads);
+        }
+        this.threads = threads;
+        this.sessionBudget = new Semaphore(threads - 1);
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Makes {@link #downloadAllFiles} mirror the whole tree under the remote
+     * directory. Output paths are then relative to the remote directory and
+     * may include subdirectories.
+     */
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    public int getListPageSize() {
+        return listPageSize;
+    }
+
+    /**
+     * Sets how many listing entries are parsed into {@link FTPFile} objects at a time
+     * by {@link #listFiles(Path, Consumer)} and {@link #streamFiles(Path)}.
+     */
+    public void setListPageSize(int listPageSize) {
+        if (listPageSize < 1) {
+            throw new IllegalArgumentException("Listing page size should be positive: " + listPageSize);
+        }
+        this.listPageSize = listPageSize;
+    }
+
+    public boolean isMachineListing() {
+        return machineListing;
+    }
+
+    /**
+     * Allows listings with MLSD when the server advertises MLST in FEAT.
+     * MLSD gives exact sizes and modification times (UTC, to the second)
+     * and is cheaper to parse than LIST output. Servers without it are
+     * listed with LIST.
+     */
+    public void setMachineListing(boolean machineListing) {
+        this.machineListing = machineListing;
+    }
+
+    /**
+     * Tells whether listings of this session use MLSD.
+     */
+    public boolean usesMachineListing() {
+        if (!machineListing) {
+            return false;
+        }
+
+        if (mlsdSupported == null) {
+            try {
+                mlsdSupported = ftp.hasFeature("MLST");
+            } catch (IOException ex) {
+                mlsdSupported = false;
+            }
+        }
+
+        return mlsdSupported;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size of the buffer downloads are copied through and of the
+     * data socket receive buffer. With a positive size the content is read
+     * in chunks of that size and, for a {@link ChannelOutputStream}, written
+     * to its file channel from a direct buffer. Zero keeps the commons-net
+     * stream copy.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 0) {
+            throw new IllegalArgumentException("Buffer size should not be negative: " + bufferSize);
+        }
+
+        this.bufferSize = bufferSize;
+        this.transferBuffer = null;
+        this.directBuffer = null;
+
+        if (bufferSize > 0) {
+            ftp.setBufferSize(bufferSize);
+            ftp.setReceieveDataSocketBufferSize(bufferSize);
+        }
+    }
+
+    public long getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    /**
+     * Sets the size from which files are split into byte ranges that are
+     * downloaded at the same time, one range per session up to the number of
+     * threads. Only used with more than one thread, when the server supports
+     * restarting transfers at an offset (REST STREAM) and when the output
+     * provider can write ranges. Zero disables range downloads.
+     */
+    public void setSegmentThreshold(long segmentThreshold) {
+        if (segmentThreshold < 0) {
+            throw new IllegalArgumentException("Segment threshold should not be negative: " + segmentThreshold);
+        }
+        this.segmentThreshold = segmentThreshold;
+    }
+
+    /**
+     * Tells whether the server can restart transfers at an offset (REST STREAM in FEAT).
+     */
+    public boolean supportsRestart() {
+        if (restartSupported == null) {
+            try {
+                restartSupported = ftp.hasFeature("REST", "STREAM");
+            } catch (IOException ex) {
+                restartSupported = false;
+            }
+        }
+
+        return restartSupported;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Retries failed transfers of {@link #downloadAllFiles} on a new connection,
+     * resuming from what the failed attempt has written when the output provider
+     * supports it. Files that still fail are reported to the listener and left
+     * out while the rest of the files are downloaded. Without a policy the
+     * first failure ends the download with an exception.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Verifies downloaded files against the checksum the server computes
+     * (HASH, or XMD5 and XCRC) or publishes in a checksum file of the
+     * directory, e.g. SHA256SUMS. The local checksum comes from the output
+     * provider. A mismatch fails the transfer and discards what has been
+     * written, so the file is downloaded again from the start by the next
+     * attempt. Only a {@link #setRetryPolicy retry policy} makes that
+     * attempt, without one the {@link ChecksumMismatchException} is thrown.
+     * Files without a checksum on the server are not verified.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    public RemoteFileFilter getFileFilter() {
+        return fileFilter;
+    }
+
+    /**
+     * Keeps only the entries the filter accepts in listings, and so in
+     * {@link #downloadAllFiles}. Null lists every entry.
+     */
+    public void setFileFilter(RemoteFileFilter fileFilter) {
+        this.fileFilter = fileFilter;
+    }
+
+    public ListingCache getListingCache() {
+        return listingCache;
+    }
+
+    /**
+     * Serves listings of this session and of the sessions it opens from
+     * the cache, see {@link ListingCache}. Directories this session uploads
+     * to are dropped from the cache. Null lists every directory on the server.
+     */
+    public void setListingCache(ListingCache listingCache) {
+        this.listingCache = listingCache;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Downloads every file in a virtual thread of its own (Java 21 and later),
+     * with this session listing the directories and at most threads - 1
+     * (at least one) other sessions transferring files at a time. The limit
+     * is the per-host semaphore of a session pool, the pool of this session
+     * if it was borrowed from one. Falls back to the usual sessions and
+     * threads when the JDK has no virtual threads.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    void setVirtualThreadExecutors(Supplier<ExecutorService> virtualThreadExecutors) {
+        this.virtualThreadExecutors = virtualThreadExecutors;
+    }
+
+    public void setSessionFactory(Supplier<FTPClient> sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    Supplier<FTPClient> getSessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * Logs out and disconnects, or returns the session
+     * to its pool if it was borrowed from one.
+     */
     @Override
     public void close() throws IOException {
-        ftp.logout();
-        ftp.disconnect();
+        if (pool != null) {
+            pool.release(this);
+            return;
+        }
+
+        disconnect();
+    }
+
+    /**
+     * Drops the connection and connects and logs in again
+     * with the same port and credentials.
+     */
+    void reconnect() throws IOException {
+        try {
+            disconnect();
+        } catch (IOException ex) {
+            // the connection is most likely gone already
+        }
+
+        open(port, user, password);
+    }
+
+    void disconnect() throws IOException {
+        try {
+            ftp.logout();
+        } finally {
+            ftp.disconnect();
+        }
     }
 
     public List<FTPFile> listFiles(Path remoteDir) throws IOException {
 
-        FTPFile[] files = ftp.listFiles(remoteDir.toString());
+        if (listingCache != null) {
+            return filter(remoteDir, cachedListing(remoteDir))
+                    .collect(Collectors.toList());
+        }
+
+        FTPFile[] files = list(remoteDir);
 
         return Arrays.stream(files)
                 .collect(Collectors.toList());
     }
 
+    private FTPFile[] list(Path remoteDir) throws IOException {
+        if (!usesMachineListing()) {
+            return fileFilter == null
+                    ? ftp.listFiles(remoteDir.toString())
+                    : ftp.listFiles(remoteDir.toString(), entry -> fileFilter.accepts(remoteDir, entry));
+        }
+
+        return ftp.mlistDir(remoteDir.toString(), entry -> isEntry(entry)
+                && (fileFilter == null || fileFilter.accepts(remoteDir, entry)));
+    }
+
+    private FTPListParseEngine initiateListParsing(Path remoteDir) throws IOException {
+        return usesMachineListing()
+                ? ftp.initiateMListParsing(remoteDir.toString())
+                : ftp.initiateListParsing(remoteDir.toString());
+    }
+
+    // MLSD lists the directory itself (cdir) and its parent (pdir) as well
+    private static boolean isEntry(FTPFile file) {
+        if (file == null) {
+            return false;
+        }
+
+        String raw = file.getRawListing();
+        if (raw == null) {
+            return true;
+        }
+
+        String facts = raw.toLowerCase(Locale.ROOT);
+        return !facts.contains("type=cdir;") && !facts.contains("type=pdir;");
+    }
+
+    /**
+     * Lists the remote directory page by page. Only one page of entries
+     * is parsed into {@link FTPFile} objects at a time.
+     */
+    public void listFiles(Path remoteDir, Consumer<List<FTPFile>> pageConsumer) throws IOException {
+        if (listingCache != null) {
+            List<FTPFile> files = filter(remoteDir, cachedListing(remoteDir))
+                    .collect(Collectors.toList());
+
+            for (int from = 0; from < files.size(); from += listPageSize) {
+                pageConsumer.accept(files.subList(from, Math.min(files.size(), from + listPageSize)));
+            }
+            return;
+        }
+
+        FTPListParseEngine engine = initiateListParsing(remoteDir);
+
+        while (engine.hasNext()) {
+            pageConsumer.accept(page(engine, remoteDir));
+        }
+    }
+
+    /**
+     * Lazily parsed listing of the remote directory.
+     */
+    public Stream<FTPFile> streamFiles(Path remoteDir) throws IOException {
+        if (listingCache != null) {
+            return filter(remoteDir, cachedListing(remoteDir));
+        }
+
+        FTPListParseEngine engine = initiateListParsing(remoteDir);
+
+        Iterator<FTPFile> entries = new Iterator<>() {
+            private Iterator<FTPFile> page = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && engine.hasNext()) {
+                    page = page(engine, remoteDir).iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public FTPFile next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize
+                (entries, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private List<FTPFile> page(FTPListParseEngine engine, Path remoteDir) {
+        // unparseable entries come back as nulls
+        return Arrays.stream(engine.getNext(listPageSize))
+                .filter(FtpClient::isEntry)
+                .filter(entry -> fileFilter == null || fileFilter.accepts(remoteDir, entry))
+                .collect(Collectors.toList());
+    }
+
+    private Stream<FTPFile> filter(Path remoteDir, List<FTPFile> files) {
+        return files.stream()
+                .filter(entry -> fileFilter == null || fileFilter.accepts(remoteDir, entry));
+    }
+
+    // every entry of the directory, from the server if the cached listing is expired and the directory changed
+    private List<FTPFile> cachedListing(Path remoteDir) throws IOException {
+        ListingCache.Entry cached = listingCache.get(remoteDir);
+
+        if (cached != null && !listingCache.isExpired(cached)) {
+            listingCache.hit();
+            return cached.getFiles();
+        }
+
+        // taken before listing, a change in between shows on the next revalidation
+        String modified = listingCache.isRevalidate() ? directoryModificationTime(remoteDir) : null;
+
+        if (cached != null && modified != null && modified.equals(cached.getModified())) {
+            listingCache.renew(remoteDir, cached);
+            listingCache.hit();
+            return cached.getFiles();
+        }
+
+        listingCache.miss();
+
+        List<FTPFile> files = new ArrayList<>();
+        FTPListParseEngine engine = initiateListParsing(remoteDir);
+        while (engine.hasNext()) {
+            Arrays.stream(engine.getNext(listPageSize))
+                    .filter(FtpClient::isEntry)
+                    .forEach(files::add);
+        }
+
+        listingCache.put(remoteDir, files, modified);
+        return files;
+    }
+
+    // MDTM reply for a directory, null if the server only reports it for files
+    private String directoryModificationTime(Path remoteDir) throws IOException {
+        if (Boolean.FALSE.equals(directoryMdtmSupported)) {
+            return null;
+        }
+
+        String modified = ftp.getModificationTime(remoteDir.toString());
+        if (directoryMdtmSupported == null) {
+            directoryMdtmSupported = modified != null;
+        }
+
+        return modified;
+    }
+
+    // what this session changes on the server is listed again
+    private void invalidateListing(Path remoteDir) {
+        if (listingCache != null && remoteDir != null) {
+            listingCache.invalidate(remoteDir);
+        }
+    }
+
     public void downloadFile(Path remoteFile, OutputStream out) throws IOException {
-        ftp.retrieveFile(remoteFile.toString(), out);
+        retrieve(remoteFile, out);
+    }
+
+    private boolean retrieve(Path remoteFile, OutputStream out) throws IOException {
+        if (bufferSize == 0) {
+            if (transfer == null) {
+                return ftp.retrieveFile(remoteFile.toString(), out);
+            }
+
+            // commons-net reports the progress of its stream copy
+            ftp.setCopyStreamListener(transfer);
+            try {
+                return ftp.retrieveFile(remoteFile.toString(), out);
+            } finally {
+                ftp.setCopyStreamListener(null);
+            }
+        }
+
+        InputStream in = ftp.retrieveFileStream(remoteFile.toString());
+        if (in == null) {
+            return false;
+        }
+
+        try (in) {
+            byte[] buffer = transferBuffer();
+
+            if (out instanceof ChannelOutputStream) {
+                copy(in, (ChannelOutputStream) out);
+            } else {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    count(read);
+                }
+            }
+        }
+
+        // wait for the end of transfer reply
+        return ftp.completePendingCommand();
+    }
+
+    private byte[] transferBuffer() {
+        if (transferBuffer == null) {
+            transferBuffer = new byte[bufferSize > 0 ? bufferSize : RANGE_BUFFER_SIZE];
+        }
+        return transferBuffer;
+    }
+
+    /**
+     * Downloads {@code length} bytes of the remote file starting at the offset
+     * and writes them at the same position of the range output.
+     */
+    void retrieveRange(Path remoteFile, long offset, long length
+            , OutputProvider.RangeOutput out, Transfer transfer) throws IOException {
+
+        InputStream in;
+        ftp.setRestartOffset(offset);
+        try {
+            in = ftp.retrieveFileStream(remoteFile.toString());
+        } finally {
+            // the offset would otherwise apply to the next transfer as well
+            ftp.setRestartOffset(0);
+        }
+
+        if (in == null) {
+            throw new IOException("Unable to download file: " + remoteFile
+                    + " offset: " + offset + " reply: " + ftp.getReplyString());
+        }
+
+        byte[] buffer = transferBuffer();
+        long position = offset;
+        long end = offset + length;
+
+        try (in) {
+            while (position < end) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+                if (read == -1) {
+                    throw new IOException("Unexpected end of data for file: " + remoteFile
+                            + " offset: " + position);
+                }
+
+                out.write(ByteBuffer.wrap(buffer, 0, read), position);
+                position += read;
+                transfer.add(read);
+            }
+        }
+
+        // the server reports the transfer as aborted when
+        // the range ends before the file does, the range is complete anyway
+        ftp.completePendingCommand();
+    }
+
+    private void count(int bytes) {
+        if (transfer != null) {
+            transfer.add(bytes);
+        }
+    }
+
+    private void copy(InputStream in, ChannelOutputStream out) throws IOException {
+        if (directBuffer == null) {
+            directBuffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        // a failed transfer may have left content behind
+        directBuffer.clear();
+
+        // fill the buffer as far as the socket allows before each write
+        int read = 0;
+        while (read != -1) {
+            read = in.read(transferBuffer, 0, directBuffer.remaining());
+            if (read > 0) {
+                directBuffer.put(transferBuffer, 0, read);
+                count(read);
+            }
+
+            if (!directBuffer.hasRemaining() || (read == -1 && directBuffer.position() > 0)) {
+                directBuffer.flip();
+                out.write(directBuffer);
+                directBuffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Downloads the remote file starting from the given byte offset (REST).
+     *
+     * @return false if the server refused to restart the transfer at the offset
+     */
+    public boolean resumeFile(Path remoteFile, OutputStream out, long offset) throws IOException {
+        ftp.setRestartOffset(offset);
+
+        try {
+            if (retrieve(remoteFile, out)) {
+                return true;
+            }
+        } finally {
+            // the offset would otherwise apply to the next transfer as well
+            ftp.setRestartOffset(0);
+        }
+
+        // REST is refused with 5xx before any data is sent,
+        // any other negative reply is a problem with the file itself
+        int reply = ftp.getReplyCode();
+        if (reply == FTPReply.FILE_UNAVAILABLE || !FTPReply.isNegativePermanent(reply)) {
+            throw new IOException("Unable to download file: " + remoteFile
+                    + " reply: " + ftp.getReplyString());
+        }
+
+        return false;
     }
 
+    /**
+     * Downloads all regular files of the remote directory.
+     * <p>
+     * When more than one thread is configured the files are shared between
+     * several sessions, so {@code outputProvider} may be called concurrently
+     * from different threads. Calls to {@code progressReporter} are always
+     * serialized.
+     */
     public void downloadAllFiles
             (Path remoteDir
                     , Function<Path, OutputStream> outputProvider
                     , Consumer<String> progressReporter) throws IOException {
 
-        var files = ftp.listFiles(remoteDir.toString());
+        downloadAllFiles(remoteDir
+                , (file, offset) -> outputProvider.apply(file), progressReporter);
+    }
+
+    /**
+     * Downloads all regular files of the remote directory,
+     * resuming files the output provider already has a part of.
+     */
+    public void downloadAllFiles
+            (Path remoteDir
+                    , OutputProvider outputProvider
+                    , Consumer<String> progressReporter) throws IOException {
+
+        downloadAllFiles(remoteDir, outputProvider, TransferListener.of(progressReporter));
+    }
+
+    /**
+     * Downloads all regular files of the remote directory and reports
+     * sessions, listings and transfers with their timings to the listener.
+     */
+    public void downloadAllFiles
+            (Path remoteDir
+                    , OutputProvider outputProvider
+                    , TransferListener listener) throws IOException {
+
+        if (virtualThreads) {
+            ExecutorService executor = virtualThreadExecutors.get();
+
+            if (executor != null) {
+                new VirtualThreadDownload(this, remoteDir, outputProvider, listener, recursive)
+                        .run(executor, Math.max(1, threads - 1));
+                return;
+            }
+
+            listener.message("Virtual threads are not available on Java "
+                    + Runtime.version().feature() + ", using " + threads + " sessions");
+        }
 
-        var filesList = Arrays.stream(files)
+        if (recursive || threads > 1) {
+            // listings and downloads share the sessions
+            var queue = new DownloadQueue(this, remoteDir, outputProvider, listener, recursive);
+            queue.addDirectory(Path.of(""));
+            queue.run(threads);
+            return;
+        }
+
+        long started = System.nanoTime();
+        // served from the listing cache when there is one
+        var files = listFiles(remoteDir);
+        listener.listed(remoteDir, files.size(), System.nanoTime() - started);
+
+        var filesList = files.stream()
                 .filter(FTPFile::isFile)
-                .map(FTPFile::getName)
                 .collect(Collectors.toList());
 
         for(int i = 0; i < filesList.size(); i++) {
-            progressReporter.accept(String.format
-                    ("Downloading (%d of %d):[%s]", i+1, filesList.size(), filesList.get(i)));
+            Path name = Path.of(filesList.get(i).getName());
+
+            listener.fileStarted(name, i+1, filesList.size());
 
-            try (var out = outputProvider.apply(Path.of(filesList.get(i)))) {
-                ftp.retrieveFile(remoteDir.resolve(filesList.get(i)).toString(), out);
+            download(remoteDir, name, filesList.get(i), outputProvider, listener);
+        }
+    }
+
+    /**
+     * Feeds the lines of the files in the remote directory to the consumer
+     * while they are being downloaded, without keeping the files. The
+     * consumer works in a thread of its own, overlapping with the transfers,
+     * and has processed every record when the method returns. Use a
+     * {@link RecordOutputProvider} with {@link #downloadAllFiles} to keep
+     * the files as well.
+     */
+    public void downloadAllRecords(Path remoteDir, RecordConsumer consumer
+            , TransferListener listener) throws IOException {
+
+        try (var records = new RecordOutputProvider(consumer, null, RECORD_QUEUE_CAPACITY)) {
+            downloadAllFiles(remoteDir, records, listener);
+        }
+    }
+
+    /**
+     * Downloads a single listed file (relative to the remote directory) with this session.
+     */
+    void download(Path remoteDir, Path local, FTPFile file
+            , OutputProvider outputProvider, TransferListener listener) throws IOException {
+
+        Path remote = remoteDir.resolve(local);
+
+        if (outputProvider.isUpToDate(local, file)) {
+            listener.fileSkipped(local, "Up to date");
+            return;
+        }
+
+        long offset = outputProvider.resumeOffset(local);
+
+        if (offset > 0 && offset == file.getSize()) {
+            listener.fileSkipped(local, "Already downloaded");
+            outputProvider.completed(local, file);
+            return;
+        }
+
+        int attempts = retryPolicy == null ? 1 : retryPolicy.getAttempts();
+        // whether what has been written cannot be trusted
+        boolean corrupted = false;
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (attempt > 1) {
+                    reconnect();
+                    // continue from what the failed attempt has written
+                    offset = corrupted ? 0 : outputProvider.resumeOffset(local);
+                }
+
+                transfer(remote, local, file, offset, outputProvider, listener);
+                return;
+
+            } catch (IOException ex) {
+                corrupted = ex instanceof ChecksumMismatchException;
+                if (corrupted) {
+                    // not even a later run may resume from it
+                    discard(local, outputProvider, ex);
+                }
+
+                if (attempt >= attempts) {
+                    listener.fileFailed(local, ex.getMessage());
+
+                    if (retryPolicy == null) {
+                        throw ex;
+                    }
+                    // leave the file out and carry on with the rest
+                    return;
+                }
+
+                listener.fileRetried(local, String.format
+                        ("Retrying (%d of %d) after: %s", attempt + 1, attempts, ex.getMessage()));
+                pause(retryPolicy.backoff(attempt));
+
+            } catch (RuntimeException ex) {
+                // problems with local files are not solved by trying again
+                listener.fileFailed(local, ex.getMessage());
+                throw ex;
             }
         }
     }
 
+    // transfers the file once and reports how it went
+    private void transfer(Path remote, Path local, FTPFile file, long offset
+            , OutputProvider outputProvider, TransferListener listener) throws IOException {
+
+        Transfer transfer = new Transfer(local, file.getSize(), offset, listener);
+        this.transfer = transfer;
+        try {
+            if (!fetch(remote, local, file, offset, outputProvider, listener)) {
+                // refused by the server, trying again would not help
+                listener.fileFailed(local, ftp.getReplyString());
+                return;
+            }
+
+            verify(remote, local, outputProvider, listener);
+
+            outputProvider.completed(local, file);
+        } finally {
+            this.transfer = null;
+            transfer.finish();
+        }
+
+        if (transfer.getFirstByteNanos() >= 0) {
+            listener.firstByte(local, transfer.getFirstByteNanos());
+        }
+        listener.fileCompleted(local, transfer.getBytes(), transfer.getNanos());
+    }
+
+    // drops content that failed verification, keeping the reason it failed
+    private static void discard(Path local, OutputProvider outputProvider, IOException failure) {
+        try {
+            outputProvider.discard(local);
+        } catch (IOException ex) {
+            failure.addSuppressed(ex);
+        }
+    }
+
+    // compares the checksum of the local file with the one from the server
+    private void verify(Path remote, Path local
+            , OutputProvider outputProvider, TransferListener listener) throws IOException {
+
+        if (checksumAlgorithm == null) {
+            return;
+        }
+
+        String expected = getRemoteChecksum(remote, checksumAlgorithm);
+        if (expected == null) {
+            return;
+        }
+
+        String actual = outputProvider.checksum(local, checksumAlgorithm);
+        if (actual == null) {
+            return;
+        }
+
+        if (!expected.equalsIgnoreCase(actual)) {
+            throw new ChecksumMismatchException(String.format
+                    ("%s checksum mismatch: expected %s got %s"
+                            , checksumAlgorithm.getName(), expected.toLowerCase(Locale.ROOT), actual));
+        }
+
+        listener.fileVerified(local, checksumAlgorithm);
+    }
+
+    /**
+     * Checksum of the remote file in hex, computed by the server (HASH, XMD5
+     * or XCRC) or published in a checksum file of its directory.
+     *
+     * @return null if the server has no checksum of the file with the algorithm
+     */
+    public String getRemoteChecksum(Path remoteFile, ChecksumAlgorithm algorithm) throws IOException {
+        String checksum = computedChecksum(remoteFile, algorithm);
+
+        return checksum != null ? checksum : publishedChecksum(remoteFile, algorithm);
+    }
+
+    private String computedChecksum(Path remoteFile, ChecksumAlgorithm algorithm) throws IOException {
+        if (hashAlgorithms == null) {
+            hashAlgorithms = hashAlgorithms();
+        }
+
+        if (hashAlgorithms.contains(algorithm.getName())) {
+            // the algorithm of HASH is chosen per session
+            if (!algorithm.getName().equals(selectedHash)
+                    && FTPReply.isPositiveCompletion(ftp.sendCommand("OPTS", "HASH " + algorithm.getName()))) {
+                selectedHash = algorithm.getName();
+            }
+
+            if (algorithm.getName().equals(selectedHash)
+                    && FTPReply.isPositiveCompletion(ftp.sendCommand("HASH", remoteFile.toString()))) {
+                return hex(ftp.getReplyString(), algorithm);
+            }
+        }
+
+        // older commands computing a single algorithm
+        String command = algorithm == ChecksumAlgorithm.MD5 ? "XMD5"
+                : algorithm == ChecksumAlgorithm.CRC32 ? "XCRC" : null;
+
+        if (command != null && ftp.hasFeature(command)
+                && FTPReply.isPositiveCompletion(ftp.sendCommand(command, remoteFile.toString()))) {
+            return hex(ftp.getReplyString(), algorithm);
+        }
+
+        return null;
+    }
+
+    // e.g. HASH SHA-256*;SHA-1;MD5 where the selected one is marked
+    private List<String> hashAlgorithms() throws IOException {
+        String[] values = ftp.featureValues("HASH");
+        if (values == null) {
+            return List.of();
+        }
+
+        List<String> names = new ArrayList<>();
+        for (String value : values) {
+            for (String name : value.split(";")) {
+                name = name.trim();
+                if (name.endsWith("*")) {
+                    name = name.substring(0, name.length() - 1);
+                    selectedHash = name;
+                }
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    // the checksum in a reply, the first word of hex digits of the right length
+    private static String hex(String reply, ChecksumAlgorithm algorithm) {
+        int length = algorithm.newDigest().getDigestLength() * 2;
+
+        for (String word : reply.trim().split("\\s+")) {
+            if (word.length() == length && word.matches("[0-9a-fA-F]+")) {
+                return word.toLowerCase(Locale.ROOT);
+            }
+        }
+        return null;
+    }
+
+    private String publishedChecksum(Path remoteFile, ChecksumAlgorithm algorithm) throws IOException {
+        Path dir = remoteFile.getParent();
+        Path sumsFile = dir == null
+                ? Path.of(algorithm.getSumsFileName())
+                : dir.resolve(algorithm.getSumsFileName());
+
+        // every file of the directory is looked up in the same checksum file
+        Map<String, String> checksums = checksumFiles.get(sumsFile);
+        if (checksums == null) {
+            checksums = parseChecksumFile(sumsFile, algorithm);
+            checksumFiles.put(sumsFile, checksums);
+        }
+
+        return checksums.get(remoteFile.getFileName().toString());
+    }
+
+    // lines of sha256sum (hex name) or of the BSD tag format (SHA256 (name) = hex)
+    private Map<String, String> parseChecksumFile(Path sumsFile, ChecksumAlgorithm algorithm) throws IOException {
+        var content = new ByteArrayOutputStream();
+        if (!ftp.retrieveFile(sumsFile.toString(), content)) {
+            return Map.of();
+        }
+
+        Map<String, String> checksums = new HashMap<>();
+        for (String line : content.toString(StandardCharsets.UTF_8).split("\\R")) {
+            String name;
+            String checksum;
+
+            int tag = line.lastIndexOf(") = ");
+            if (line.indexOf(" (") > 0 && tag > 0) {
+                name = line.substring(line.indexOf(" (") + 2, tag);
+                checksum = line.substring(tag + 4).trim();
+            } else {
+                String[] words = line.trim().split("\\s+", 2);
+                if (words.length < 2) {
+                    continue;
+                }
+                checksum = words[0];
+                // binary mode marker
+                name = words[1].startsWith("*") ? words[1].substring(1) : words[1];
+            }
+
+            if (name.startsWith("./")) {
+                name = name.substring(2);
+            }
+
+            if (hex(checksum, algorithm) != null) {
+                checksums.put(name, checksum.toLowerCase(Locale.ROOT));
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Uploads the local file under a temporary name next to the remote file
+     * and renames it (RNFR/RNTO) once the server has stored all of it, so
+     * that readers of the remote directory never see a partial file. The
+     * temporary file is deleted again when the upload fails.
+     */
+    public void uploadFile(Path localFile, Path remoteFile) throws IOException {
+        store(localFile, remoteFile);
+    }
+
+    /**
+     * Uploads all regular files of the local directory (and of its
+     * subdirectories in recursive mode) into the remote directory.
+     */
+    public void uploadAllFiles(Path localDir, Path remoteDir
+            , TransferListener listener) throws IOException {
+
+        uploadAllFiles(localDir, localFiles(localDir, recursive), remoteDir, listener);
+    }
+
+    /**
+     * Uploads the files (relative to the local directory) into the remote
+     * directory, creating the remote subdirectories they need. When more
+     * than one thread is configured the files are shared between several
+     * sessions, every file is published as described in {@link #uploadFile}.
+     */
+    public void uploadAllFiles(Path localDir, List<Path> files, Path remoteDir
+            , TransferListener listener) throws IOException {
+
+        makeDirectories(remoteDir, files);
+
+        if (threads > 1 && files.size() > 1) {
+            new ParallelUpload(this, localDir, remoteDir, files, listener).run(threads);
+            return;
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            listener.fileStarted(files.get(i), i + 1, files.size());
+
+            upload(localDir, remoteDir, files.get(i), listener);
+        }
+    }
+
+    /**
+     * Regular files of the local directory (and of its subdirectories when
+     * recursive) relative to it, leaving out the files of this utility.
+     */
+    static List<Path> localFiles(Path localDir, boolean recursive) throws IOException {
+        try (var files = recursive ? Files.walk(localDir) : Files.list(localDir)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .map(localDir::relativize)
+                    .filter(file -> !file.getFileName().toString().startsWith(".ftputil-")
+                            && !file.getFileName().toString().endsWith(LocalOutputProvider.PART_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // creates the parents of the files on the server, shallow ones first
+    private void makeDirectories(Path remoteDir, List<Path> files) throws IOException {
+        var dirs = new TreeSet<Path>(Comparator.comparingInt(Path::getNameCount)
+                .thenComparing(Comparator.naturalOrder()));
+
+        for (Path file : files) {
+            for (Path dir = file.getParent(); dir != null; dir = dir.getParent()) {
+                dirs.add(dir);
+            }
+        }
+
+        // fails for directories that are already there
+        ftp.makeDirectory(remoteDir.toString());
+        invalidateListing(remoteDir.getParent());
+        for (Path dir : dirs) {
+            ftp.makeDirectory(remoteDir.resolve(dir).toString());
+            invalidateListing(remoteDir.resolve(dir).getParent());
+        }
+    }
+
+    /**
+     * Uploads a single file (relative to the local directory) with this session.
+     */
+    void upload(Path localDir, Path remoteDir, Path file, TransferListener listener) throws IOException {
+        Path local = localDir.resolve(file);
+        Path remote = remoteDir.resolve(file);
+
+        int attempts = retryPolicy == null ? 1 : retryPolicy.getAttempts();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (attempt > 1) {
+                    reconnect();
+                }
+
+                Transfer transfer = new Transfer(file, Files.size(local), 0, listener);
+                this.transfer = transfer;
+                try {
+                    store(local, remote);
+                } finally {
+                    this.transfer = null;
+                    transfer.finish();
+                }
+
+                listener.fileCompleted(file, transfer.getBytes(), transfer.getNanos());
+                return;
+
+            } catch (NoSuchFileException | AccessDeniedException ex) {
+                // problems with local files are not solved by trying again
+                listener.fileFailed(file, ex.getMessage());
+                throw new RuntimeException("Cannot read files in the local directory...", ex);
+
+            } catch (IOException ex) {
+                if (attempt >= attempts) {
+                    listener.fileFailed(file, ex.getMessage());
+
+                    if (retryPolicy == null) {
+                        throw ex;
+                    }
+                    // leave the file out and carry on with the rest
+                    return;
+                }
+
+                listener.fileRetried(file, String.format
+                        ("Retrying (%d of %d) after: %s", attempt + 1, attempts, ex.getMessage()));
+                pause(retryPolicy.backoff(attempt));
+
+            } catch (RuntimeException ex) {
+                listener.fileFailed(file, ex.getMessage());
+                throw ex;
+            }
+        }
+    }
+
+    // stores the content under a temporary name and renames it into place
+    private void store(Path localFile, Path remoteFile) throws IOException {
+        String target = remoteFile.toString();
+        String temp = target + UPLOAD_SUFFIX;
+
+        try (var channel = FileChannel.open(localFile, StandardOpenOption.READ)) {
+            try {
+                OutputStream out = ftp.storeFileStream(temp);
+                if (out == null) {
+                    throw new IOException("Unable to upload file: " + remoteFile
+                            + " reply: " + ftp.getReplyString());
+                }
+
+                try (out) {
+                    send(channel, out);
+                }
+
+                if (!ftp.completePendingCommand()) {
+                    throw new IOException("Unable to upload file: " + remoteFile
+                            + " reply: " + ftp.getReplyString());
+                }
+
+                // some servers do not rename over an existing file
+                if (!ftp.rename(temp, target)
+                        && !(ftp.deleteFile(target) && ftp.rename(temp, target))) {
+                    throw new IOException("Unable to rename uploaded file: " + temp
+                            + " reply: " + ftp.getReplyString());
+                }
+
+            } catch (IOException ex) {
+                discardUpload(temp, ex);
+                throw ex;
+            }
+        }
+
+        invalidateListing(remoteFile.getParent());
+    }
+
+    // removes what a failed upload left on the server, a broken connection
+    // leaves it for the next upload of the file to overwrite
+    private void discardUpload(String temp, IOException failure) {
+        try {
+            ftp.deleteFile(temp);
+        } catch (IOException ex) {
+            failure.addSuppressed(ex);
+        }
+    }
+
+    // reads the local file from memory mapped windows instead of read calls
+    private void send(FileChannel channel, OutputStream out) throws IOException {
+        byte[] buffer = transferBuffer();
+        long size = channel.size();
+
+        for (long position = 0; position < size; ) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY
+                    , position, Math.min(MAP_WINDOW, size - position));
+            position += window.remaining();
+
+            while (window.hasRemaining()) {
+                int length = Math.min(buffer.length, window.remaining());
+                window.get(buffer, 0, length);
+                out.write(buffer, 0, length);
+                count(length);
+            }
+        }
+    }
+
+    private static void pause(Duration delay) throws IOException {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted...", ex);
+        }
+    }
+
+    // transfers the file, returns false if the server refused to send it
+    private boolean fetch(Path remote, Path local, FTPFile file, long offset
+            , OutputProvider outputProvider, TransferListener listener) throws IOException {
+
+        // a local file larger than the remote one is not a part of it
+        if (offset > 0 && offset < file.getSize()) {
+            boolean resumed;
+            try (var out = outputProvider.open(local, offset, file.getSize())) {
+                resumed = resumeFile(remote, out, offset);
+            }
+
+            if (resumed) {
+                return true;
+            }
+
+            listener.fileRetried(local, "Resume refused, downloading from the start");
+        }
+
+        if (threads > 1 && segmentThreshold > 0 && file.getSize() >= segmentThreshold
+                && supportsRestart()
+                && downloadRanges(remote, local, file, outputProvider, listener)) {
+            return true;
+        }
+
+        try (var out = outputProvider.open(local, 0, file.getSize())) {
+            return retrieve(remote, out);
+        }
+    }
+
+    /**
+     * Downloads the file in byte ranges shared by this and additional sessions.
+     *
+     * @return false if the output provider cannot write ranges
+     */
+    private boolean downloadRanges(Path remote, Path local, FTPFile file
+            , OutputProvider outputProvider, TransferListener listener) throws IOException {
+
+        try (var out = outputProvider.openRanges(local, file.getSize())) {
+            if (out == null) {
+                return false;
+            }
+
+            listener.message(String.format
+                    ("Downloading in %d ranges:[%s]", threads, local));
+
+            new SegmentedDownload(this, remote, file.getSize(), out, transfer, listener)
+                    .run(threads);
+
+            out.commit();
+        }
+
+        return true;
+    }
+
+    /**
+     * Bytes and timings of the transfer of a single file,
+     * shared by the sessions that download its ranges.
+     * Reports progress to the listener every {@link #PROGRESS_STEP} bytes.
+     */
+    static class Transfer implements CopyStreamListener {
+        private final long started = System.nanoTime();
+        private final Path file;
+        private final long size;
+        // bytes of the file that were already there (resume)
+        private final long offset;
+        private final TransferListener listener;
+
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong reportedSteps = new AtomicLong();
+        private volatile long firstByteNanos = -1;
+        private volatile long nanos = -1;
+
+        Transfer(Path file, long size, long offset, TransferListener listener) {
+            this.file = file;
+            this.size = size;
+            this.offset = offset;
+            this.listener = listener;
+        }
+
+        void add(long count) {
+            if (count <= 0) {
+                return;
+            }
+
+            long total = bytes.addAndGet(count);
+            if (total == count) {
+                firstByteNanos = System.nanoTime() - started;
+            }
+
+            // only the session that crosses a step reports it
+            long steps = total / PROGRESS_STEP;
+            long reported = reportedSteps.get();
+            if (steps > reported && reportedSteps.compareAndSet(reported, steps)) {
+                listener.bytesTransferred(file, offset + total, size);
+            }
+        }
+
+        void finish() {
+            nanos = System.nanoTime() - started;
+        }
+
+        long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * Time from the request to the first byte, -1 if no content has arrived.
+         */
+        long getFirstByteNanos() {
+            return firstByteNanos;
+        }
+
+        long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public void bytesTransferred(CopyStreamEvent event) {
+            add(event.getBytesTransferred());
+        }
+
+        @Override
+        public void bytesTransferred(long totalBytesTransferred, int bytesTransferred, long streamSize) {
+            add(bytesTransferred);
+        }
+    }
+
 }
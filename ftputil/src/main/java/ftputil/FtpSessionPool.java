@@ -0,0 +1,268 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Pool of logged-in FTP sessions keyed by server, port and user.
+ * <p>
+ * Sessions are borrowed with {@link #borrow} and go back to the pool when
+ * the borrowed {@link FtpClient} is closed, with the transfer settings of
+ * a new session. Idle sessions are checked with NOOP before being handed
+ * out again and are dropped after the idle timeout.
+ * <p>
+ * Besides the limit per host the pool can limit the number of sessions
+ * lent out at a time over all hosts, for several downloads to share.
+ */
+public class FtpSessionPool implements Closeable {
+    private final Supplier<FTPClient> ftpFactory;
+    private final int maxSessionsPerHost;
+    private final long idleTimeoutNanos;
+    // sessions lent out over all hosts
+    private final Semaphore permits;
+
+    private final Map<String, HostSessions> hosts = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    public FtpSessionPool() {
+        this(FTPClient::new, 4, Duration.ofMinutes(5));
+    }
+
+    public FtpSessionPool(Supplier<FTPClient> ftpFactory, int maxSessionsPerHost, Duration idleTimeout) {
+        this(ftpFactory, maxSessionsPerHost, Integer.MAX_VALUE, idleTimeout);
+    }
+
+    public FtpSessionPool(Supplier<FTPClient> ftpFactory, int maxSessionsPerHost, int maxSessions
+            , Duration idleTimeout) {
+        if (maxSessionsPerHost < 1) {
+            throw new IllegalArgumentException
+                    ("Number of sessions per host should be positive: " + maxSessionsPerHost);
+        }
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException
+                    ("Number of sessions should be positive: " + maxSessions);
+        }
+        this.ftpFactory = ftpFactory;
+        this.maxSessionsPerHost = maxSessionsPerHost;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.permits = new Semaphore(maxSessions, true);
+    }
+
+    /**
+     * Borrows an anonymous session on the default port.
+     */
+    public FtpClient borrow(URI server) throws IOException {
+        return borrow(server, FtpClient.DEFAULT_PORT, FtpClient.DEFAULT_USER, FtpClient.DEFAULT_PASSWORD);
+    }
+
+    /**
+     * Borrows a session, waiting for one to be returned
+     * if the host or the pool has reached its session limit.
+     */
+    public FtpClient borrow(URI server, int port, String user, String password) throws IOException {
+        HostSessions host = host(server, port, user);
+
+        try {
+            host.permits.acquire();
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                host.permits.release();
+                throw ex;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for FTP session: " + server, ex);
+        }
+
+        return take(host, server, port, user, password);
+    }
+
+    /**
+     * Borrows a session only if neither the host nor the pool
+     * has reached its session limit.
+     */
+    public Optional<FtpClient> tryBorrow(URI server, int port, String user, String password) throws IOException {
+        HostSessions host = host(server, port, user);
+
+        if (!host.permits.tryAcquire()) {
+            return Optional.empty();
+        }
+        if (!permits.tryAcquire()) {
+            host.permits.release();
+            return Optional.empty();
+        }
+
+        return Optional.of(take(host, server, port, user, password));
+    }
+
+    /**
+     * Closes sessions that have been idle for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        for (HostSessions host : hosts.values()) {
+            for (FtpClient client : host.expired(System.nanoTime() - idleTimeoutNanos)) {
+                quietlyDisconnect(client);
+            }
+        }
+    }
+
+    public int getIdleCount() {
+        return hosts.values().stream()
+                .mapToInt(HostSessions::idleCount)
+                .sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        for (HostSessions host : hosts.values()) {
+            for (FtpClient client : host.drain()) {
+                quietlyDisconnect(client);
+            }
+        }
+    }
+
+    // called by FtpClient.close() for borrowed sessions
+    void release(FtpClient client) {
+        HostSessions host = hosts.get(key(client.getServer(), client.getPort(), client.getUser()));
+
+        if (host == null || !host.returned(client, closed)) {
+            // not ours or already returned
+            return;
+        }
+
+        if (closed) {
+            quietlyDisconnect(client);
+        }
+
+        host.permits.release();
+        permits.release();
+
+        evictIdle();
+    }
+
+    private FtpClient take(HostSessions host, URI server, int port, String user, String password)
+            throws IOException {
+        try {
+            evictIdle();
+
+            FtpClient client;
+            while ((client = host.poll()) != null) {
+                // keep-alive check of an idle control connection
+                if (client.isAlive()) {
+                    host.lent(client);
+                    return client;
+                }
+                quietlyDisconnect(client);
+            }
+
+            client = FtpClient.getClient(server, ftpFactory.get(), port, user, password);
+            client.setPool(this);
+            host.lent(client);
+
+            return client;
+        } catch (IOException | RuntimeException ex) {
+            host.permits.release();
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private HostSessions host(URI server, int port, String user) throws IOException {
+        if (closed) {
+            throw new IOException("FTP session pool is closed");
+        }
+        return hosts.computeIfAbsent(key(server, port, user), k -> new HostSessions(maxSessionsPerHost));
+    }
+
+    private static String key(URI server, int port, String user) {
+        return user + "@" + server + ":" + port;
+    }
+
+    private static void quietlyDisconnect(FtpClient client) {
+        try {
+            client.disconnect();
+        } catch (IOException ex) {
+            // the session is discarded anyway
+        }
+    }
+
+    private static class HostSessions {
+        private final Semaphore permits;
+        private final Deque<FtpClient> idle = new ArrayDeque<>();
+        private final Map<FtpClient, Long> idleSince = new IdentityHashMap<>();
+        private final Set<FtpClient> borrowed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        HostSessions(int maxSessions) {
+            this.permits = new Semaphore(maxSessions, true);
+        }
+
+        synchronized FtpClient poll() {
+            FtpClient client = idle.pollFirst();
+            if (client != null) {
+                idleSince.remove(client);
+            }
+            return client;
+        }
+
+        synchronized void lent(FtpClient client) {
+            borrowed.add(client);
+        }
+
+        synchronized boolean returned(FtpClient client, boolean discard) {
+            if (!borrowed.remove(client)) {
+                return false;
+            }
+            if (!discard) {
+                // the next borrower may be a different download
+                client.resetSettings();
+                // most recently used sessions are handed out first
+                idle.addFirst(client);
+                idleSince.put(client, System.nanoTime());
+            }
+            return true;
+        }
+
+        synchronized List<FtpClient> expired(long idleBefore) {
+            List<FtpClient> expired = new ArrayList<>();
+            idle.removeIf(client -> {
+                if (idleSince.get(client) - idleBefore <= 0) {
+                    idleSince.remove(client);
+                    expired.add(client);
+                    return true;
+                }
+                return false;
+            });
+            return expired;
+        }
+
+        synchronized List<FtpClient> drain() {
+            List<FtpClient> all = new ArrayList<>(idle);
+            idle.clear();
+            idleSince.clear();
+            return all;
+        }
+
+        synchronized int idleCount() {
+            return idle.size();
+        }
+    }
+}
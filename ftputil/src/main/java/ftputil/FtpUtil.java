@@ -3,20 +3,40 @@ package ftputil;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.net.ftp.FTPClient;
 
+import javax.management.JMException;
 import java.io.*;
 import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.nio.file.Path;
 import java.nio.file.Files;
-import java.util.function.Function;
+import java.time.Duration;
 
 
 public class FtpUtil {
+    // byte progress events waiting to be printed
+    private static final int EVENT_BUFFER_SIZE = 1024;
+    // longest wait between two attempts of a file
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+    // longest wait between two polls of an unchanged directory in watch mode
+    static final Duration DEFAULT_MAX_WATCH_INTERVAL = Duration.ofMinutes(15);
+    // how long Ctrl+C waits for the running poll of a watch
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
     public static void main(String... args) {
 
         var cli = new CliParser();
 
         try {
+            // many jobs in one run
+            Path batchFile = BatchConfig.batchFile(args);
+            if (batchFile != null) {
+                runBatch(batchFile);
+                return;
+            }
+
             // understand user defined options
             cli.parse(args);
 
@@ -29,14 +49,13 @@ public class FtpUtil {
             Files.createDirectories(cli.getLocalBase().resolve(cli.getDir()));
 
             /// create an instance
-            FtpUtil utility = new FtpUtil(cli.getServer()
-            , cli.getRemoteBase(), cli.getDir(), cli.getLocalBase());
+            FtpUtil utility = of(cli);
 
             // divider from previous outputs
             System.out.println();
 
             // run the job
-            utility.ConnectAndDownload();
+            utility.run();
 
         } catch (ParseException ex) {
             System.out.println("Parsing of command line arguments failed: "
@@ -57,9 +76,98 @@ public class FtpUtil {
         }
     }
 
+    private static void runBatch(Path batchFile) throws ParseException {
+        BatchConfig config;
+        try {
+            config = BatchConfig.load(batchFile);
+        } catch (IOException ex) {
+            System.out.format("Unable to read batch file: [%s] reason: [%s]", batchFile, ex.getMessage());
+            System.out.println();
+            return;
+        }
+
+        System.out.println();
+        System.out.format("Proceeding with %d jobs sharing %d sessions"
+                , config.getJobs().size(), config.getSessions());
+        System.out.println();
+        System.out.println("Max rate of all jobs: ["
+                + (config.getMaxRate() == 0 ? "unlimited" : config.getMaxRate() + " B/s")
+                + (config.getRateSchedule() == null ? "" : " schedule " + config.getRateSchedule()) + "]");
+
+        for (var job : config.getJobs()) {
+            System.out.println("[" + job.getName() + "]");
+            job.getOptions().printReport();
+        }
+
+        System.out.println();
+
+        new BatchRun(config).run();
+    }
+
+    /**
+     * Creates an instance set up with the parsed command line options.
+     */
+    static FtpUtil of(CliParser cli) {
+        FtpUtil utility = new FtpUtil(cli.getServer()
+                , cli.getRemoteBase(), cli.getDir(), cli.getLocalBase());
+        utility.setThreads(cli.getThreads());
+        utility.setResume(cli.isResume());
+        utility.setSync(cli.isSync());
+        utility.setAtomic(cli.isAtomic());
+        utility.setPush(cli.isPush());
+        if (cli.getWatch() > 0) {
+            utility.setWatchInterval(Duration.ofSeconds(cli.getWatch()));
+            utility.setMaxWatchInterval(Duration.ofSeconds(Math.max(cli.getWatch(), cli.getWatchMax())));
+        }
+        utility.setRecursive(cli.isRecursive());
+        utility.setVirtualThreads(cli.isVirtualThreads());
+        utility.setBufferSize(cli.getBufferSize());
+        utility.setSegmentThreshold(cli.getSegmentThreshold() * 1024L * 1024);
+        utility.setJmx(cli.isJmx());
+        utility.setRetryPolicy(new RetryPolicy(cli.getRetries() + 1
+                , Duration.ofMillis(cli.getRetryBackoff())
+                , Duration.ofMillis(Math.max(cli.getRetryBackoff(), MAX_RETRY_BACKOFF_MS)), 0.5));
+        utility.setChecksumAlgorithm(cli.getVerify());
+        utility.setTransform(cli.getTransform());
+        utility.setFileFilter(cli.getFileFilter());
+
+        if (cli.getMaxRate() > 0 || cli.getRateSchedule() != null) {
+            var limiter = new RateLimiter(cli.getMaxRate());
+            limiter.setSchedule(cli.getRateSchedule());
+            utility.setRateLimiter(limiter);
+        }
+
+        return utility;
+    }
+
     private final URI server;
     private final Path fullRemotePath;
     private final Path fullLocalPath;
+    private int threads = 1;
+    private boolean resume = false;
+    private boolean sync = false;
+    private boolean atomic = false;
+    private boolean push = false;
+    private Duration watchInterval;
+    private Duration maxWatchInterval = DEFAULT_MAX_WATCH_INTERVAL;
+    private boolean recursive = false;
+    private boolean virtualThreads = false;
+    private int bufferSize = 0;
+    private long segmentThreshold = FtpClient.DEFAULT_SEGMENT_THRESHOLD;
+    private FtpSessionPool sessionPool;
+    private boolean jmx = false;
+    private TransferMetrics metrics;
+    private RetryPolicy retryPolicy = RetryPolicy.of(4);
+    private ChecksumAlgorithm checksumAlgorithm;
+    private RateLimiter rateLimiter;
+    // limiter of a batch, registered with JMX by the batch
+    private RateLimiter sharedRateLimiter;
+    private OutputTransform transform;
+    private RemoteFileFilter fileFilter;
+    // prefix of the progress messages of a batch job
+    private String name;
+    // why the last run could not talk to the server, null if it could
+    private String failure;
 
     public FtpUtil(URI server, Path remoteBase, Path dataDir, Path localBase) {
         this.server = server;
@@ -67,37 +175,87 @@ public class FtpUtil {
         this.fullLocalPath = localBase.resolve(dataDir);
     }
 
+    /**
+     * Uploads in push mode, keeps downloading in watch mode,
+     * downloads once otherwise.
+     */
+    public void run() {
+        if (push) {
+            ConnectAndUpload();
+        } else if (watchInterval != null) {
+            ConnectAndWatch();
+        } else {
+            ConnectAndDownload();
+        }
+    }
+
     public void ConnectAndDownload () {
         // prepare to measure elapsed time
         long startTime = System.nanoTime();
+        failure = null;
+
+        // what has been downloaded by previous sync runs
+        Manifest manifest = sync ? loadManifest() : null;
+
+        metrics = new TransferMetrics();
+        if (jmx) {
+            registerMetrics();
+        }
 
         // download files from FTP server
-        try(var client = FtpClient.getClient(server, new FTPClient())) {
+        try(var client = connect()) {
+
+            metrics.sessionOpened(client.getServer(), client.getConnectNanos(), client.getLoginNanos());
+
+            configure(client);
 
             // provide output stream to copy a remote file content into
-            Function<Path, OutputStream> outputProvider =
-                    file -> {
-                        try {
-                            return new BufferedOutputStream(
-                                    new FileOutputStream
-                                            (fullLocalPath.resolve(file).toFile()));
-                        } catch (FileNotFoundException e) {
-                            throw new RuntimeException("Cannot create files in the local directory...",e);
-                        }
-                    };
-
-            // react to FtpClient updates
-            Consumer<String> downloadProgressEvent = System.out::println;
-
-            // download all files form the remoteDir
-            client.downloadAllFiles(fullRemotePath, outputProvider, downloadProgressEvent);
+            var outputProvider = localOutput(sync, manifest);
+
+            // print from a separate thread so that the console never holds up transfers
+            try (var console = new AsyncTransferListener
+                    (TransferListener.of(progressReporter()), EVENT_BUFFER_SIZE)) {
+
+                // download all files form the remoteDir
+                client.downloadAllFiles(fullRemotePath, pipeline(outputProvider), console.andThen(metrics));
+            }
+
+            if (sync) {
+                System.out.println();
+                System.out.format("up to date: %d files, %d bytes saved"
+                        , outputProvider.getUpToDateFiles(), outputProvider.getUpToDateBytes());
+                System.out.println();
+            }
 
         } catch (IOException ex) {
+            failure = ex.getMessage();
             System.out.println("Communication with FTP server failed...");
-            ex.printStackTrace();
+            System.out.println("Reason: " + ex.getMessage());
             return;
+        } finally {
+            // keep track of whatever has been downloaded so far
+            if (manifest != null) {
+                saveManifest(manifest);
+            }
+
+            if (jmx) {
+                unregisterMetrics();
+            }
         }
 
+        System.out.println();
+        System.out.format("downloaded: %d files, %d bytes, %.1f KiB/s, time to first byte: %.1f (ms) average"
+                , metrics.getFilesCompleted(), metrics.getBytes()
+                , metrics.getBytesPerSecond() / 1024, metrics.getAverageFirstByteMillis());
+        System.out.println();
+
+        if (checksumAlgorithm != null) {
+            System.out.format("verified: %d files (%s)", metrics.getFilesVerified(), checksumAlgorithm.getName());
+            System.out.println();
+        }
+
+        printFailures();
+
         // report elapsed time
         long elapsedTime = System.nanoTime() - startTime;
 
@@ -106,6 +264,272 @@ public class FtpUtil {
         System.out.println();
     }
 
+    /**
+     * Uploads the local files that are new or changed since the last push
+     * into the remote directory. What has been pushed is kept in a manifest
+     * of the local directory, see {@link Manifest#PUSH_FILE_NAME}.
+     */
+    public void ConnectAndUpload() {
+        // prepare to measure elapsed time
+        long startTime = System.nanoTime();
+        failure = null;
+
+        Manifest manifest = loadManifest(Manifest.PUSH_FILE_NAME);
+
+        metrics = new TransferMetrics();
+        if (jmx) {
+            registerMetrics();
+        }
+
+        // upload files to FTP server
+        try (var client = connect()) {
+
+            metrics.sessionOpened(client.getServer(), client.getConnectNanos(), client.getLoginNanos());
+
+            client.setThreads(threads);
+            client.setBufferSize(bufferSize);
+            client.setRetryPolicy(retryPolicy);
+
+            var changed = changedFiles(FtpClient.localFiles(fullLocalPath, recursive), manifest);
+
+            System.out.format("changed since the last push: %d files", changed.size());
+            System.out.println();
+
+            // record what made it to the server
+            TransferListener pushed = new TransferListener() {
+                @Override
+                public void fileCompleted(Path file, long bytes, long nanos) {
+                    Manifest.Entry entry = changed.get(file);
+                    manifest.put(file.toString(), new Manifest.Entry
+                            (entry.getSize(), entry.getModified(), 0, System.currentTimeMillis()));
+                }
+            };
+
+            try (var console = new AsyncTransferListener
+                    (TransferListener.of(progressReporter(), "Uploading"), EVENT_BUFFER_SIZE)) {
+
+                client.uploadAllFiles(fullLocalPath, List.copyOf(changed.keySet()), fullRemotePath
+                        , console.andThen(metrics).andThen(pushed));
+            }
+
+        } catch (IOException ex) {
+            failure = ex.getMessage();
+            System.out.println("Communication with FTP server failed...");
+            System.out.println("Reason: " + ex.getMessage());
+            return;
+        } finally {
+            // keep track of whatever has been pushed so far
+            saveManifest(manifest);
+
+            if (jmx) {
+                unregisterMetrics();
+            }
+        }
+
+        System.out.println();
+        System.out.format("uploaded: %d files, %d bytes, %.1f KiB/s"
+                , metrics.getFilesCompleted(), metrics.getBytes()
+                , metrics.getBytesPerSecond() / 1024);
+        System.out.println();
+
+        printFailures();
+
+        // report elapsed time
+        long elapsedTime = System.nanoTime() - startTime;
+
+        System.out.println();
+        System.out.format("elapsed time: %.0f (ms)",elapsedTime * 1e-6);
+        System.out.println();
+    }
+
+    /**
+     * Keeps polling the remote directory and downloads what is new or
+     * changed, until the process is stopped. Always syncs, so that a
+     * restarted watch does not download the directory again.
+     *
+     * @see RemoteWatcher
+     */
+    public void ConnectAndWatch() {
+        failure = null;
+
+        Manifest manifest = loadManifest();
+
+        metrics = new TransferMetrics();
+        if (jmx) {
+            registerMetrics();
+        }
+
+        try (var client = connect()) {
+
+            metrics.sessionOpened(client.getServer(), client.getConnectNanos(), client.getLoginNanos());
+
+            configure(client);
+
+            var outputProvider = localOutput(true, manifest);
+
+            // keep track of what has been downloaded after every poll that changed something
+            TransferListener saving = new TransferListener() {
+                @Override
+                public void polled(Path remoteDir, int changed, int removed, long nextPollNanos) {
+                    if (changed > 0) {
+                        saveManifest(manifest);
+                    }
+                }
+            };
+
+            try (var console = new AsyncTransferListener
+                    (TransferListener.of(progressReporter()), EVENT_BUFFER_SIZE)) {
+
+                var watcher = new RemoteWatcher(client, fullRemotePath, pipeline(outputProvider)
+                        , console.andThen(metrics).andThen(saving), watchInterval, maxWatchInterval);
+
+                // let the current poll finish on Ctrl+C, the manifest is saved below
+                Thread watching = Thread.currentThread();
+                Thread hook = new Thread(() -> {
+                    watcher.stop();
+                    try {
+                        watching.join(SHUTDOWN_TIMEOUT_MS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "ftputil-shutdown");
+                Runtime.getRuntime().addShutdownHook(hook);
+
+                try {
+                    watcher.run();
+                } finally {
+                    try {
+                        Runtime.getRuntime().removeShutdownHook(hook);
+                    } catch (IllegalStateException ex) {
+                        // shutting down already
+                    }
+                }
+            }
+
+        } catch (IOException ex) {
+            failure = ex.getMessage();
+            System.out.println("Communication with FTP server failed...");
+            System.out.println("Reason: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            saveManifest(manifest);
+
+            if (jmx) {
+                unregisterMetrics();
+            }
+        }
+
+        System.out.println();
+        System.out.format("watched: %d polls, %d files downloaded, %d bytes"
+                , metrics.getPolls(), metrics.getFilesCompleted(), metrics.getBytes());
+        System.out.println();
+
+        printFailures();
+    }
+
+    // settings of the session that lists and downloads
+    private void configure(FtpClient client) {
+        client.setThreads(threads);
+        client.setRecursive(recursive);
+        client.setVirtualThreads(virtualThreads);
+        client.setFileFilter(fileFilter);
+        client.setBufferSize(bufferSize);
+        client.setSegmentThreshold(segmentThreshold);
+        client.setRetryPolicy(retryPolicy);
+        client.setChecksumAlgorithm(checksumAlgorithm);
+    }
+
+    private LocalOutputProvider localOutput(boolean sync, Manifest manifest) {
+        var outputProvider = new LocalOutputProvider(fullLocalPath);
+        outputProvider.setResume(resume);
+        outputProvider.setSync(sync);
+        outputProvider.setAtomic(atomic);
+        outputProvider.setManifest(manifest);
+        outputProvider.setBufferSize(bufferSize);
+        outputProvider.setChecksumAlgorithm(checksumAlgorithm);
+        return outputProvider;
+    }
+
+    // react to FtpClient updates
+    private Consumer<String> progressReporter() {
+        if (name == null) {
+            return System.out::println;
+        }
+        // tell the jobs of a batch apart
+        return message -> System.out.println("[" + name + "] " + message);
+    }
+
+    // local files whose size or modification time differ from the last push
+    private Map<Path, Manifest.Entry> changedFiles(List<Path> files, Manifest manifest) throws IOException {
+        Map<Path, Manifest.Entry> changed = new LinkedHashMap<>();
+
+        for (Path file : files) {
+            Path local = fullLocalPath.resolve(file);
+            // taken before the upload, a file modified meanwhile is pushed again next time
+            long size = Files.size(local);
+            long modified = Files.getLastModifiedTime(local).toMillis();
+
+            Manifest.Entry entry = manifest.get(file.toString());
+            if (entry == null || entry.getSize() != size || entry.getModified() != modified) {
+                changed.put(file, new Manifest.Entry(size, modified, 0, 0));
+            }
+        }
+
+        return changed;
+    }
+
+    // stages between the transfers and the local files
+    private OutputProvider pipeline(LocalOutputProvider outputProvider) {
+        OutputProvider pipeline = outputProvider;
+
+        if (transform != null) {
+            var transforming = new TransformingOutputProvider(pipeline, transform);
+            transforming.setChecksumAlgorithm(checksumAlgorithm);
+            pipeline = transforming;
+        }
+
+        // the limit applies to the bytes as they arrive
+        if (rateLimiter != null) {
+            pipeline = new RateLimitedOutputProvider(pipeline, rateLimiter);
+        }
+        if (sharedRateLimiter != null) {
+            pipeline = new RateLimitedOutputProvider(pipeline, sharedRateLimiter);
+        }
+
+        return pipeline;
+    }
+
+    private Manifest loadManifest() {
+        return loadManifest(Manifest.FILE_NAME);
+    }
+
+    private Manifest loadManifest(String fileName) {
+        try {
+            return Manifest.load(fullLocalPath, fileName);
+        } catch (IOException ex) {
+            System.out.println("Ignoring unreadable manifest: " + ex.getMessage());
+            return Manifest.empty(fullLocalPath, fileName);
+        }
+    }
+
+    private void saveManifest(Manifest manifest) {
+        try {
+            manifest.save();
+        } catch (IOException ex) {
+            System.out.println("Unable to save manifest: " + ex.getMessage());
+        }
+    }
+
+    private FtpClient connect() throws IOException {
+        if (sessionPool != null) {
+            // reuse a logged-in session, it goes back to the pool on close
+            return sessionPool.borrow(server);
+        }
+
+        return FtpClient.getClient(server, new FTPClient());
+    }
+
     public URI getServer() {
         return server;
     }
@@ -114,7 +538,291 @@ public class FtpUtil {
         return fullRemotePath;
     }
 
+    private void printFailures() {
+        var failures = metrics.getFailures();
+        if (failures.isEmpty()) {
+            return;
+        }
+
+        System.out.println();
+        System.out.format("failed: %d files", failures.size());
+        System.out.println();
+
+        failures.forEach((file, reason) ->
+                System.out.println("\t[" + file + "] " + reason));
+    }
+
+    private void registerMetrics() {
+        try {
+            metrics.register(fullRemotePath.toString());
+
+            // the rate can be changed from the console while downloading
+            if (rateLimiter != null) {
+                rateLimiter.register(fullRemotePath.toString());
+            }
+        } catch (JMException ex) {
+            System.out.println("Unable to register JMX metrics: " + ex.getMessage());
+        }
+    }
+
+    private void unregisterMetrics() {
+        try {
+            metrics.unregister();
+
+            if (rateLimiter != null) {
+                rateLimiter.unregister();
+            }
+        } catch (JMException ex) {
+            System.out.println("Unable to unregister JMX metrics: " + ex.getMessage());
+        }
+    }
+
     public Path getFullLocalPath() {
         return fullLocalPath;
     }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Continues partially downloaded local files instead of downloading them again.
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Skips remote files whose local copy is already up to date.
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    public boolean isAtomic() {
+        return atomic;
+    }
+
+    /**
+     * Writes files under a temporary name and moves them into place once
+     * complete, see {@link LocalOutputProvider#setAtomic}.
+     */
+    public void setAtomic(boolean atomic) {
+        this.atomic = atomic;
+    }
+
+    public boolean isPush() {
+        return push;
+    }
+
+    /**
+     * Makes {@link #run} upload changed local files instead of downloading.
+     */
+    public void setPush(boolean push) {
+        this.push = push;
+    }
+
+    public Duration getWatchInterval() {
+        return watchInterval;
+    }
+
+    /**
+     * Makes {@link #run} poll the remote directory for changes, at least
+     * this long apart. Null downloads once.
+     */
+    public void setWatchInterval(Duration watchInterval) {
+        this.watchInterval = watchInterval;
+    }
+
+    public Duration getMaxWatchInterval() {
+        return maxWatchInterval;
+    }
+
+    /**
+     * Longest time between polls of a directory that does not change.
+     */
+    public void setMaxWatchInterval(Duration maxWatchInterval) {
+        this.maxWatchInterval = maxWatchInterval;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prefixes the progress messages, to tell the jobs of a batch apart.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Reason why the last run could not communicate with the server,
+     * null if it could.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Mirrors the whole remote tree instead of the files of a single directory.
+     */
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Downloads every file in a virtual thread when the JDK has them,
+     * see {@link FtpClient#setVirtualThreads}.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Copies downloads through buffers of the given size and writes them
+     * with file channels, zero for the default buffered streams.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public long getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    /**
+     * Downloads files of at least this many bytes in ranges
+     * over several sessions, zero to always use a single one.
+     */
+    public void setSegmentThreshold(long segmentThreshold) {
+        this.segmentThreshold = segmentThreshold;
+    }
+
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    /**
+     * Publishes the metrics of the running download as an MXBean.
+     */
+    public void setJmx(boolean jmx) {
+        this.jmx = jmx;
+    }
+
+    /**
+     * Metrics of the last (or the running) download, null before the first one.
+     */
+    public TransferMetrics getMetrics() {
+        return metrics;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Retries files that failed to download, see {@link FtpClient#setRetryPolicy}.
+     * Null stops the run at the first failure.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Verifies downloads with checksums from the server, see
+     * {@link FtpClient#setChecksumAlgorithm}. Null skips verification.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Limits the bytes per second written by all sessions of the download.
+     * A limiter shared by several FtpUtil instances limits them together.
+     * Null for no limit.
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public RateLimiter getSharedRateLimiter() {
+        return sharedRateLimiter;
+    }
+
+    /**
+     * Limits the download together with the other jobs of a batch, on top
+     * of its own limiter. Unlike the own limiter it is not registered with
+     * JMX by this instance. Null for no shared limit.
+     */
+    public void setSharedRateLimiter(RateLimiter sharedRateLimiter) {
+        this.sharedRateLimiter = sharedRateLimiter;
+    }
+
+    public OutputTransform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Transforms the content of downloaded files before it is written,
+     * e.g. decompresses .gz files. Null writes files as they are.
+     */
+    public void setTransform(OutputTransform transform) {
+        this.transform = transform;
+    }
+
+    public RemoteFileFilter getFileFilter() {
+        return fileFilter;
+    }
+
+    /**
+     * Downloads only the files the filter accepts, null for every file.
+     */
+    public void setFileFilter(RemoteFileFilter fileFilter) {
+        this.fileFilter = fileFilter;
+    }
+
+    public FtpSessionPool getSessionPool() {
+        return sessionPool;
+    }
+
+    /**
+     * Shares logged-in sessions with other FtpUtil instances
+     * using the same pool instead of connecting on every run.
+     */
+    public void setSessionPool(FtpSessionPool sessionPool) {
+        this.sessionPool = sessionPool;
+    }
 }
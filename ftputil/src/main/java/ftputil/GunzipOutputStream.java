@@ -0,0 +1,182 @@
+package ftputil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Output stream that takes gzip content and writes it decompressed,
+ * the counterpart of {@link java.util.zip.GZIPInputStream} for content
+ * that is pushed rather than pulled. Concatenated gzip members are
+ * decompressed one after the other, the checksum and size in the trailer
+ * of every member are checked.
+ */
+public class GunzipOutputStream extends FilterOutputStream {
+    private static final int MAGIC = 0x8b1f;
+    // header flags
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int TRAILER_SIZE = 8;
+
+    private enum State { HEADER, BODY, TRAILER }
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[64 * 1024];
+    // header or trailer bytes until they are complete
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private State state = State.HEADER;
+    private long size;
+    private boolean closed = false;
+
+    public GunzipOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+
+        while (off < end) {
+            if (state == State.BODY) {
+                inflater.setInput(b, off, end - off);
+                inflate();
+
+                if (!inflater.finished()) {
+                    // everything went into the inflater
+                    return;
+                }
+
+                off = end - inflater.getRemaining();
+                state = State.TRAILER;
+                continue;
+            }
+
+            pending.write(b[off++]);
+
+            if (state == State.HEADER && pending.size() == headerLength(pending.toByteArray())) {
+                pending.reset();
+                inflater.reset();
+                crc.reset();
+                size = 0;
+                state = State.BODY;
+            } else if (state == State.TRAILER && pending.size() == TRAILER_SIZE) {
+                checkTrailer(pending.toByteArray());
+                pending.reset();
+                // another member may follow
+                state = State.HEADER;
+            }
+        }
+    }
+
+    private void inflate() throws IOException {
+        try {
+            while (!inflater.finished() && !inflater.needsInput()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated > 0) {
+                    out.write(buffer, 0, inflated);
+                    crc.update(buffer, 0, inflated);
+                    size += inflated;
+                } else if (inflater.needsDictionary()) {
+                    throw new ZipException("Unsupported gzip content: preset dictionary");
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new ZipException("Corrupt gzip content: " + ex.getMessage());
+        }
+    }
+
+    // length of the complete header, or -1 if more bytes are needed
+    private static int headerLength(byte[] header) throws ZipException {
+        if (header.length >= 2 && (uint16(header, 0) != MAGIC)) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (header.length >= 3 && header[2] != 8) {
+            throw new ZipException("Unsupported gzip compression method: " + header[2]);
+        }
+        if (header.length < 10) {
+            return -1;
+        }
+
+        int flags = header[3] & 0xff;
+        int length = 10;
+
+        if ((flags & FEXTRA) != 0) {
+            if (header.length < length + 2) {
+                return -1;
+            }
+            length += 2 + uint16(header, length);
+        }
+        if ((flags & FNAME) != 0) {
+            length = skipZeroTerminated(header, length);
+        }
+        if ((flags & FCOMMENT) != 0 && length > 0) {
+            length = skipZeroTerminated(header, length);
+        }
+        if ((flags & FHCRC) != 0 && length > 0) {
+            length += 2;
+        }
+
+        return length > 0 && header.length >= length ? length : -1;
+    }
+
+    private static int skipZeroTerminated(byte[] header, int from) {
+        for (int i = from; i < header.length; i++) {
+            if (header[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private void checkTrailer(byte[] trailer) throws ZipException {
+        long expectedCrc = uint16(trailer, 0) | ((long) uint16(trailer, 2) << 16);
+        long expectedSize = uint16(trailer, 4) | ((long) uint16(trailer, 6) << 16);
+
+        if (expectedCrc != crc.getValue()) {
+            throw new ZipException("Corrupt gzip content: CRC mismatch");
+        }
+        // the size is kept modulo 2^32
+        if (expectedSize != (size & 0xffffffffL)) {
+            throw new ZipException("Corrupt gzip content: size mismatch");
+        }
+    }
+
+    private static int uint16(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8);
+    }
+
+    /**
+     * Closes the stream, failing if the gzip content ended half way.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (state != State.HEADER || pending.size() > 0) {
+                throw new EOFException("Unexpected end of gzip content");
+            }
+        } finally {
+            inflater.end();
+            super.close();
+        }
+    }
+}
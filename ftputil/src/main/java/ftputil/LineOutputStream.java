@@ -0,0 +1,108 @@
+package ftputil;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Output stream that passes its content on and splits it into UTF-8
+ * lines on the way. The lines completed by a write are handed over
+ * together, a line that has not ended yet is kept until it does.
+ * Lines end with \n or \r\n, empty lines are left out.
+ * <p>
+ * A last line without a terminator is only handed over by {@link #finish()},
+ * once the content is known to be complete. A stream that is closed without
+ * it drops the line, so that a transfer that fails mid-line does not pass
+ * on a truncated line.
+ */
+public class LineOutputStream extends FilterOutputStream {
+
+    /**
+     * Receives the lines completed by a write.
+     */
+    @FunctionalInterface
+    public interface LineSink {
+        void lines(List<String> lines) throws IOException;
+    }
+
+    private final LineSink sink;
+    // start of the line that has not ended yet
+    private byte[] partial = new byte[1024];
+    private int partialLength = 0;
+
+    public LineOutputStream(OutputStream out, LineSink sink) {
+        super(out);
+        this.sink = sink;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+
+        List<String> lines = new ArrayList<>();
+        int start = off;
+        int end = off + len;
+
+        for (int i = off; i < end; i++) {
+            if (b[i] != '\n') {
+                continue;
+            }
+
+            if (partialLength > 0) {
+                append(b, start, i - start);
+                line(lines, partial, 0, partialLength);
+                partialLength = 0;
+            } else {
+                line(lines, b, start, i - start);
+            }
+            start = i + 1;
+        }
+
+        append(b, start, end - start);
+
+        if (!lines.isEmpty()) {
+            sink.lines(lines);
+        }
+    }
+
+    private void append(byte[] b, int off, int len) {
+        if (partialLength + len > partial.length) {
+            partial = Arrays.copyOf(partial, Math.max(partial.length * 2, partialLength + len));
+        }
+        System.arraycopy(b, off, partial, partialLength, len);
+        partialLength += len;
+    }
+
+    private static void line(List<String> lines, byte[] b, int off, int len) {
+        if (len > 0 && b[off + len - 1] == '\r') {
+            len--;
+        }
+        if (len > 0) {
+            lines.add(new String(b, off, len, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Hands over the last line if the content does not end with a line
+     * terminator. Called once the whole content has been written, before
+     * or after the stream is closed.
+     */
+    public void finish() throws IOException {
+        List<String> last = new ArrayList<>();
+        line(last, partial, 0, partialLength);
+        partialLength = 0;
+
+        if (!last.isEmpty()) {
+            sink.lines(last);
+        }
+    }
+}
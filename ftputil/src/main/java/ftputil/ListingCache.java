@@ -0,0 +1,173 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listings of remote directories kept for the sessions of one server,
+ * see {@link FtpClient#setListingCache}.
+ * <p>
+ * A listing is served from the cache for the time to live after it was
+ * listed. After that it is revalidated: if the server reports the
+ * modification time of directories (MDTM) and it has not changed, the
+ * listing is kept for another time to live, otherwise the directory is
+ * listed again. The directory time changes when entries are added, removed
+ * or renamed, not when a file is rewritten in place, so revalidation can
+ * be turned off for directories whose files change that way.
+ * <p>
+ * The cache holds at most the given number of directories and drops
+ * the least recently used one to make room.
+ */
+public class ListingCache {
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private volatile boolean revalidate = true;
+
+    // in access order, the eldest is the least recently used
+    private final Map<Path, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    public ListingCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    public ListingCache(int maxEntries, Duration ttl) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Number of cached listings should be positive: " + maxEntries);
+        }
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException("Time to live should not be negative: " + ttl);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, ListingCache.Entry> eldest) {
+                return size() > ListingCache.this.maxEntries;
+            }
+        };
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public Duration getTtl() {
+        return Duration.ofNanos(ttlNanos);
+    }
+
+    public boolean isRevalidate() {
+        return revalidate;
+    }
+
+    /**
+     * Checks expired listings with MDTM on the directory before listing
+     * it again, when the server supports it. On by default.
+     */
+    public void setRevalidate(boolean revalidate) {
+        this.revalidate = revalidate;
+    }
+
+    /**
+     * Drops the listing of a directory, the next one goes to the server.
+     */
+    public synchronized void invalidate(Path remoteDir) {
+        entries.remove(remoteDir);
+    }
+
+    /**
+     * Drops every listing.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Listings served from the cache, revalidated ones included.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Listings that went to the server.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Expired listings kept because the directory had not changed.
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    // cached listing of the directory, expired or not, null if there is none
+    synchronized Entry get(Path remoteDir) {
+        return entries.get(remoteDir);
+    }
+
+    synchronized void put(Path remoteDir, List<FTPFile> files, String modified) {
+        entries.put(remoteDir, new Entry(List.copyOf(files), modified, System.nanoTime()));
+    }
+
+    // keeps an expired listing for another time to live
+    synchronized void renew(Path remoteDir, Entry entry) {
+        // unless it has been replaced or dropped meanwhile
+        if (entries.get(remoteDir) == entry) {
+            entries.put(remoteDir, new Entry(entry.files, entry.modified, System.nanoTime()));
+        }
+        revalidations.incrementAndGet();
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.listed >= ttlNanos;
+    }
+
+    static class Entry {
+        private final List<FTPFile> files;
+        // MDTM reply of the directory taken before it was listed, null if unknown
+        private final String modified;
+        private final long listed;
+
+        private Entry(List<FTPFile> files, String modified, long listed) {
+            this.files = files;
+            this.modified = modified;
+            this.listed = listed;
+        }
+
+        List<FTPFile> getFiles() {
+            return files;
+        }
+
+        String getModified() {
+            return modified;
+        }
+    }
+}
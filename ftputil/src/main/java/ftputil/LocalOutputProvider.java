@@ -0,0 +1,568 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+
+/**
+ * Writes downloaded files into a local directory.
+ */
+public class LocalOutputProvider implements OutputProvider {
+    // suffix of files that are still being written in ranges or in atomic mode
+    static final String PART_SUFFIX = ".part";
+    // bytes written between two forces of the content to disk in atomic mode
+    static final long DEFAULT_FORCE_INTERVAL = 16 * 1024 * 1024;
+
+    private final Path localDir;
+    private boolean resume = false;
+    private boolean sync = false;
+    private Manifest manifest;
+    // files are written through a FileChannel when positive
+    private int bufferSize = 0;
+    // files appear under their name only once complete
+    private boolean atomic = false;
+    private long forceInterval = DEFAULT_FORCE_INTERVAL;
+
+    // checksums of the files being written, until they are recorded in the manifest
+    private final Map<Path, Checksum> checksums = new ConcurrentHashMap<>();
+    // computed while writing when set, to verify downloads without reading them again
+    private ChecksumAlgorithm checksumAlgorithm;
+    private final Map<Path, MessageDigest> digests = new ConcurrentHashMap<>();
+
+    // files opened but not completed yet, they can be continued after a failure
+    private final Set<Path> partial = ConcurrentHashMap.newKeySet();
+
+    // files skipped by the sync mode
+    private final AtomicLong upToDateFiles = new AtomicLong();
+    private final AtomicLong upToDateBytes = new AtomicLong();
+
+    public LocalOutputProvider(Path localDir) {
+        this.localDir = localDir;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * When enabled, existing local files are treated as partially
+     * downloaded and only the remaining bytes are requested.
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * When enabled, local files with the same size and a modification time
+     * no older than the remote one are considered up to date.
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    public Manifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Records completed downloads in the manifest and uses it instead
+     * of the local files to decide what is up to date.
+     */
+    public void setManifest(Manifest manifest) {
+        this.manifest = manifest;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * With a positive buffer size files are written through a
+     * {@link ChannelOutputStream}, which {@link FtpClient} fills from a
+     * direct buffer of the same size, instead of a {@link BufferedOutputStream}.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public boolean isAtomic() {
+        return atomic;
+    }
+
+    /**
+     * When enabled, files are written under a temporary {@code .part} name,
+     * reserved at their full size up front and forced to disk every
+     * {@link #getForceInterval()} bytes. {@link #completed} moves them into
+     * place with an atomic rename, so a file under its own name is always
+     * complete, even while a download is running or after it crashed.
+     */
+    public void setAtomic(boolean atomic) {
+        this.atomic = atomic;
+    }
+
+    public long getForceInterval() {
+        return forceInterval;
+    }
+
+    /**
+     * Number of bytes written between two forces of the content to disk
+     * in atomic mode, zero to force it only once the file is complete.
+     */
+    public void setForceInterval(long forceInterval) {
+        if (forceInterval < 0) {
+            throw new IllegalArgumentException("Force interval should not be negative: " + forceInterval);
+        }
+        this.forceInterval = forceInterval;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Computes checksums with the algorithm while files are written,
+     * for {@link #checksum} to return without reading them again.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    public long getUpToDateFiles() {
+        return upToDateFiles.get();
+    }
+
+    /**
+     * Number of bytes that did not have to be downloaded in sync mode.
+     */
+    public long getUpToDateBytes() {
+        return upToDateBytes.get();
+    }
+
+    @Override
+    public OutputStream open(Path file, long offset) throws IOException {
+        return open(file, offset, -1);
+    }
+
+    @Override
+    public OutputStream open(Path file, long offset, long size) throws IOException {
+        createParentDirectories(file);
+        partial.add(file);
+
+        Path output = output(file);
+
+        // digest the content while it streams to disk
+        MessageDigest digest = null;
+        if (checksumAlgorithm != null) {
+            digest = checksumAlgorithm.newDigest();
+            if (offset > 0) {
+                read(output, offset, digest::update);
+            }
+            digests.put(file, digest);
+        }
+
+        // compute the manifest checksum the same way
+        Checksum checksum = null;
+        if (manifest != null) {
+            checksum = new CRC32C();
+            if (offset > 0) {
+                read(output, offset, checksum::update);
+            }
+            checksums.put(file, checksum);
+        }
+
+        try {
+            if (atomic) {
+                // existing part files are only trusted in resume mode, keep their size meaningful then
+                OutputStream out = PartOutputStream.open(output, offset, resume ? -1 : size
+                        , forceInterval, observer(digest, checksum));
+                return bufferSize > 0 ? out : new BufferedOutputStream(out);
+            }
+
+            // append to the partial content when resuming
+            if (bufferSize > 0) {
+                return new ChannelOutputStream(FileChannel.open(output
+                        , StandardOpenOption.CREATE, StandardOpenOption.WRITE
+                        , offset > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)
+                        , observer(digest, checksum));
+            }
+
+            OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(output.toFile(), offset > 0));
+
+            if (digest != null) {
+                out = new DigestOutputStream(out, digest);
+            }
+            return checksum != null ? new CheckedOutputStream(out, checksum) : out;
+        } catch (FileNotFoundException | NoSuchFileException | AccessDeniedException e) {
+            throw new RuntimeException("Cannot create files in the local directory...", e);
+        }
+    }
+
+    // keeps the channel output on its direct path while checksums are computed
+    private static Consumer<ByteBuffer> observer(MessageDigest digest, Checksum checksum) {
+        if (digest == null && checksum == null) {
+            return null;
+        }
+
+        return buffer -> {
+            if (digest != null) {
+                digest.update(buffer.duplicate());
+            }
+            if (checksum != null) {
+                checksum.update(buffer);
+            }
+        };
+    }
+
+    @Override
+    public String checksum(Path file, ChecksumAlgorithm algorithm) throws IOException {
+        MessageDigest digest = digests.remove(file);
+
+        if (digest == null || !digest.getAlgorithm().equals(algorithm.getName())) {
+            // not computed while writing, e.g. written in ranges
+            digest = algorithm.newDigest();
+            read(output(file), Long.MAX_VALUE, digest::update);
+        }
+
+        return ChecksumAlgorithm.toHex(digest.digest());
+    }
+
+    /**
+     * Ranges are written into a {@code .part} file of the full size next to
+     * the target, which replaces the target once every range is written,
+     * or once the file is {@link #completed} in atomic mode.
+     */
+    @Override
+    public RangeOutput openRanges(Path file, long size) throws IOException {
+        createParentDirectories(file);
+
+        Path target = localDir.resolve(file);
+        Path part = part(file);
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(part, StandardOpenOption.CREATE
+                    , StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (NoSuchFileException | AccessDeniedException e) {
+            throw new RuntimeException("Cannot create files in the local directory...", e);
+        }
+
+        // extend the file to its full size up front so that ranges can land anywhere
+        if (size > 0) {
+            try {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            } catch (IOException ex) {
+                channel.close();
+                Files.deleteIfExists(part);
+                throw ex;
+            }
+        }
+
+        // checksums are computed from the file once it is complete
+        checksums.remove(file);
+        digests.remove(file);
+
+        return new PartFile(channel, part, atomic ? null : target);
+    }
+
+    @Override
+    public long resumeOffset(Path file) {
+        Path local = output(file);
+
+        // files written by this provider are known to be a part of the remote one
+        if (!(resume || partial.contains(file)) || !Files.isRegularFile(local)) {
+            return 0;
+        }
+
+        try {
+            return Files.size(local);
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean isUpToDate(Path file, FTPFile remote) {
+        if (!sync || remote.getTimestamp() == null) {
+            return false;
+        }
+
+        Manifest.Entry entry = manifest == null ? null : manifest.get(file.toString());
+
+        boolean upToDate;
+        if (entry != null) {
+            // the manifest is the source of truth for files it knows about
+            upToDate = entry.getSize() == remote.getSize()
+                    && entry.getModified() >= remote.getTimestamp().getTimeInMillis();
+        } else {
+            upToDate = localFileMatches(file, remote);
+
+            if (upToDate && manifest != null) {
+                // downloaded before the manifest was kept
+                try {
+                    record(file, remote, checksum(localDir.resolve(file), Long.MAX_VALUE));
+                } catch (IOException ex) {
+                    return false;
+                }
+            }
+        }
+
+        if (upToDate) {
+            upToDateFiles.incrementAndGet();
+            upToDateBytes.addAndGet(remote.getSize());
+        }
+
+        return upToDate;
+    }
+
+    @Override
+    public void completed(Path file, FTPFile remote) throws IOException {
+        partial.remove(file);
+
+        // verified by now, readers may see it
+        if (atomic && Files.exists(part(file))) {
+            moveIntoPlace(part(file), localDir.resolve(file));
+        }
+
+        // keep the remote modification time to compare with on the next sync
+        if (remote.getTimestamp() != null) {
+            Files.setLastModifiedTime(localDir.resolve(file)
+                    , FileTime.fromMillis(remote.getTimestamp().getTimeInMillis()));
+        }
+
+        if (manifest != null) {
+            Checksum checksum = checksums.remove(file);
+
+            record(file, remote, checksum != null
+                    ? checksum.getValue()
+                    : checksum(localDir.resolve(file), Long.MAX_VALUE));
+        }
+    }
+
+    @Override
+    public void discard(Path file) throws IOException {
+        partial.remove(file);
+        checksums.remove(file);
+        digests.remove(file);
+
+        Files.deleteIfExists(output(file));
+    }
+
+    // where the content of the file is written
+    private Path output(Path file) {
+        return atomic ? part(file) : localDir.resolve(file);
+    }
+
+    private Path part(Path file) {
+        Path target = localDir.resolve(file);
+        return target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    }
+
+    // readers see either the previous file or the complete new one
+    private static void moveIntoPlace(Path part, Path target) throws IOException {
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // mirror the remote directory structure
+    private void createParentDirectories(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(localDir.resolve(file.getParent()));
+        }
+    }
+
+    private boolean localFileMatches(Path file, FTPFile remote) {
+        Path local = localDir.resolve(file);
+
+        try {
+            return Files.isRegularFile(local)
+                    && Files.size(local) == remote.getSize()
+                    && Files.getLastModifiedTime(local).toMillis()
+                    >= remote.getTimestamp().getTimeInMillis();
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void record(Path file, FTPFile remote, long checksum) {
+        long modified = remote.getTimestamp() == null
+                ? -1 : remote.getTimestamp().getTimeInMillis();
+
+        manifest.put(file.toString(), new Manifest.Entry
+                (remote.getSize(), modified, checksum, System.currentTimeMillis()));
+    }
+
+    private static long checksum(Path local, long length) throws IOException {
+        Checksum checksum = new CRC32C();
+        read(local, length, checksum::update);
+        return checksum.getValue();
+    }
+
+    private interface ChunkConsumer {
+        void accept(byte[] buffer, int offset, int length);
+    }
+
+    // feeds up to length bytes of the local file to the consumer
+    private static void read(Path local, long length, ChunkConsumer consumer) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+
+        try (var in = Files.newInputStream(local)) {
+            long remaining = length;
+            int read;
+            while (remaining > 0
+                    && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0) {
+                consumer.accept(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * File written under a temporary name in atomic mode. The file is
+     * extended to its expected size before the first write and cut back to
+     * what has been written when the stream is closed, so that its size
+     * tells how far it got. The content is forced to disk every
+     * {@code forceInterval} bytes and before the stream is closed.
+     */
+    private static class PartOutputStream extends ChannelOutputStream {
+        private final FileChannel channel;
+        private final long forceInterval;
+        private long position;
+        private long unforced = 0;
+
+        private PartOutputStream(FileChannel channel, long position, long forceInterval
+                , Consumer<ByteBuffer> observer) {
+            super(channel, observer);
+            this.channel = channel;
+            this.position = position;
+            this.forceInterval = forceInterval;
+        }
+
+        static PartOutputStream open(Path part, long offset, long size, long forceInterval
+                , Consumer<ByteBuffer> observer) throws IOException {
+            FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+            try {
+                // keep the partial content when resuming
+                channel.truncate(offset);
+                if (size > offset) {
+                    channel.write(ByteBuffer.allocate(1), size - 1);
+                }
+                channel.position(offset);
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+
+            return new PartOutputStream(channel, offset, forceInterval, observer);
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) throws IOException {
+            int length = buffer.remaining();
+            super.write(buffer);
+
+            position += length;
+            unforced += length;
+            if (forceInterval > 0 && unforced >= forceInterval) {
+                channel.force(false);
+                unforced = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                if (channel.size() > position) {
+                    // not complete, drop the space reserved for the rest
+                    channel.truncate(position);
+                }
+                if (unforced > 0) {
+                    channel.force(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * File written in ranges under a temporary name. Without a target the
+     * file is only forced to disk on commit and stays under its temporary
+     * name until the download is completed.
+     */
+    private static class PartFile implements RangeOutput {
+        private final FileChannel channel;
+        private final Path part;
+        private final Path target;
+        private boolean committed = false;
+
+        PartFile(FileChannel channel, Path part, Path target) {
+            this.channel = channel;
+            this.part = part;
+            this.target = target;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, long position) throws IOException {
+            // positional writes do not move a shared file pointer
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        @Override
+        public void commit() throws IOException {
+            if (target == null) {
+                channel.force(false);
+                channel.close();
+            } else {
+                channel.close();
+                moveIntoPlace(part, target);
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) {
+                return;
+            }
+
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+}
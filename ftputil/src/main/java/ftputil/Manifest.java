@@ -0,0 +1,171 @@
+package ftputil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of downloaded files kept next to them in the local directory,
+ * or of the local files pushed to the server under {@link #PUSH_FILE_NAME}.
+ * <p>
+ * The index is stored in a compact binary form and loaded into memory
+ * at startup, so checking whether a file is already present takes a map
+ * lookup instead of a stat call on the local file.
+ */
+public class Manifest {
+    public static final String FILE_NAME = ".ftputil-manifest";
+    public static final String PUSH_FILE_NAME = ".ftputil-push";
+
+    // "FTPM" and the format version
+    private static final int MAGIC = 0x4654504D;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private Manifest(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates an empty manifest for the local directory.
+     */
+    public static Manifest empty(Path localDir) {
+        return empty(localDir, FILE_NAME);
+    }
+
+    /**
+     * Creates an empty manifest stored under the name in the local directory.
+     */
+    public static Manifest empty(Path localDir, String fileName) {
+        return new Manifest(localDir.resolve(fileName));
+    }
+
+    /**
+     * Loads the manifest of the local directory,
+     * or returns an empty one if there is none yet.
+     */
+    public static Manifest load(Path localDir) throws IOException {
+        return load(localDir, FILE_NAME);
+    }
+
+    /**
+     * Loads the manifest stored under the name in the local directory,
+     * or returns an empty one if there is none yet.
+     */
+    public static Manifest load(Path localDir, String fileName) throws IOException {
+        Manifest manifest = empty(localDir, fileName);
+
+        if (!Files.isRegularFile(manifest.file)) {
+            return manifest;
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest.file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported manifest format: " + manifest.file);
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                manifest.entries.put(name, new Entry
+                        (in.readLong(), in.readLong(), in.readLong(), in.readLong()));
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest to a temporary file first and then replaces
+     * the previous one, so a crash never leaves a truncated manifest behind.
+     */
+    public void save() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        // take a copy, entries may still be added by other threads
+        var snapshot = Map.copyOf(entries);
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+
+            for (var entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().getSize());
+                out.writeLong(entry.getValue().getModified());
+                out.writeLong(entry.getValue().getChecksum());
+                out.writeLong(entry.getValue().getDownloaded());
+            }
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Entry of the file (relative to the local directory) or null if it is not known.
+     */
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    public void put(String name, Entry entry) {
+        entries.put(name, entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * What is known about a downloaded or pushed file.
+     */
+    public static class Entry {
+        private final long size;
+        private final long modified;
+        private final long checksum;
+        private final long downloaded;
+
+        /**
+         * @param size       remote size in bytes (local size of pushed files)
+         * @param modified   remote modification time (ms since epoch) or -1 if unknown
+         *                   (local modification time of pushed files)
+         * @param checksum   CRC32C of the local content, 0 for pushed files
+         * @param downloaded time of the download or push (ms since epoch)
+         */
+        public Entry(long size, long modified, long checksum, long downloaded) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+            this.downloaded = downloaded;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+
+        public long getDownloaded() {
+            return downloaded;
+        }
+    }
+}
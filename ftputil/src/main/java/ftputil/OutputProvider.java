@@ -0,0 +1,102 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Provides output streams to copy the content of remote files into.
+ * <p>
+ * Implementations may be called concurrently when files are downloaded
+ * by several sessions at once.
+ */
+@FunctionalInterface
+public interface OutputProvider {
+
+    /**
+     * Opens an output stream for the file (relative to the download directory).
+     * A positive offset means the content is appended to the first
+     * {@code offset} bytes that are already there, zero means from scratch.
+     */
+    OutputStream open(Path file, long offset) throws IOException;
+
+    /**
+     * Same as {@link #open(Path, long)} for a file of a known size,
+     * negative if unknown, which lets the provider reserve the space up front.
+     */
+    default OutputStream open(Path file, long offset, long size) throws IOException {
+        return open(file, offset);
+    }
+
+    /**
+     * Opens the file (relative to the download directory) for a download
+     * in byte ranges fetched by several sessions at once.
+     * Returns null if the provider can only write files sequentially,
+     * the file is then downloaded over a single connection.
+     */
+    default RangeOutput openRanges(Path file, long size) throws IOException {
+        return null;
+    }
+
+    /**
+     * Number of bytes of the file that are already available locally
+     * and do not need to be downloaded again, zero to download the whole file.
+     */
+    default long resumeOffset(Path file) {
+        return 0;
+    }
+
+    /**
+     * Tells whether the local copy of the file already matches
+     * the listed remote file so that it can be skipped.
+     */
+    default boolean isUpToDate(Path file, FTPFile remote) {
+        return false;
+    }
+
+    /**
+     * Checksum of the content written for the file as a lower case hex
+     * string, or null if the provider cannot compute it. Called once the
+     * content has been transferred and its output is closed.
+     */
+    default String checksum(Path file, ChecksumAlgorithm algorithm) throws IOException {
+        return null;
+    }
+
+    /**
+     * Called when the content written for the file did not pass
+     * verification. The provider drops it, so that neither a resumed nor a
+     * later download continues from it.
+     */
+    default void discard(Path file) throws IOException {
+    }
+
+    /**
+     * Called once the content of the remote file has been transferred
+     * completely and its output stream or range output is closed.
+     */
+    default void completed(Path file, FTPFile remote) throws IOException {
+    }
+
+    /**
+     * Output of a file downloaded in byte ranges.
+     * Ranges may be written concurrently and in any order.
+     */
+    interface RangeOutput extends Closeable {
+
+        /**
+         * Writes all remaining bytes of the buffer at the position in the file.
+         */
+        void write(ByteBuffer buffer, long position) throws IOException;
+
+        /**
+         * Called once every range has been written, makes the file available
+         * under its name. Closing without a commit discards the content.
+         */
+        void commit() throws IOException;
+    }
+}
@@ -0,0 +1,97 @@
+package ftputil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Changes the content of downloaded files on its way to the local file,
+ * e.g. decompresses it, so that files are written once in their final form.
+ * <p>
+ * Transformed files are written sequentially from the start: they are
+ * neither resumed nor downloaded in ranges.
+ */
+public interface OutputTransform {
+
+    /**
+     * Tells whether the transform applies to the remote file
+     * (relative to the download directory).
+     */
+    boolean appliesTo(Path file);
+
+    /**
+     * Local name of the transformed file, e.g. without the .gz extension.
+     */
+    Path target(Path file);
+
+    /**
+     * Stream the remote content is written to, writing the transformed content to out.
+     * Closing it closes out.
+     */
+    OutputStream wrap(OutputStream out) throws IOException;
+
+    /**
+     * Decompresses .gz files, the local file has the name without the extension.
+     */
+    static OutputTransform gunzip() {
+        return new OutputTransform() {
+            @Override
+            public boolean appliesTo(Path file) {
+                return file.getFileName().toString().endsWith(".gz");
+            }
+
+            @Override
+            public Path target(Path file) {
+                String name = file.getFileName().toString();
+                return file.resolveSibling(name.substring(0, name.length() - ".gz".length()));
+            }
+
+            @Override
+            public OutputStream wrap(OutputStream out) {
+                return new GunzipOutputStream(out);
+            }
+
+            @Override
+            public String toString() {
+                return "gunzip";
+            }
+        };
+    }
+
+    /**
+     * Compresses files that are not compressed yet into .gz files
+     * with the given deflate level, 1 being the fastest.
+     */
+    static OutputTransform gzip(int level) {
+        if (level < 1 || level > 9) {
+            throw new IllegalArgumentException("Compression level should be between 1 and 9: " + level);
+        }
+
+        return new OutputTransform() {
+            @Override
+            public boolean appliesTo(Path file) {
+                return !file.getFileName().toString().endsWith(".gz");
+            }
+
+            @Override
+            public Path target(Path file) {
+                return file.resolveSibling(file.getFileName() + ".gz");
+            }
+
+            @Override
+            public OutputStream wrap(OutputStream out) throws IOException {
+                return new GZIPOutputStream(out, 64 * 1024) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            }
+
+            @Override
+            public String toString() {
+                return "gzip level " + level;
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package ftputil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Upload of local files shared by several sessions at once.
+ * <p>
+ * Every session takes the next file of a shared queue until the queue
+ * is empty. A session that cannot be opened leaves the files to the
+ * sessions that are there.
+ */
+class ParallelUpload {
+    private final FtpClient client;
+    private final Path localDir;
+    private final Path remoteDir;
+    private final TransferListener listener;
+    private final int total;
+
+    // files (relative to the local directory) no session has taken yet
+    private final Queue<Path> files;
+    private final AtomicInteger started = new AtomicInteger();
+
+    private volatile boolean failed = false;
+
+    ParallelUpload(FtpClient client, Path localDir, Path remoteDir
+            , List<Path> files
+            , TransferListener listener) {
+        this.client = client;
+        this.localDir = localDir;
+        this.remoteDir = remoteDir;
+        this.files = new ConcurrentLinkedQueue<>(files);
+        this.total = files.size();
+        this.listener = listener;
+    }
+
+    /**
+     * Uploads the files using up to the given number of sessions. The
+     * session of the client works in the calling thread, the others are
+     * opened for the duration of the upload.
+     */
+    void run(int sessions) throws IOException {
+        int additional = Math.min(sessions, total) - 1;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, additional));
+        List<Future<?>> workers = new ArrayList<>();
+
+        for (int i = 0; i < additional; i++) {
+            workers.add(executor.submit(() -> {
+                FtpClient session;
+                try {
+                    session = client.openSession();
+                } catch (IOException ex) {
+                    // the remaining sessions take over its files
+                    listener.message("Unable to open additional session: " + ex.getMessage());
+                    return null;
+                }
+
+                listener.sessionOpened(session.getServer()
+                        , session.getConnectNanos(), session.getLoginNanos());
+
+                try (session) {
+                    work(session);
+                }
+                return null;
+            }));
+        }
+
+        Throwable failure = null;
+
+        try {
+            work(client);
+        } catch (IOException | RuntimeException ex) {
+            failure = ex;
+        }
+
+        try {
+            for (var worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Upload interrupted...", ex);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // rethrow the first failure as if it happened in the calling thread
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IOException("Upload failed...", failure);
+        }
+    }
+
+    private void work(FtpClient session) throws IOException {
+        Path file;
+        while (!failed && (file = files.poll()) != null) {
+            // keep the numbering in order across sessions
+            synchronized (started) {
+                listener.fileStarted(file, started.incrementAndGet(), total);
+            }
+
+            try {
+                session.upload(localDir, remoteDir, file, listener);
+            } catch (IOException | RuntimeException ex) {
+                // stop the other sessions from taking new files
+                failed = true;
+                throw ex;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ftputil;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Renders transfer events as progress lines for a {@code Consumer<String>}.
+ * Failed files are rendered with the reason; with a retry policy the
+ * download carries on with the other files after them.
+ */
+class ProgressListener implements TransferListener {
+    private final Consumer<String> progressReporter;
+    // what is done with the files, e.g. Downloading
+    private final String verb;
+
+    ProgressListener(Consumer<String> progressReporter) {
+        this(progressReporter, "Downloading");
+    }
+
+    ProgressListener(Consumer<String> progressReporter, String verb) {
+        this.progressReporter = progressReporter;
+        this.verb = verb;
+    }
+
+    @Override
+    public void fileStarted(Path file, int index, int total) {
+        report(String.format("%s (%d of %d):[%s]", verb, index, total, file));
+    }
+
+    @Override
+    public void fileSkipped(Path file, String reason) {
+        report(String.format("%s:[%s]", reason, file));
+    }
+
+    @Override
+    public void fileRetried(Path file, String reason) {
+        report(String.format("%s:[%s]", reason, file));
+    }
+
+    @Override
+    public void fileFailed(Path file, String reason) {
+        report(String.format("Failed: %s:[%s]", reason, file));
+    }
+
+    @Override
+    public void polled(Path remoteDir, int changed, int removed, long nextPollNanos) {
+        report(String.format("Polled [%s]: %d new or changed, %d removed, next poll in %d s"
+                , remoteDir, changed, removed, TimeUnit.NANOSECONDS.toSeconds(nextPollNanos)));
+    }
+
+    @Override
+    public void message(String message) {
+        report(message);
+    }
+
+    private void report(String message) {
+        synchronized (progressReporter) {
+            progressReporter.accept(message);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Output provider whose streams take every write from a {@link RateLimiter}
+ * before passing it on to the streams of another provider. Transfers
+ * writing to the same limiter share its rate.
+ */
+public class RateLimitedOutputProvider implements OutputProvider {
+    private final OutputProvider provider;
+    private final RateLimiter limiter;
+
+    public RateLimitedOutputProvider(OutputProvider provider, RateLimiter limiter) {
+        this.provider = provider;
+        this.limiter = limiter;
+    }
+
+    public RateLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public OutputStream open(Path file, long offset) throws IOException {
+        return open(file, offset, -1);
+    }
+
+    @Override
+    public OutputStream open(Path file, long offset, long size) throws IOException {
+        OutputStream out = provider.open(file, offset, size);
+
+        // keep the direct buffer path of channel output
+        if (out instanceof ChannelOutputStream) {
+            return new LimitedChannelOutputStream((ChannelOutputStream) out, limiter);
+        }
+        return new LimitedOutputStream(out, limiter);
+    }
+
+    @Override
+    public RangeOutput openRanges(Path file, long size) throws IOException {
+        RangeOutput out = provider.openRanges(file, size);
+        if (out == null) {
+            return null;
+        }
+
+        return new RangeOutput() {
+            @Override
+            public void write(ByteBuffer buffer, long position) throws IOException {
+                limiter.acquire(buffer.remaining());
+                out.write(buffer, position);
+            }
+
+            @Override
+            public void commit() throws IOException {
+                out.commit();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    @Override
+    public long resumeOffset(Path file) {
+        return provider.resumeOffset(file);
+    }
+
+    @Override
+    public boolean isUpToDate(Path file, FTPFile remote) {
+        return provider.isUpToDate(file, remote);
+    }
+
+    @Override
+    public String checksum(Path file, ChecksumAlgorithm algorithm) throws IOException {
+        return provider.checksum(file, algorithm);
+    }
+
+    @Override
+    public void discard(Path file) throws IOException {
+        provider.discard(file);
+    }
+
+    @Override
+    public void completed(Path file, FTPFile remote) throws IOException {
+        provider.completed(file, remote);
+    }
+
+    private static class LimitedOutputStream extends FilterOutputStream {
+        private final RateLimiter limiter;
+
+        LimitedOutputStream(OutputStream out, RateLimiter limiter) {
+            super(out);
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            limiter.acquire(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            limiter.acquire(len);
+            out.write(b, off, len);
+        }
+    }
+
+    private static class LimitedChannelOutputStream extends ChannelOutputStream {
+        private final ChannelOutputStream out;
+        private final RateLimiter limiter;
+
+        LimitedChannelOutputStream(ChannelOutputStream out, RateLimiter limiter) {
+            super(out.getChannel());
+            this.out = out;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) throws IOException {
+            limiter.acquire(buffer.remaining());
+            out.write(buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
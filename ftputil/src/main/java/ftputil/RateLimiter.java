@@ -0,0 +1,200 @@
+package ftputil;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting the bytes per second of all the transfers it is
+ * shared by, whatever the number of sessions.
+ * <p>
+ * The bucket is kept as the time at which the bytes granted so far are
+ * paid off at the current rate. Taking bytes moves that time forward with
+ * a single compare-and-set, so parallel transfers do not queue up on a
+ * lock for every chunk, and the caller sleeps for whatever the bucket
+ * cannot cover. An idle bucket fills up to the burst, the bytes of that
+ * much time at the current rate.
+ * <p>
+ * The rate can be changed while transfers are running, directly or over
+ * JMX, and a {@link RateSchedule} can set different rates for times of the day.
+ */
+public class RateLimiter implements RateLimiterMXBean {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // how often the schedule is looked at
+    private static final long SCHEDULE_CHECK_NANOS = NANOS_PER_SECOND;
+
+    private final long burstNanos;
+    // time at which the granted bytes are paid off
+    private final AtomicLong paidOff = new AtomicLong(System.nanoTime());
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    // bytes per second outside of scheduled windows, 0 for unlimited
+    private volatile long rate;
+    private volatile RateSchedule schedule;
+    private volatile Clock clock = Clock.systemDefaultZone();
+    // rate of the current schedule window
+    private volatile long scheduledRate;
+    private volatile long nextScheduleCheck;
+
+    private ObjectName objectName;
+
+    /**
+     * Limiter with a burst of one second.
+     *
+     * @param bytesPerSecond limit, 0 for unlimited
+     */
+    public RateLimiter(long bytesPerSecond) {
+        this(bytesPerSecond, Duration.ofSeconds(1));
+    }
+
+    /**
+     * @param bytesPerSecond limit, 0 for unlimited
+     * @param burst          time worth of bytes an idle bucket fills up to
+     */
+    public RateLimiter(long bytesPerSecond, Duration burst) {
+        if (burst.isNegative()) {
+            throw new IllegalArgumentException("Burst should not be negative: " + burst);
+        }
+
+        setRate(bytesPerSecond);
+        this.burstNanos = burst.toNanos();
+    }
+
+    /**
+     * Parses a rate in bytes per second with an optional
+     * K, M or G suffix (powers of 1024), e.g. 512K or 10M.
+     */
+    public static long parseRate(String value) {
+        try {
+            return Sizes.parse(value);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Rate should be zero or a positive number of bytes: " + value);
+        }
+    }
+
+    @Override
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * Sets the bytes per second outside of scheduled windows, 0 for unlimited.
+     * Takes effect for the next chunk of every running transfer.
+     */
+    @Override
+    public void setRate(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Rate should not be negative: " + bytesPerSecond);
+        }
+        this.rate = bytesPerSecond;
+        this.nextScheduleCheck = System.nanoTime();
+    }
+
+    public RateSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Uses the rates of the schedule during its windows, null for the rate alone.
+     * The time of day is checked once a second.
+     */
+    public void setSchedule(RateSchedule schedule) {
+        this.nextScheduleCheck = System.nanoTime();
+        this.schedule = schedule;
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+        this.nextScheduleCheck = System.nanoTime();
+    }
+
+    /**
+     * Rate in effect now, the scheduled one or the rate.
+     */
+    @Override
+    public long getEffectiveRate() {
+        RateSchedule schedule = this.schedule;
+        if (schedule == null) {
+            return rate;
+        }
+
+        long now = System.nanoTime();
+        if (now - nextScheduleCheck >= 0) {
+            // racing threads compute the same value
+            scheduledRate = schedule.rateAt(LocalTime.now(clock), rate);
+            nextScheduleCheck = now + SCHEDULE_CHECK_NANOS;
+        }
+        return scheduledRate;
+    }
+
+    /**
+     * Total time transfers have been held up by the limit.
+     */
+    @Override
+    public long getThrottledMillis() {
+        return throttledNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Takes the bytes from the bucket, waiting until the rate allows them.
+     */
+    public void acquire(long bytes) throws IOException {
+        long rate = getEffectiveRate();
+        if (rate <= 0 || bytes <= 0) {
+            return;
+        }
+
+        long cost = Math.max(1, bytes * NANOS_PER_SECOND / rate);
+        long now = System.nanoTime();
+
+        long previous;
+        long next;
+        do {
+            previous = paidOff.get();
+            // an idle bucket is full, it does not save up beyond the burst
+            next = (previous - now < 0 ? now : previous) + cost;
+        } while (!paidOff.compareAndSet(previous, next));
+
+        long wait = next - now - burstNanos;
+        if (wait > 0) {
+            throttledNanos.addAndGet(wait);
+            try {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Download interrupted...", ex);
+            }
+        }
+    }
+
+    /**
+     * Registers the limiter with the platform MBean server
+     * so that the rate can be changed from a JMX console.
+     */
+    public synchronized void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName
+                ("ftputil:type=RateLimiter,name=" + ObjectName.quote(name));
+
+        server.registerMBean(this, objectName);
+        this.objectName = objectName;
+    }
+
+    /**
+     * Removes the limiter from the platform MBean server if it was registered.
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName == null) {
+            return;
+        }
+
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        objectName = null;
+    }
+}
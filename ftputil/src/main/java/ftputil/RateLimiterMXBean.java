@@ -0,0 +1,15 @@
+package ftputil;
+
+/**
+ * Management interface of {@link RateLimiter}.
+ */
+public interface RateLimiterMXBean {
+
+    long getRate();
+
+    void setRate(long bytesPerSecond);
+
+    long getEffectiveRate();
+
+    long getThrottledMillis();
+}
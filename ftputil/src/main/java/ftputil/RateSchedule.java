@@ -0,0 +1,100 @@
+package ftputil;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Transfer rates for times of the day, e.g. {@code 08:00-18:00=1M}
+ * to limit downloads during business hours. A window may run past
+ * midnight (22:00-06:00). The first window that contains the time
+ * sets the rate, outside of all windows the default rate applies.
+ */
+public class RateSchedule {
+    private final List<Window> windows = new ArrayList<>();
+
+    /**
+     * Adds a window from (inclusive) to (exclusive) the given times,
+     * the whole day if they are the same.
+     *
+     * @param rate bytes per second, 0 for unlimited
+     */
+    public RateSchedule add(LocalTime from, LocalTime to, long rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Rate should not be negative: " + rate);
+        }
+        windows.add(new Window(from, to, rate));
+        return this;
+    }
+
+    /**
+     * Parses comma separated windows such as {@code 08:00-18:00=1M,18:00-20:00=4M},
+     * rates as in {@link RateLimiter#parseRate}.
+     */
+    public static RateSchedule parse(String spec) {
+        RateSchedule schedule = new RateSchedule();
+
+        for (String window : spec.split(",")) {
+            String[] parts = window.trim().split("[-=]");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Schedule window should look like 08:00-18:00=1M: " + window);
+            }
+
+            try {
+                schedule.add(LocalTime.parse(parts[0].trim()), LocalTime.parse(parts[1].trim())
+                        , RateLimiter.parseRate(parts[2]));
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("Schedule window should look like 08:00-18:00=1M: " + window, ex);
+            }
+        }
+
+        return schedule;
+    }
+
+    /**
+     * Rate in bytes per second at the time of day.
+     */
+    public long rateAt(LocalTime time, long defaultRate) {
+        for (Window window : windows) {
+            if (window.contains(time)) {
+                return window.rate;
+            }
+        }
+        return defaultRate;
+    }
+
+    @Override
+    public String toString() {
+        return windows.stream().map(Window::toString).collect(Collectors.joining(","));
+    }
+
+    private static class Window {
+        private final LocalTime from;
+        private final LocalTime to;
+        private final long rate;
+
+        Window(LocalTime from, LocalTime to, long rate) {
+            this.from = from;
+            this.to = to;
+            this.rate = rate;
+        }
+
+        boolean contains(LocalTime time) {
+            if (from.equals(to)) {
+                return true;
+            }
+            // past midnight
+            if (to.isBefore(from)) {
+                return !time.isBefore(from) || time.isBefore(to);
+            }
+            return !time.isBefore(from) && time.isBefore(to);
+        }
+
+        @Override
+        public String toString() {
+            return from + "-" + to + "=" + rate;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ftputil;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the lines of downloaded files (e.g. JSON lines) while the
+ * files are being downloaded, see {@link RecordOutputProvider}.
+ * <p>
+ * The records of a file arrive in order. Records of different files
+ * may be interleaved when several sessions are downloading.
+ */
+@FunctionalInterface
+public interface RecordConsumer {
+
+    /**
+     * A line of the file without its line terminator. Empty lines are left out.
+     */
+    void accept(Path file, String record);
+
+    /**
+     * The file is about to be downloaded from the start. Called again when
+     * the download is retried, the records of the failed attempt are sent
+     * again and whatever has been done with them should be discarded.
+     */
+    default void fileStarted(Path file) {
+    }
+
+    /**
+     * Every record of the file has been delivered.
+     */
+    default void fileCompleted(Path file, long records) {
+    }
+}
@@ -0,0 +1,210 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Output provider that splits downloaded files into lines and feeds
+ * them to a {@link RecordConsumer} while the files are being downloaded,
+ * optionally writing the files through another provider as well.
+ * <p>
+ * With a positive queue capacity the consumer runs in a thread of its own
+ * and takes the lines from a bounded queue, so that processing overlaps
+ * with the transfers. A full queue holds up the transfers. The consumer
+ * is then called from that thread only, otherwise from the threads of the
+ * sessions. If it fails, the transfers fail with its exception on their
+ * next write.
+ * <p>
+ * Files are fed from the start, they are neither resumed nor downloaded
+ * in ranges.
+ */
+public class RecordOutputProvider implements OutputProvider, Closeable {
+    // tells the consumer thread that there are no more lines
+    private static final Runnable DONE = () -> {};
+
+    private final RecordConsumer consumer;
+    // provider of the files on disk, null to keep the records only
+    private final OutputProvider persistence;
+
+    private final BlockingQueue<Runnable> events;
+    private final Thread worker;
+    private volatile RuntimeException failure;
+
+    // records per file in progress
+    private final Map<Path, AtomicLong> records = new ConcurrentHashMap<>();
+    // lines of the files in progress, their last line waits for completion
+    private final Map<Path, LineOutputStream> lines = new ConcurrentHashMap<>();
+
+    /**
+     * Consumer called from the transfer threads, without keeping the files.
+     */
+    public RecordOutputProvider(RecordConsumer consumer) {
+        this(consumer, null, 0);
+    }
+
+    /**
+     * @param persistence   provider the files are written to as well, null for none
+     * @param queueCapacity writes whose lines can wait for the consumer thread,
+     *                      0 to call the consumer from the transfer threads
+     */
+    public RecordOutputProvider(RecordConsumer consumer, OutputProvider persistence, int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity should not be negative: " + queueCapacity);
+        }
+
+        this.consumer = consumer;
+        this.persistence = persistence;
+
+        if (queueCapacity > 0) {
+            events = new ArrayBlockingQueue<>(queueCapacity);
+            worker = new Thread(this::work, "ftputil-records");
+            worker.setDaemon(true);
+            worker.start();
+        } else {
+            events = null;
+            worker = null;
+        }
+    }
+
+    @Override
+    public OutputStream open(Path file, long offset) throws IOException {
+        return open(file, offset, -1);
+    }
+
+    @Override
+    public OutputStream open(Path file, long offset, long size) throws IOException {
+        OutputStream out = persistence == null
+                ? OutputStream.nullOutputStream()
+                : persistence.open(file, 0, size);
+
+        AtomicLong count = new AtomicLong();
+        records.put(file, count);
+        deliver(() -> consumer.fileStarted(file));
+
+        var stream = new LineOutputStream(out, completed -> {
+            count.addAndGet(completed.size());
+            deliver(() -> completed.forEach(line -> consumer.accept(file, line)));
+        });
+        lines.put(file, stream);
+
+        return stream;
+    }
+
+    @Override
+    public RangeOutput openRanges(Path file, long size) {
+        // records are fed in order
+        return null;
+    }
+
+    @Override
+    public long resumeOffset(Path file) {
+        // the consumer has not seen the content that is already there
+        return 0;
+    }
+
+    @Override
+    public boolean isUpToDate(Path file, FTPFile remote) {
+        return persistence != null && persistence.isUpToDate(file, remote);
+    }
+
+    @Override
+    public String checksum(Path file, ChecksumAlgorithm algorithm) throws IOException {
+        return persistence == null ? null : persistence.checksum(file, algorithm);
+    }
+
+    @Override
+    public void discard(Path file) throws IOException {
+        if (persistence != null) {
+            persistence.discard(file);
+        }
+    }
+
+    @Override
+    public void completed(Path file, FTPFile remote) throws IOException {
+        if (persistence != null) {
+            persistence.completed(file, remote);
+        }
+
+        // the content is complete, so a last line without terminator is a record
+        LineOutputStream stream = lines.remove(file);
+        if (stream != null) {
+            stream.finish();
+        }
+
+        AtomicLong count = records.remove(file);
+        long total = count == null ? 0 : count.get();
+        deliver(() -> consumer.fileCompleted(file, total));
+    }
+
+    private void deliver(Runnable event) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+
+        if (events == null) {
+            event.run();
+            return;
+        }
+
+        try {
+            events.put(event);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted...", ex);
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Runnable event;
+            try {
+                event = events.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            if (event == DONE) {
+                return;
+            }
+
+            // keep draining after a failure so that transfers are not held up
+            if (failure == null) {
+                try {
+                    event.run();
+                } catch (RuntimeException ex) {
+                    failure = ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the consumer has processed every queued line and
+     * rethrows its failure, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        if (worker != null && worker.isAlive()) {
+            try {
+                events.put(DONE);
+                worker.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the record consumer", ex);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
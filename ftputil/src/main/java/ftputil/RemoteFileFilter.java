@@ -0,0 +1,159 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects the listed entries to download by name and by size and
+ * modification time. Applied while listings are parsed, so entries that
+ * are left out are dropped with their page instead of being queued.
+ * <p>
+ * Patterns use the syntax of {@link FileSystems#getPathMatcher}, either
+ * {@code glob:*.json} or {@code regex:part-000[1-3].*}, a pattern without
+ * a prefix is a glob. A pattern matches an entry when it matches its
+ * name or its full remote path. Excluded directories are not descended
+ * into, the other rules only apply to files. Entries without a size or
+ * a modification time in the listing pass the respective bounds.
+ */
+public class RemoteFileFilter {
+    private final List<String> includePatterns = new ArrayList<>();
+    private final List<String> excludePatterns = new ArrayList<>();
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private long minSize = 0;
+    private long maxSize = Long.MAX_VALUE;
+    private Instant modifiedAfter;
+    private Instant modifiedBefore;
+
+    /**
+     * Downloads only files that match one of the included patterns.
+     */
+    public RemoteFileFilter include(String pattern) {
+        includes.add(matcher(pattern));
+        includePatterns.add(pattern);
+        return this;
+    }
+
+    /**
+     * Leaves out files and directories that match the pattern.
+     */
+    public RemoteFileFilter exclude(String pattern) {
+        excludes.add(matcher(pattern));
+        excludePatterns.add(pattern);
+        return this;
+    }
+
+    public RemoteFileFilter minSize(long minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Size should not be negative: " + minSize);
+        }
+        this.minSize = minSize;
+        return this;
+    }
+
+    public RemoteFileFilter maxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Size should not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Leaves out files modified before the time.
+     */
+    public RemoteFileFilter modifiedAfter(Instant modifiedAfter) {
+        this.modifiedAfter = modifiedAfter;
+        return this;
+    }
+
+    /**
+     * Leaves out files modified at or after the time.
+     */
+    public RemoteFileFilter modifiedBefore(Instant modifiedBefore) {
+        this.modifiedBefore = modifiedBefore;
+        return this;
+    }
+
+    private static PathMatcher matcher(String pattern) {
+        boolean syntax = pattern.startsWith("glob:") || pattern.startsWith("regex:");
+        return FileSystems.getDefault().getPathMatcher(syntax ? pattern : "glob:" + pattern);
+    }
+
+    /**
+     * Tells whether the entry listed in the remote directory is kept.
+     */
+    public boolean accepts(Path remoteDir, FTPFile entry) {
+        if (entry == null) {
+            return false;
+        }
+
+        Path name = Path.of(entry.getName());
+        Path path = remoteDir.resolve(name);
+
+        if (matchesAny(excludes, name, path)) {
+            return false;
+        }
+
+        // the files of a directory are filtered when it is listed
+        if (entry.isDirectory()) {
+            return true;
+        }
+
+        if (!includes.isEmpty() && !matchesAny(includes, name, path)) {
+            return false;
+        }
+
+        long size = entry.getSize();
+        if (size >= 0 && (size < minSize || size > maxSize)) {
+            return false;
+        }
+
+        if (entry.getTimestamp() != null) {
+            Instant modified = entry.getTimestamp().toInstant();
+            if (modifiedAfter != null && modified.isBefore(modifiedAfter)) {
+                return false;
+            }
+            if (modifiedBefore != null && !modified.isBefore(modifiedBefore)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path name, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(name) || matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        List<String> rules = new ArrayList<>();
+        includePatterns.forEach(pattern -> rules.add("include " + pattern));
+        excludePatterns.forEach(pattern -> rules.add("exclude " + pattern));
+        if (minSize > 0) {
+            rules.add("min size " + minSize);
+        }
+        if (maxSize < Long.MAX_VALUE) {
+            rules.add("max size " + maxSize);
+        }
+        if (modifiedAfter != null) {
+            rules.add("modified after " + modifiedAfter);
+        }
+        if (modifiedBefore != null) {
+            rules.add("modified before " + modifiedBefore);
+        }
+        return String.join(", ", rules);
+    }
+}
@@ -0,0 +1,222 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a remote directory mirrored by polling it with a logged-in session.
+ * <p>
+ * Every poll lists the directory (and its subdirectories in recursive mode)
+ * and compares the listing with the one of the previous poll, kept in
+ * memory. Only files that are new or whose size or modification time
+ * changed are downloaded, through a {@link DownloadQueue} using the
+ * sessions of the client. Files that fail are left out of the snapshot
+ * so that the next poll tries them again.
+ * <p>
+ * The interval between polls adapts to the directory: it drops back to the
+ * minimum as soon as a poll finds changes, as more files tend to follow,
+ * and doubles up to the maximum after every poll that finds none.
+ */
+public class RemoteWatcher {
+    private final FtpClient client;
+    private final Path remoteDir;
+    private final OutputProvider outputProvider;
+    private final TransferListener listener;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+
+    // remote files (relative to the remote directory) as of the last poll
+    private Map<Path, FTPFile> snapshot = new HashMap<>();
+    private Duration interval;
+
+    private volatile boolean running = false;
+
+    public RemoteWatcher(FtpClient client, Path remoteDir
+            , OutputProvider outputProvider
+            , TransferListener listener
+            , Duration minInterval
+            , Duration maxInterval) {
+
+        if (minInterval.isNegative() || minInterval.isZero()) {
+            throw new IllegalArgumentException("Poll interval should be positive: " + minInterval);
+        }
+        if (maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("Longest poll interval should not be shorter than "
+                    + minInterval + ": " + maxInterval);
+        }
+
+        this.client = client;
+        this.remoteDir = remoteDir;
+        this.outputProvider = outputProvider;
+        this.listener = listener;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.interval = minInterval;
+    }
+
+    /**
+     * Time until the next poll.
+     */
+    public Duration getInterval() {
+        return interval;
+    }
+
+    /**
+     * Number of remote files known from the last poll.
+     */
+    public int getSnapshotSize() {
+        return snapshot.size();
+    }
+
+    /**
+     * Polls until {@link #stop} is called or the thread is interrupted.
+     * Failed polls are reported to the listener and count as polls
+     * without changes, the session is checked again on the next one.
+     */
+    public void run() throws InterruptedException {
+        running = true;
+
+        while (running) {
+            try {
+                poll();
+            } catch (IOException ex) {
+                listener.message("Poll of [" + remoteDir + "] failed: " + ex.getMessage());
+                interval = longer(interval);
+            }
+
+            synchronized (this) {
+                if (running) {
+                    wait(interval.toMillis());
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes {@link #run} return once the current poll is over.
+     */
+    public synchronized void stop() {
+        running = false;
+        notifyAll();
+    }
+
+    /**
+     * Lists the remote directory once and downloads what is new or changed
+     * since the previous poll.
+     *
+     * @return the number of new or changed files
+     */
+    public int poll() throws IOException {
+        // servers drop idle control connections between polls
+        if (!client.isAlive()) {
+            client.reconnect();
+            listener.sessionOpened(client.getServer(), client.getConnectNanos(), client.getLoginNanos());
+        }
+
+        Map<Path, FTPFile> current = list();
+
+        // changed files grouped by their directory
+        Map<Path, List<FTPFile>> changed = new LinkedHashMap<>();
+        int count = 0;
+        for (var entry : current.entrySet()) {
+            if (isChanged(snapshot.get(entry.getKey()), entry.getValue())) {
+                Path dir = entry.getKey().getParent() == null ? Path.of("") : entry.getKey().getParent();
+                changed.computeIfAbsent(dir, k -> new ArrayList<>()).add(entry.getValue());
+                count++;
+            }
+        }
+
+        int removed = 0;
+        for (Path file : snapshot.keySet()) {
+            if (!current.containsKey(file)) {
+                removed++;
+            }
+        }
+
+        Set<Path> failed = ConcurrentHashMap.newKeySet();
+
+        if (count > 0) {
+            var queue = new DownloadQueue(client, remoteDir, outputProvider
+                    , listener.andThen(new TransferListener() {
+                        @Override
+                        public void fileFailed(Path file, String reason) {
+                            failed.add(file);
+                        }
+                    }), false);
+
+            changed.forEach(queue::addListing);
+            queue.run(client.getThreads());
+        }
+
+        // failed files count as unseen, the next poll tries them again
+        failed.forEach(current::remove);
+        snapshot = current;
+
+        interval = count > 0 ? minInterval : longer(interval);
+
+        listener.polled(remoteDir, count, removed, interval.toNanos());
+
+        return count;
+    }
+
+    private Duration longer(Duration interval) {
+        Duration doubled = interval.multipliedBy(2);
+        return doubled.compareTo(maxInterval) > 0 ? maxInterval : doubled;
+    }
+
+    private static boolean isChanged(FTPFile previous, FTPFile current) {
+        if (previous == null || previous.getSize() != current.getSize()) {
+            return true;
+        }
+
+        if (previous.getTimestamp() == null || current.getTimestamp() == null) {
+            return previous.getTimestamp() != current.getTimestamp();
+        }
+
+        return previous.getTimestamp().getTimeInMillis() != current.getTimestamp().getTimeInMillis();
+    }
+
+    // regular files of the remote directory tree by their relative path
+    private Map<Path, FTPFile> list() throws IOException {
+        Map<Path, FTPFile> files = new HashMap<>();
+
+        Deque<Path> dirs = new ArrayDeque<>();
+        dirs.add(Path.of(""));
+
+        Path dir;
+        while ((dir = dirs.pollFirst()) != null) {
+            Path listed = dir;
+            long started = System.nanoTime();
+            int[] entries = {0};
+
+            client.listFiles(remoteDir.resolve(listed), page -> {
+                entries[0] += page.size();
+
+                for (FTPFile entry : page) {
+                    if (entry.isFile()) {
+                        files.put(listed.resolve(entry.getName()), entry);
+                    } else if (client.isRecursive() && entry.isDirectory()
+                            && !entry.getName().equals(".") && !entry.getName().equals("..")) {
+                        dirs.addLast(listed.resolve(entry.getName()));
+                    }
+                }
+            });
+
+            listener.listed(remoteDir.resolve(listed), entries[0], System.nanoTime() - started);
+        }
+
+        return files;
+    }
+}
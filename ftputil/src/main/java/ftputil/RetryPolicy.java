@@ -0,0 +1,81 @@
+package ftputil;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How many times a failed transfer is attempted and how long to wait
+ * in between. The wait doubles with every retry up to a maximum and is
+ * shortened by a random part (jitter), so that sessions failing at the
+ * same time do not all come back at once.
+ */
+public class RetryPolicy {
+    private final int attempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double jitter;
+
+    /**
+     * @param attempts       number of attempts including the first one
+     * @param initialBackoff wait before the first retry
+     * @param maxBackoff     longest wait between two attempts
+     * @param jitter         part of the wait (0 to 1) that is randomized
+     */
+    public RetryPolicy(int attempts, Duration initialBackoff, Duration maxBackoff, double jitter) {
+        if (attempts < 1) {
+            throw new IllegalArgumentException("Number of attempts should be positive: " + attempts);
+        }
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("Backoff should be between zero and the maximum: "
+                    + initialBackoff + " " + maxBackoff);
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter should be between 0 and 1: " + jitter);
+        }
+
+        this.attempts = attempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Policy with the given number of attempts, waiting one second before
+     * the first retry and at most thirty seconds, half of it randomized.
+     */
+    public static RetryPolicy of(int attempts) {
+        return new RetryPolicy(attempts, Duration.ofSeconds(1), Duration.ofSeconds(30), 0.5);
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Wait before the given retry, 1 for the first one.
+     */
+    public Duration backoff(int retry) {
+        long max = maxBackoff.toMillis();
+        long delay = initialBackoff.toMillis();
+
+        for (int i = 1; i < retry && delay < max; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, max);
+
+        double random = ThreadLocalRandom.current().nextDouble();
+        return Duration.ofMillis(Math.round(delay * (1 - jitter * random)));
+    }
+}
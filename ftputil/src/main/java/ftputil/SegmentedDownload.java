@@ -0,0 +1,147 @@
+package ftputil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Download of a single large file in byte ranges.
+ * <p>
+ * The file is split into one range per session. Every session restarts
+ * the transfer at the offset of the range it takes (REST) and writes what
+ * it reads at the same position of the output. A session that cannot be
+ * opened leaves its range to the sessions that finish theirs first.
+ * <p>
+ * Additional sessions count against the sessions of the run
+ * ({@link FtpClient#reserveSession()}), so ranges of files met by several
+ * queue workers at once do not open more connections than threads.
+ */
+class SegmentedDownload {
+    private final FtpClient client;
+    private final Path remoteFile;
+    private final long size;
+    private final OutputProvider.RangeOutput out;
+    private final FtpClient.Transfer transfer;
+    private final TransferListener listener;
+
+    // offsets and lengths of the ranges no session has taken yet
+    private final Queue<long[]> ranges = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean failed = false;
+
+    SegmentedDownload(FtpClient client, Path remoteFile, long size
+            , OutputProvider.RangeOutput out
+            , FtpClient.Transfer transfer
+            , TransferListener listener) {
+        this.client = client;
+        this.remoteFile = remoteFile;
+        this.size = size;
+        this.out = out;
+        this.transfer = transfer;
+        this.listener = listener;
+    }
+
+    /**
+     * Downloads the file in as many ranges as sessions. The session of the
+     * client works in the calling thread, the others are opened for the
+     * duration of the download while the run has sessions to spare.
+     */
+    void run(int sessions) throws IOException {
+        long rangeSize = (size + sessions - 1) / sessions;
+        for (long offset = 0; offset < size; offset += rangeSize) {
+            ranges.add(new long[]{offset, Math.min(rangeSize, size - offset)});
+        }
+
+        // sessions other downloads of the run are not using
+        int additional = 0;
+        while (additional < ranges.size() - 1 && client.reserveSession()) {
+            additional++;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, additional));
+        List<Future<?>> workers = new ArrayList<>();
+
+        for (int i = 0; i < additional; i++) {
+            workers.add(executor.submit(() -> {
+                try {
+                    FtpClient session;
+                    try {
+                        session = client.openSession();
+                    } catch (IOException ex) {
+                        // the remaining sessions take over its range
+                        listener.message("Unable to open additional session: " + ex.getMessage());
+                        return null;
+                    }
+
+                    listener.sessionOpened(session.getServer()
+                            , session.getConnectNanos(), session.getLoginNanos());
+
+                    try (session) {
+                        work(session);
+                    }
+                    return null;
+                } finally {
+                    client.releaseSession();
+                }
+            }));
+        }
+
+        Throwable failure = null;
+
+        try {
+            work(client);
+        } catch (IOException | RuntimeException ex) {
+            failure = ex;
+        }
+
+        try {
+            for (var worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Download interrupted...", ex);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // rethrow the first failure as if it happened in the calling thread
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IOException("Download failed...", failure);
+        }
+
+        if (!ranges.isEmpty()) {
+            throw new IOException("Unable to download all ranges of file: " + remoteFile);
+        }
+    }
+
+    private void work(FtpClient session) throws IOException {
+        long[] range;
+        while (!failed && (range = ranges.poll()) != null) {
+            try {
+                session.retrieveRange(remoteFile, range[0], range[1], out, transfer);
+            } catch (IOException | RuntimeException ex) {
+                // stop the other sessions from taking new ranges
+                failed = true;
+                throw ex;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ftputil;
+
+import java.util.Locale;
+
+/**
+ * Byte counts written with an optional unit, shared by the size and rate options.
+ */
+final class Sizes {
+
+    private Sizes() {
+    }
+
+    /**
+     * Parses a number of bytes with an optional
+     * K, M or G suffix (powers of 1024), e.g. 512K or 10M.
+     */
+    static long parse(String value) {
+        String size = value.trim().toUpperCase(Locale.ROOT);
+
+        long unit = 1;
+        if (size.endsWith("K")) {
+            unit = 1024;
+        } else if (size.endsWith("M")) {
+            unit = 1024 * 1024;
+        } else if (size.endsWith("G")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        if (unit > 1) {
+            size = size.substring(0, size.length() - 1);
+        }
+
+        try {
+            long number = Long.parseLong(size);
+            if (number >= 0) {
+                return Math.multiplyExact(number, unit);
+            }
+        } catch (NumberFormatException | ArithmeticException ex) {
+            // reported below
+        }
+
+        throw new IllegalArgumentException("Expected zero or a positive number of bytes: " + value);
+    }
+}
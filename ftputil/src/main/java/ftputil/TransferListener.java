@@ -0,0 +1,123 @@
+package ftputil;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Receives what happens during downloads: sessions being opened, directories
+ * being listed and files being transferred, together with their timings.
+ * File paths are relative to the remote directory and all times are in
+ * nanoseconds. Every method does nothing by default.
+ * <p>
+ * Events of different sessions may be delivered concurrently from
+ * different threads.
+ */
+public interface TransferListener {
+
+    /**
+     * Listener that ignores all events.
+     */
+    TransferListener NONE = new TransferListener() {};
+
+    /**
+     * Listener that reports events as human readable progress lines.
+     * Calls to {@code progressReporter} are serialized.
+     */
+    static TransferListener of(Consumer<String> progressReporter) {
+        return new ProgressListener(progressReporter);
+    }
+
+    /**
+     * Listener that reports events as progress lines, starting the line
+     * of every file with the given verb (e.g. Uploading) instead of Downloading.
+     */
+    static TransferListener of(Consumer<String> progressReporter, String verb) {
+        return new ProgressListener(progressReporter, verb);
+    }
+
+    /**
+     * Listener that passes every event to this listener and then to the next one.
+     */
+    default TransferListener andThen(TransferListener next) {
+        return new CompositeListener(this, next);
+    }
+
+    /**
+     * A session to the server has been connected and logged in.
+     */
+    default void sessionOpened(URI server, long connectNanos, long loginNanos) {
+    }
+
+    /**
+     * A remote directory has been listed completely.
+     */
+    default void listed(Path remoteDir, int entries, long nanos) {
+    }
+
+    /**
+     * The file is about to be downloaded. {@code total} is the number
+     * of files found so far.
+     */
+    default void fileStarted(Path file, int index, int total) {
+    }
+
+    /**
+     * The first byte of the file content has arrived,
+     * {@code nanos} after the transfer was requested.
+     */
+    default void firstByte(Path file, long nanos) {
+    }
+
+    /**
+     * Part of the content has arrived. {@code bytes} counts the whole file
+     * including content that was already there when resuming, {@code size}
+     * is the listed size of the file. Reported in steps rather than for
+     * every buffer, and not necessarily for the last bytes of the file.
+     */
+    default void bytesTransferred(Path file, long bytes, long size) {
+    }
+
+    /**
+     * The content of the file has been transferred completely.
+     */
+    default void fileCompleted(Path file, long bytes, long nanos) {
+    }
+
+    /**
+     * The checksum of the downloaded file matches the one published by the server.
+     */
+    default void fileVerified(Path file, ChecksumAlgorithm algorithm) {
+    }
+
+    /**
+     * The file did not need to be downloaded.
+     */
+    default void fileSkipped(Path file, String reason) {
+    }
+
+    /**
+     * The transfer of the file is attempted again.
+     */
+    default void fileRetried(Path file, String reason) {
+    }
+
+    /**
+     * The file could not be downloaded.
+     */
+    default void fileFailed(Path file, String reason) {
+    }
+
+    /**
+     * A watched remote directory has been polled, the next poll
+     * follows in {@code nextPollNanos}.
+     */
+    default void polled(Path remoteDir, int changed, int removed, long nextPollNanos) {
+    }
+
+    /**
+     * Any other progress information.
+     */
+    default void message(String message) {
+    }
+}
@@ -0,0 +1,231 @@
+package ftputil;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates transfer events into counters and average timings.
+ * <p>
+ * The counters can be read at any time while downloads are running, and
+ * can be published as an MXBean to be watched with JMX tools.
+ */
+public class TransferMetrics implements TransferListener, TransferMetricsMXBean {
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicLong sessions = new AtomicLong();
+    private final AtomicLong connectNanos = new AtomicLong();
+    private final AtomicLong loginNanos = new AtomicLong();
+
+    private final AtomicLong listings = new AtomicLong();
+    private final AtomicLong listedEntries = new AtomicLong();
+    private final AtomicLong listNanos = new AtomicLong();
+
+    private final AtomicLong filesCompleted = new AtomicLong();
+    private final AtomicLong filesVerified = new AtomicLong();
+    private final AtomicLong filesSkipped = new AtomicLong();
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong filesFailed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong firstBytes = new AtomicLong();
+    private final AtomicLong firstByteNanos = new AtomicLong();
+    private final AtomicLong maxFirstByteNanos = new AtomicLong();
+
+    // reasons of failed files by file
+    private final Map<Path, String> failures = new ConcurrentSkipListMap<>();
+
+    private ObjectName objectName;
+
+    @Override
+    public void sessionOpened(URI server, long connectNanos, long loginNanos) {
+        sessions.incrementAndGet();
+        this.connectNanos.addAndGet(connectNanos);
+        this.loginNanos.addAndGet(loginNanos);
+    }
+
+    @Override
+    public void listed(Path remoteDir, int entries, long nanos) {
+        listings.incrementAndGet();
+        listedEntries.addAndGet(entries);
+        listNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public void firstByte(Path file, long nanos) {
+        firstBytes.incrementAndGet();
+        firstByteNanos.addAndGet(nanos);
+        maxFirstByteNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public void fileCompleted(Path file, long bytes, long nanos) {
+        filesCompleted.incrementAndGet();
+        this.bytes.addAndGet(bytes);
+    }
+
+    @Override
+    public void fileVerified(Path file, ChecksumAlgorithm algorithm) {
+        filesVerified.incrementAndGet();
+    }
+
+    @Override
+    public void polled(Path remoteDir, int changed, int removed, long nextPollNanos) {
+        polls.incrementAndGet();
+    }
+
+    @Override
+    public void fileSkipped(Path file, String reason) {
+        filesSkipped.incrementAndGet();
+    }
+
+    @Override
+    public void fileRetried(Path file, String reason) {
+        retries.incrementAndGet();
+    }
+
+    @Override
+    public void fileFailed(Path file, String reason) {
+        filesFailed.incrementAndGet();
+        failures.put(file, String.valueOf(reason));
+    }
+
+    /**
+     * Publishes the metrics in the platform MBean server
+     * as {@code ftputil:type=TransferMetrics,name=<name>}.
+     */
+    public synchronized void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName
+                ("ftputil:type=TransferMetrics,name=" + ObjectName.quote(name));
+
+        server.registerMBean(this, objectName);
+        this.objectName = objectName;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server if they were published.
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName == null) {
+            return;
+        }
+
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        objectName = null;
+    }
+
+    @Override
+    public long getSessions() {
+        return sessions.get();
+    }
+
+    @Override
+    public double getAverageConnectMillis() {
+        return average(connectNanos, sessions);
+    }
+
+    @Override
+    public double getAverageLoginMillis() {
+        return average(loginNanos, sessions);
+    }
+
+    @Override
+    public long getListings() {
+        return listings.get();
+    }
+
+    @Override
+    public long getListedEntries() {
+        return listedEntries.get();
+    }
+
+    @Override
+    public double getAverageListMillis() {
+        return average(listNanos, listings);
+    }
+
+    @Override
+    public long getFilesCompleted() {
+        return filesCompleted.get();
+    }
+
+    @Override
+    public long getFilesVerified() {
+        return filesVerified.get();
+    }
+
+    @Override
+    public long getPolls() {
+        return polls.get();
+    }
+
+    @Override
+    public long getFilesSkipped() {
+        return filesSkipped.get();
+    }
+
+    @Override
+    public long getFilesFailed() {
+        return filesFailed.get();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.get();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public double getAverageFirstByteMillis() {
+        return average(firstByteNanos, firstBytes);
+    }
+
+    @Override
+    public double getMaxFirstByteMillis() {
+        return maxFirstByteNanos.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Files that could not be downloaded with the reason of their last failure, ordered by path.
+     */
+    public Map<Path, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Time since the metrics were created.
+     */
+    @Override
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Downloaded bytes per second of elapsed time.
+     */
+    @Override
+    public double getBytesPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed > 0 ? bytes.get() * 1e9 / elapsed : 0;
+    }
+
+    private static double average(AtomicLong totalNanos, AtomicLong count) {
+        long n = count.get();
+        return n > 0 ? totalNanos.get() / NANOS_PER_MILLI / n : 0;
+    }
+}
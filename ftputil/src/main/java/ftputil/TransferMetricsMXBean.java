@@ -0,0 +1,41 @@
+package ftputil;
+
+/**
+ * Management interface of {@link TransferMetrics}.
+ */
+public interface TransferMetricsMXBean {
+
+    long getSessions();
+
+    double getAverageConnectMillis();
+
+    double getAverageLoginMillis();
+
+    long getListings();
+
+    long getListedEntries();
+
+    double getAverageListMillis();
+
+    long getFilesCompleted();
+
+    long getFilesVerified();
+
+    long getFilesSkipped();
+
+    long getPolls();
+
+    long getFilesFailed();
+
+    long getRetries();
+
+    long getBytes();
+
+    double getAverageFirstByteMillis();
+
+    double getMaxFirstByteMillis();
+
+    long getElapsedMillis();
+
+    double getBytesPerSecond();
+}
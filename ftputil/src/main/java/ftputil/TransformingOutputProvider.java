@@ -0,0 +1,120 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Output provider that passes the content of the files a transform
+ * applies to through the transform before it reaches the streams of
+ * another provider, under the name the transform gives the file.
+ * Other files go to the other provider unchanged.
+ * <p>
+ * Transformed files are always downloaded from the start, as the local
+ * content says nothing about how much of the remote file has been
+ * received. They are not downloaded in ranges either. Sync decisions
+ * need a manifest in the other provider since the local size differs
+ * from the remote one.
+ */
+public class TransformingOutputProvider implements OutputProvider {
+    private final OutputProvider provider;
+    private final OutputTransform transform;
+
+    // checksums of the received content, the local content is not what the server has
+    private ChecksumAlgorithm checksumAlgorithm;
+    private final Map<Path, MessageDigest> digests = new ConcurrentHashMap<>();
+
+    public TransformingOutputProvider(OutputProvider provider, OutputTransform transform) {
+        this.provider = provider;
+        this.transform = transform;
+    }
+
+    public OutputTransform getTransform() {
+        return transform;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Computes checksums of transformed files from the content as it is
+     * received, for {@link #checksum} to compare with the server.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    @Override
+    public OutputStream open(Path file, long offset) throws IOException {
+        return open(file, offset, -1);
+    }
+
+    @Override
+    public OutputStream open(Path file, long offset, long size) throws IOException {
+        if (!transform.appliesTo(file)) {
+            return provider.open(file, offset, size);
+        }
+
+        OutputStream out = transform.wrap(provider.open(transform.target(file), 0));
+
+        if (checksumAlgorithm != null) {
+            MessageDigest digest = checksumAlgorithm.newDigest();
+            digests.put(file, digest);
+            out = new DigestOutputStream(out, digest);
+        }
+
+        return out;
+    }
+
+    @Override
+    public RangeOutput openRanges(Path file, long size) throws IOException {
+        // transforms need the content in order
+        return transform.appliesTo(file) ? null : provider.openRanges(file, size);
+    }
+
+    @Override
+    public long resumeOffset(Path file) {
+        return transform.appliesTo(file) ? 0 : provider.resumeOffset(file);
+    }
+
+    @Override
+    public boolean isUpToDate(Path file, FTPFile remote) {
+        return provider.isUpToDate(local(file), remote);
+    }
+
+    @Override
+    public String checksum(Path file, ChecksumAlgorithm algorithm) throws IOException {
+        if (!transform.appliesTo(file)) {
+            return provider.checksum(file, algorithm);
+        }
+
+        MessageDigest digest = digests.remove(file);
+        if (digest == null || !digest.getAlgorithm().equals(algorithm.getName())) {
+            // the received content is gone, it cannot be verified
+            return null;
+        }
+        return ChecksumAlgorithm.toHex(digest.digest());
+    }
+
+    @Override
+    public void discard(Path file) throws IOException {
+        digests.remove(file);
+        provider.discard(local(file));
+    }
+
+    @Override
+    public void completed(Path file, FTPFile remote) throws IOException {
+        provider.completed(local(file), remote);
+    }
+
+    private Path local(Path file) {
+        return transform.appliesTo(file) ? transform.target(file) : file;
+    }
+}
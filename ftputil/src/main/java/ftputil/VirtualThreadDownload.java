@@ -0,0 +1,239 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Download of every listed file in a task of its own, meant for
+ * virtual threads (Java 21 and later) and directories of many small files.
+ * <p>
+ * The session of the client lists the directories and submits a task for
+ * every file as soon as its page is parsed. The number of connections is
+ * bounded by a semaphore of the run, not by the number of threads: a task
+ * waits for a permit, takes a session of the {@link FtpSessionPool},
+ * transfers its file and hands the session back to the next task. Waiting
+ * tasks hold nothing but a parked virtual thread.
+ * <p>
+ * Tasks never block on the pool itself. The pool of a borrowed client may
+ * be shared with other downloads that hold all the sessions of the host,
+ * so a task that finds none left transfers its file with the session of
+ * the client once the listing is done.
+ */
+class VirtualThreadDownload {
+    // idle sessions of a pool created for the run are kept this long
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    private final FtpClient client;
+    private final Path remoteDir;
+    private final OutputProvider outputProvider;
+    private final TransferListener listener;
+    private final boolean recursive;
+
+    private final List<Future<?>> tasks = new ArrayList<>();
+    private final AtomicInteger found = new AtomicInteger();
+    private final AtomicInteger started = new AtomicInteger();
+
+    // transfers running at a time, set for the run
+    private Semaphore slots;
+    // the session of the client, free for transfers once listing is done
+    private final Semaphore ownSession = new Semaphore(0);
+
+    private volatile boolean failed = false;
+
+    VirtualThreadDownload(FtpClient client, Path remoteDir
+            , OutputProvider outputProvider
+            , TransferListener listener
+            , boolean recursive) {
+        this.client = client;
+        this.remoteDir = remoteDir;
+        this.outputProvider = outputProvider;
+        this.listener = listener;
+        this.recursive = recursive;
+    }
+
+    /**
+     * Executor starting a virtual thread per task, null if the
+     * running JDK has no virtual threads (before Java 21, or
+     * Java 19 and 20 without preview features enabled).
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            // looked up at run time so that the code still builds for Java 11
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Lists the remote directory (and its subdirectories in recursive mode)
+     * and downloads its files with tasks of the executor, using at most
+     * the given number of transfer sessions at a time.
+     */
+    void run(ExecutorService executor, int sessions) throws IOException {
+        // the pool of a borrowed client already limits the sessions per host
+        FtpSessionPool pool = client.getPool() != null
+                ? client.getPool()
+                : new FtpSessionPool(client.getSessionFactory(), sessions, IDLE_TIMEOUT);
+        slots = new Semaphore(sessions);
+
+        Throwable failure = null;
+
+        try {
+            list(executor, pool);
+        } catch (IOException | RuntimeException ex) {
+            failed = true;
+            failure = ex;
+        } finally {
+            ownSession.release();
+        }
+
+        try {
+            for (var task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Download interrupted...", ex);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+
+            if (pool != client.getPool()) {
+                pool.close();
+            }
+        }
+
+        // rethrow the first failure as if it happened in the calling thread
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IOException("Download failed...", failure);
+        }
+    }
+
+    // walks the directories with the session of the client
+    private void list(ExecutorService executor, FtpSessionPool pool) throws IOException {
+        Deque<Path> dirs = new ArrayDeque<>();
+        dirs.add(Path.of(""));
+
+        Path dir;
+        while (!failed && (dir = dirs.pollFirst()) != null) {
+            Path listed = dir;
+            long listStarted = System.nanoTime();
+            int[] entries = {0};
+
+            client.listFiles(remoteDir.resolve(listed), page -> {
+                entries[0] += page.size();
+
+                for (FTPFile entry : page) {
+                    if (entry.isFile()) {
+                        found.incrementAndGet();
+                        Path file = listed.resolve(entry.getName());
+                        tasks.add(executor.submit(() -> {
+                            download(pool, file, entry);
+                            return null;
+                        }));
+                    } else if (recursive && entry.isDirectory()
+                            && !entry.getName().equals(".") && !entry.getName().equals("..")) {
+                        dirs.addLast(listed.resolve(entry.getName()));
+                    }
+                }
+            });
+
+            listener.listed(remoteDir.resolve(listed), entries[0], System.nanoTime() - listStarted);
+        }
+    }
+
+    private void download(FtpSessionPool pool, Path file, FTPFile entry) throws IOException {
+        try {
+            if (transferWithPool(pool, file, entry)) {
+                return;
+            }
+
+            // the host has no session left for us, wait for our own without
+            // keeping a permit from the tasks that may still find one
+            acquire(ownSession);
+            try {
+                if (!failed) {
+                    transfer(client, file, entry);
+                }
+            } finally {
+                ownSession.release();
+            }
+        } catch (IOException | RuntimeException ex) {
+            // stop the waiting tasks from taking sessions
+            failed = true;
+            throw ex;
+        }
+    }
+
+    /**
+     * Transfers the file with a session of the pool while holding a permit of the run.
+     *
+     * @return false if the pool has no session left for the host
+     */
+    private boolean transferWithPool(FtpSessionPool pool, Path file, FTPFile entry) throws IOException {
+        // waits for a permit of the run, not for a thread
+        acquire(slots);
+
+        try {
+            if (failed) {
+                return true;
+            }
+
+            var borrowed = pool.tryBorrow(client.getServer()
+                    , client.getPort(), client.getUser(), client.getPassword());
+            if (borrowed.isEmpty()) {
+                return false;
+            }
+
+            try (FtpClient session = borrowed.get()) {
+                client.configure(session);
+                transfer(session, file, entry);
+            }
+            return true;
+        } finally {
+            slots.release();
+        }
+    }
+
+    private void transfer(FtpClient session, Path file, FTPFile entry) throws IOException {
+        // no monitor around the listener, it would pin the carrier of a virtual thread
+        listener.fileStarted(file, started.incrementAndGet(), found.get());
+
+        session.download(remoteDir, file, entry, outputProvider, listener);
+    }
+
+    private static void acquire(Semaphore semaphore) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted...", ex);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ftputil;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncTransferListenerUnitTest {
+
+    private final Path file = Path.of("file_one.json");
+
+    @Test
+    @DisplayName("Test that events are delivered in order from another thread")
+    public void testDelivery() {
+
+        List<String> messages = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        TransferListener listener = new TransferListener() {
+            @Override
+            public void message(String message) {
+                threads.add(Thread.currentThread());
+                messages.add(message);
+            }
+        };
+
+        try (var async = new AsyncTransferListener(listener, 4)) {
+            for (int i = 0; i < 100; i++) {
+                async.message("message " + i);
+            }
+        }
+
+        // everything published before close is delivered
+        assertEquals(100, messages.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message " + i, messages.get(i));
+        }
+
+        assertFalse(threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    @DisplayName("Test that a slow listener does not hold up byte progress")
+    public void testSlowListener() throws InterruptedException {
+
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> progress = new ArrayList<>();
+
+        TransferListener listener = new TransferListener() {
+            @Override
+            public void fileStarted(Path file, int index, int total) {
+                delivering.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void bytesTransferred(Path file, long bytes, long size) {
+                progress.add(bytes);
+            }
+        };
+
+        var async = new AsyncTransferListener(listener, 2);
+
+        // the listener is busy with the first event
+        async.fileStarted(file, 1, 1);
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+
+        // only what fits into the buffer is kept, the rest does not wait
+        for (long bytes = 1; bytes <= 10; bytes++) {
+            async.bytesTransferred(file, bytes, 10);
+        }
+
+        release.countDown();
+        async.close();
+
+        assertAll(
+                () -> assertEquals(List.of(1L, 2L), progress)
+                , () -> assertEquals(8, async.getDropped()));
+    }
+
+    @Test
+    @DisplayName("Test that a slow listener does not hold up the other events")
+    public void testSlowListenerLifecycle() throws InterruptedException {
+
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Path> completed = new ArrayList<>();
+
+        TransferListener listener = new TransferListener() {
+            @Override
+            public void fileStarted(Path file, int index, int total) {
+                delivering.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void fileCompleted(Path file, long bytes, long nanos) {
+                completed.add(file);
+            }
+        };
+
+        var async = new AsyncTransferListener(listener, 2);
+
+        // the listener is busy with the first event
+        async.fileStarted(file, 1, 1);
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+
+        // many more events than capacity are published without waiting
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; i++) {
+                async.fileCompleted(Path.of("file" + i), 1, 1);
+            }
+        });
+
+        release.countDown();
+        async.close();
+
+        assertEquals(100, completed.size());
+    }
+
+    @Test
+    @DisplayName("Test that a failing listener still gets later events")
+    public void testFailingListener() {
+
+        List<String> messages = new ArrayList<>();
+
+        TransferListener listener = new TransferListener() {
+            @Override
+            public void message(String message) {
+                if (message.equals("bad")) {
+                    throw new IllegalStateException(message);
+                }
+                messages.add(message);
+            }
+        };
+
+        try (var async = new AsyncTransferListener(listener, 4)) {
+            async.message("bad");
+            async.message("good");
+        }
+
+        assertEquals(List.of("good"), messages);
+    }
+}
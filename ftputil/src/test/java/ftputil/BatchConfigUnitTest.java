@@ -0,0 +1,109 @@
+package ftputil;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchConfigUnitTest {
+
+    private static Properties properties(String... keysAndValues) {
+        Properties properties = new Properties();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            properties.setProperty(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return properties;
+    }
+
+    @Test
+    @DisplayName("Test that jobs take the shared options unless they set their own")
+    public void testJobs() throws ParseException {
+
+        BatchConfig config = BatchConfig.parse(properties(
+                "server", "ftp.example.org"
+                , "remotedir", "/pub/"
+                , "localdir", "./data/"
+                , "threads", "4"
+                , "jobs", "diseases, targets"
+                , "diseases.dir", "diseases"
+                , "targets.dir", "targets"
+                , "targets.threads", "2"
+                , "targets.sync", "true"
+                , "targets.include", "*.json *.csv"
+                , "max-rate", "2M"
+                , "batch.sessions", "6"));
+
+        CliParser diseases = config.getJobs().get(0).getOptions();
+        CliParser targets = config.getJobs().get(1).getOptions();
+
+        assertAll(
+                () -> assertEquals("diseases", config.getJobs().get(0).getName())
+                , () -> assertEquals(URI.create("ftp.example.org"), diseases.getServer())
+                , () -> assertEquals(Path.of("diseases"), diseases.getDir())
+                , () -> assertEquals(4, diseases.getThreads())
+                , () -> assertFalse(diseases.isSync())
+                , () -> assertNull(diseases.getFileFilter())
+                , () -> assertEquals("targets", config.getJobs().get(1).getName())
+                , () -> assertEquals(Path.of("targets"), targets.getDir())
+                , () -> assertEquals(2, targets.getThreads())
+                , () -> assertTrue(targets.isSync())
+                , () -> assertEquals("include *.json, include *.csv", targets.getFileFilter().toString())
+                , () -> assertEquals(6, config.getSessions())
+                , () -> assertEquals(6, config.getSessionsPerHost())
+                // the rate limits the batch, not every job
+                , () -> assertEquals(2 * 1024 * 1024, config.getMaxRate())
+                , () -> assertNull(config.getRateSchedule())
+                , () -> assertEquals(0, diseases.getMaxRate()));
+    }
+
+    @Test
+    @DisplayName("Test that mistakes in the batch file are reported")
+    public void testBadBatch() {
+
+        assertAll(
+                () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("server", "ftp.example.org")))
+                // unknown option
+                , () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("jobs", "one", "one.dir", "dir", "one.treads", "4")))
+                // unknown job
+                , () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("jobs", "one", "one.dir", "dir", "two.dir", "dir")))
+                // flags are true or false
+                , () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("server", "s", "remotedir", "r", "localdir", "l"
+                                , "jobs", "one", "one.dir", "dir", "sync", "yes")))
+                // missing required option
+                , () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("server", "s", "remotedir", "r", "jobs", "one", "one.dir", "dir")))
+                , () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("server", "s", "remotedir", "r", "localdir", "l"
+                                , "jobs", "one", "one.dir", "dir", "batch.sessions", "0")))
+                // the rate limits the whole batch
+                , () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("server", "s", "remotedir", "r", "localdir", "l"
+                                , "jobs", "one", "one.dir", "dir", "one.max-rate", "1M")))
+                , () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("server", "s", "remotedir", "r", "localdir", "l"
+                                , "jobs", "one", "one.dir", "dir", "max-rate", "fast")))
+                // a watching job would never let the batch finish
+                , () -> assertThrows(ParseException.class, () -> BatchConfig.parse(properties
+                        ("server", "s", "remotedir", "r", "localdir", "l"
+                                , "jobs", "one", "one.dir", "dir", "one.watch", "30"))));
+    }
+
+    @Test
+    @DisplayName("Test that a batch file is only picked up on its own")
+    public void testBatchFile() throws ParseException {
+
+        assertAll(
+                () -> assertEquals(Path.of("jobs.properties"), BatchConfig.batchFile("--batch", "jobs.properties"))
+                , () -> assertNull(BatchConfig.batchFile("-s", "server", "-r", "remote", "-l", "local", "-d", "dir"))
+                , () -> assertNull(BatchConfig.batchFile()));
+    }
+}
@@ -0,0 +1,40 @@
+package ftputil;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChecksumAlgorithmUnitTest {
+
+    private final byte[] abc = "abc".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    @DisplayName("Test checksums of known content in the hex form servers use")
+    public void testDigests() {
+        assertAll(
+                () -> assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"
+                        , ChecksumAlgorithm.toHex(ChecksumAlgorithm.SHA_256.newDigest().digest(abc)))
+                , () -> assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d"
+                        , ChecksumAlgorithm.toHex(ChecksumAlgorithm.SHA_1.newDigest().digest(abc)))
+                , () -> assertEquals("900150983cd24fb0d6963f7d28e17f72"
+                        , ChecksumAlgorithm.toHex(ChecksumAlgorithm.MD5.newDigest().digest(abc)))
+                , () -> assertEquals("352441c2"
+                        , ChecksumAlgorithm.toHex(ChecksumAlgorithm.CRC32.newDigest().digest(abc)))
+                , () -> assertEquals("364b3fb7"
+                        , ChecksumAlgorithm.toHex(ChecksumAlgorithm.CRC32C.newDigest().digest(abc))));
+    }
+
+    @Test
+    @DisplayName("Test that algorithms are found by name with or without a dash")
+    public void testForName() {
+        assertAll(
+                () -> assertEquals(ChecksumAlgorithm.SHA_256, ChecksumAlgorithm.forName("SHA-256"))
+                , () -> assertEquals(ChecksumAlgorithm.SHA_256, ChecksumAlgorithm.forName("sha256"))
+                , () -> assertEquals(ChecksumAlgorithm.CRC32C, ChecksumAlgorithm.forName("crc32c"))
+                , () -> assertNull(ChecksumAlgorithm.forName("whirlpool"))
+                , () -> assertEquals("SHA256SUMS", ChecksumAlgorithm.SHA_256.getSumsFileName()));
+    }
+}
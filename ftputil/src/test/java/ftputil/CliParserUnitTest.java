@@ -8,6 +8,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.net.URI;
 import java.nio.file.Path;
+import java.time.LocalTime;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,6 +38,231 @@ public class CliParserUnitTest {
                 , () -> assertEquals(cli.getDir(), Path.of("directory_name")));
     }
 
+    @Test
+    @DisplayName("Test parsing of the number of threads")
+    public void testThreadsParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertEquals(1, cli.getThreads());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name"
+                , "--threads", "4");
+        assertEquals(4, cli.getThreads());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the resume flag")
+    public void testResumeParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertFalse(cli.isResume());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--resume");
+        assertTrue(cli.isResume());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the sync flag")
+    public void testSyncParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertFalse(cli.isSync());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--sync");
+        assertTrue(cli.isSync());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the atomic flag")
+    public void testAtomicParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertFalse(cli.isAtomic());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--atomic");
+        assertTrue(cli.isAtomic());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the push flag")
+    public void testPushParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertFalse(cli.isPush());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--push");
+        assertTrue(cli.isPush());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the watch intervals")
+    public void testWatchParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertEquals(0, cli.getWatch());
+        assertEquals(900, cli.getWatchMax());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name"
+                , "--watch", "30", "--watch-max", "600");
+        assertEquals(30, cli.getWatch());
+        assertEquals(600, cli.getWatchMax());
+
+        assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                , "-l", "local", "-d", "directory_name", "--watch", "0"));
+        assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                , "-l", "local", "-d", "directory_name", "--watch", "30", "--push"));
+    }
+
+    @Test
+    @DisplayName("Test parsing of the recursive flag")
+    public void testRecursiveParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertFalse(cli.isRecursive());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--recursive");
+        assertTrue(cli.isRecursive());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the buffer size")
+    public void testBufferSizeParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertEquals(0, cli.getBufferSize());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name"
+                , "--buffer-size", "1048576");
+        assertEquals(1048576, cli.getBufferSize());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the segment threshold")
+    public void testSegmentThresholdParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertEquals(1024, cli.getSegmentThreshold());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name"
+                , "--segment-threshold", "256");
+        assertEquals(256, cli.getSegmentThreshold());
+
+        // zero turns range downloads off
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name"
+                , "--segment-threshold", "0");
+        assertEquals(0, cli.getSegmentThreshold());
+
+        assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                , "-l", "local", "-d", "directory_name", "--segment-threshold", "-1"));
+    }
+
+    @Test
+    @DisplayName("Test parsing of the jmx flag")
+    public void testJmxParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertFalse(cli.isJmx());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--jmx");
+        assertTrue(cli.isJmx());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the virtual threads flag")
+    public void testVirtualThreadsParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertFalse(cli.isVirtualThreads());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--virtual-threads");
+        assertTrue(cli.isVirtualThreads());
+    }
+
+    @Test
+    @DisplayName("Test parsing of the retry options")
+    public void testRetryParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertAll(
+                () -> assertEquals(3, cli.getRetries())
+                , () -> assertEquals(1000, cli.getRetryBackoff()));
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name"
+                , "--retries", "0", "--retry-backoff", "250");
+        assertAll(
+                () -> assertEquals(0, cli.getRetries())
+                , () -> assertEquals(250, cli.getRetryBackoff()));
+
+        assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                , "-l", "local", "-d", "directory_name", "--retries", "-1"));
+    }
+
+    @Test
+    @DisplayName("Test parsing of the checksum algorithm")
+    public void testVerifyParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertNull(cli.getVerify());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--verify", "sha256");
+        assertEquals(ChecksumAlgorithm.SHA_256, cli.getVerify());
+
+        assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                , "-l", "local", "-d", "directory_name", "--verify", "sha3"));
+    }
+
+    @Test
+    @DisplayName("Test parsing of the bandwidth limits")
+    public void testRateParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertAll(
+                () -> assertEquals(0, cli.getMaxRate())
+                , () -> assertNull(cli.getRateSchedule()));
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name"
+                , "--max-rate", "2M", "--rate-schedule", "09:00-17:00=512K");
+        assertAll(
+                () -> assertEquals(2 * 1024 * 1024, cli.getMaxRate())
+                , () -> assertEquals(512 * 1024, cli.getRateSchedule().rateAt(LocalTime.NOON, 0)));
+
+        assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                , "-l", "local", "-d", "directory_name", "--max-rate", "fast"));
+    }
+
+    @Test
+    @DisplayName("Test parsing of the content transform")
+    public void testTransformParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertNull(cli.getTransform());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name", "--transform", "gunzip");
+        assertTrue(cli.getTransform().appliesTo(Path.of("file.json.gz")));
+
+        assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                , "-l", "local", "-d", "directory_name", "--transform", "zstd"));
+    }
+
+    @Test
+    @DisplayName("Test parsing of the file filter")
+    public void testFilterParsing() throws ParseException {
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name");
+        assertNull(cli.getFileFilter());
+
+        cli.parse("-s", "server", "-r", "remote", "-l", "local", "-d", "directory_name"
+                , "--include", "*.json", "--include", "*.csv", "--exclude", "regex:.*tmp.*"
+                , "--min-size", "1K", "--modified-after", "2024-01-31");
+        assertEquals("include *.json, include *.csv, exclude regex:.*tmp.*, min size 1024"
+                + ", modified after 2024-01-31T00:00:00Z", cli.getFileFilter().toString());
+
+        assertAll(
+                () -> assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                        , "-l", "local", "-d", "directory_name", "--include", "regex:(["))
+                , () -> assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                        , "-l", "local", "-d", "directory_name", "--modified-before", "yesterday")));
+
+        // sizes are reported as sizes, not as rates
+        var ex = assertThrows(ParseException.class, () -> cli.parse("-s", "server", "-r", "remote"
+                , "-l", "local", "-d", "directory_name", "--max-size", "big"));
+        assertEquals("Option max-size: Expected zero or a positive number of bytes: big", ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("Test a bad number of threads parsing")
+    public void testBadThreadsParsing() {
+        assertAll(
+                () -> assertThrows(ParseException.class, () -> cli.parse
+                        ("-s", "server", "-r", "remote", "-l", "local", "-d", "dir", "-t", "0"))
+                , () -> assertThrows(ParseException.class, () -> cli.parse
+                        ("-s", "server", "-r", "remote", "-l", "local", "-d", "dir", "-t", "many")));
+    }
+
     @Test
     @DisplayName("Test a bad option parsing")
     public void testBadOptionParsing() {
@@ -92,6 +92,21 @@ public class FtpClientIntegrationTest {
                 }
             }
 
+            @Test
+            @DisplayName("Then we can stream the listing of a remote directory")
+            public void testStreamOfFiles() {
+
+                try (var ftpClient = FtpClient.getClient(server, new FTPClient());
+                     var files = ftpClient.streamFiles(remoteBase.resolve(dataDir))) {
+
+                    assertLinesMatch(List.of(fileOnePath.toString(), fileTwoPath.toString())
+                            , files.map(FTPFile::getName).collect(Collectors.toList()));
+
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
             @Test
             @DisplayName("Then we can download content of all remote files in a directory")
             public void testDownloadFiles() {
@@ -125,6 +140,30 @@ public class FtpClientIntegrationTest {
                 }
             }
 
+            @Test
+            @DisplayName("Then we can download content of all remote files using several sessions")
+            public void testDownloadFilesInParallel() {
+
+                // create output streams for the content of remote files
+                Map<Path, ByteArrayOutputStream> outputStreams = Map.of
+                        (fileOnePath, new ByteArrayOutputStream()
+                        , fileTwoPath, new ByteArrayOutputStream());
+
+                try (var ftpClient = FtpClient.getClient(server, new FTPClient())) {
+
+                    ftpClient.setThreads(2);
+                    ftpClient.downloadAllFiles(remoteBase.resolve(dataDir), outputStreams::get, message -> {});
+
+                    assertLinesMatch
+                            (List.of(fileOneContent, fileTwoContent)
+                                    , List.of(outputStreams.get(fileOnePath).toString()
+                                            , outputStreams.get(fileTwoPath).toString()));
+
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
             @Test
             @DisplayName("Then we can download content of a remote file")
             public void testDownloadSingleFile() {
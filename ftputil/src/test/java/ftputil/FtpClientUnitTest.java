@@ -1,7 +1,11 @@
 package ftputil;
 
+import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileFilter;
+import org.apache.commons.net.ftp.FTPListParseEngine;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -9,12 +13,26 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InOrder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -22,7 +40,10 @@ import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.verify;
 
@@ -66,7 +87,7 @@ public class FtpClientUnitTest {
         @DisplayName("Test open connection sequence for default port/user")
         public void testFTPOpenDefault() throws IOException {
 
-            // open connection should have three steps:
+            // open connection should have four steps:
             // connect to server @ port
             verify(mockFTPClient).connect("localhost", 21);
             // log in with username anonymous and no password
@@ -74,6 +95,8 @@ public class FtpClientUnitTest {
             // switch to passive mode to be able to work from VMs
             // (behind NATs and port mapping)
             verify(mockFTPClient).enterLocalPassiveMode();
+            // transfer files as binary (TYPE I), not the ASCII default
+            verify(mockFTPClient).setFileType(FTP.BINARY_FILE_TYPE);
         }
 
         @Test
@@ -101,6 +124,199 @@ public class FtpClientUnitTest {
                     , list.stream().map(FTPFile::getName).collect(Collectors.toList()));
         }
 
+        @Test
+        @DisplayName("Test listing files page by page")
+        public void testFTPListFilesInPages() throws IOException {
+
+            when(mockFTPClient.initiateListParsing("/any/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+
+            client.setListPageSize(1);
+
+            List<List<FTPFile>> pages = new ArrayList<>();
+            client.listFiles(Path.of("/any/path"), pages::add);
+
+            assertAll(
+                    () -> assertEquals(2, pages.size())
+                    , () -> assertEquals("fileOne.txt", pages.get(0).get(0).getName())
+                    , () -> assertEquals("fileTwo.txt", pages.get(1).get(0).getName()));
+        }
+
+        @Test
+        @DisplayName("Test streaming a listing")
+        public void testFTPStreamFiles() throws IOException {
+
+            // unparseable entries come back as nulls
+            when(mockFTPClient.initiateListParsing("/any/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles[0], null, ftpFiles[1]));
+
+            client.setListPageSize(2);
+
+            try (var files = client.streamFiles(Path.of("/any/path"))) {
+                assertLinesMatch(List.of("fileOne.txt", "fileTwo.txt")
+                        , files.map(FTPFile::getName).collect(Collectors.toList()));
+            }
+        }
+
+        @Test
+        @DisplayName("Test listings are served from the cache until they expire")
+        public void testFTPListingCache() throws IOException {
+
+            when(mockFTPClient.initiateListParsing("/any/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+
+            var cache = new ListingCache(8, Duration.ofMinutes(1));
+            client.setListingCache(cache);
+            client.setListPageSize(1);
+
+            List<List<FTPFile>> pages = new ArrayList<>();
+            client.listFiles(Path.of("/any/path"), pages::add);
+            List<FTPFile> files = client.listFiles(Path.of("/any/path"));
+
+            // one round trip, paged as if it came from the server
+            verify(mockFTPClient, times(1)).initiateListParsing("/any/path");
+            assertAll(
+                    () -> assertEquals(2, pages.size())
+                    , () -> assertEquals(2, files.size())
+                    , () -> assertEquals(1, cache.getMisses())
+                    , () -> assertEquals(1, cache.getHits()));
+
+            // invalidated listings go to the server again
+            cache.invalidate(Path.of("/any/path"));
+            client.listFiles(Path.of("/any/path"));
+            verify(mockFTPClient, times(2)).initiateListParsing("/any/path");
+        }
+
+        @Test
+        @DisplayName("Test a second download of an unchanged directory lists it from the cache")
+        public void testFTPDownloadAllFilesListingCache() throws IOException {
+
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+
+            var cache = new ListingCache(8, Duration.ofMinutes(1));
+            client.setListingCache(cache);
+
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> mock(OutputStream.class)
+                    , TransferListener.NONE);
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> mock(OutputStream.class)
+                    , TransferListener.NONE);
+
+            verify(mockFTPClient, times(1)).initiateListParsing("/remote/path");
+            verify(mockFTPClient, never()).listFiles(anyString());
+            verify(mockFTPClient, times(4)).retrieveFile(anyString(), any(OutputStream.class));
+            assertAll(
+                    () -> assertEquals(1, cache.getMisses())
+                    , () -> assertEquals(1, cache.getHits()));
+        }
+
+        @Test
+        @DisplayName("Test expired listings are kept while the directory time does not change")
+        public void testFTPListingCacheRevalidation() throws IOException {
+
+            when(mockFTPClient.initiateListParsing("/any/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+            when(mockFTPClient.getModificationTime("/any/path"))
+                    .thenReturn("20220730123456")
+                    .thenReturn("20220730123456")
+                    .thenReturn("20220730130000");
+
+            // always expired
+            var cache = new ListingCache(8, Duration.ZERO);
+            client.setListingCache(cache);
+
+            client.listFiles(Path.of("/any/path"));
+            client.listFiles(Path.of("/any/path"));
+            verify(mockFTPClient, times(1)).initiateListParsing("/any/path");
+            assertEquals(1, cache.getRevalidations());
+
+            // the directory changed
+            client.listFiles(Path.of("/any/path"));
+            verify(mockFTPClient, times(2)).initiateListParsing("/any/path");
+        }
+
+        @Test
+        @DisplayName("Test directories are listed again when the server has no MDTM for them")
+        public void testFTPListingCacheWithoutDirectoryTime() throws IOException {
+
+            when(mockFTPClient.initiateListParsing("/any/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+            // 550 for directories
+            when(mockFTPClient.getModificationTime(anyString())).thenReturn(null);
+
+            client.setListingCache(new ListingCache(8, Duration.ZERO));
+
+            client.listFiles(Path.of("/any/path"));
+            client.listFiles(Path.of("/any/path"));
+            client.listFiles(Path.of("/any/path"));
+
+            // asked once, then left out
+            verify(mockFTPClient, times(1)).getModificationTime("/any/path");
+            verify(mockFTPClient, times(3)).initiateListParsing("/any/path");
+        }
+
+        @Test
+        @DisplayName("Test uploads drop the listing of their directory")
+        public void testFTPListingCacheUpload(@TempDir Path dataDir) throws IOException {
+
+            Files.writeString(dataDir.resolve("one.txt"), "one");
+
+            when(mockFTPClient.initiateListParsing("/remote"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+            when(mockFTPClient.storeFileStream(anyString())).thenAnswer(invocation -> new ByteArrayOutputStream());
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+            when(mockFTPClient.rename(anyString(), anyString())).thenReturn(true);
+
+            var cache = new ListingCache(8, Duration.ofMinutes(1));
+            client.setListingCache(cache);
+
+            client.listFiles(Path.of("/remote"));
+            client.uploadFile(dataDir.resolve("one.txt"), Path.of("/remote/one.txt"));
+
+            assertNull(cache.get(Path.of("/remote")));
+        }
+
+        @Test
+        @DisplayName("Test listing with MLSD when the server supports it")
+        public void testFTPMachineListing() throws IOException {
+
+            when(mockFTPClient.hasFeature("MLST")).thenReturn(true);
+
+            // MLSD lists the directory itself as well
+            when(mockFTPClient.initiateMListParsing("/any/path"))
+                    .thenAnswer(invocation -> listing
+                            (MLSxEntryParser.parseEntry("type=cdir;modify=20220730120000; /any/path")
+                                    , MLSxEntryParser.parseEntry("type=file;size=33;modify=20220730123456.789; file.json")));
+
+            List<FTPFile> files = new ArrayList<>();
+            client.listFiles(Path.of("/any/path"), files::addAll);
+
+            assertAll(
+                    () -> assertTrue(client.usesMachineListing())
+                    , () -> assertEquals(1, files.size())
+                    , () -> assertEquals("file.json", files.get(0).getName())
+                    , () -> assertEquals(33, files.get(0).getSize())
+                    // exact modification time in UTC
+                    , () -> assertEquals(Instant.parse("2022-07-30T12:34:56.789Z").toEpochMilli()
+                            , files.get(0).getTimestamp().getTimeInMillis()));
+
+            verify(mockFTPClient, never()).initiateListParsing(anyString());
+        }
+
+        @Test
+        @DisplayName("Test listing with LIST when MLSD is not allowed")
+        public void testFTPMachineListingDisabled() throws IOException {
+
+            when(mockFTPClient.hasFeature("MLST")).thenReturn(true);
+
+            client.setMachineListing(false);
+            client.listFiles(Path.of("/any/path"));
+
+            verify(mockFTPClient).listFiles("/any/path");
+            verify(mockFTPClient, never()).mlistDir(anyString(), any());
+        }
+
         @Test
         @DisplayName("Test downloadAllFiles call")
         public void testFTPDownloadAllFiles() throws IOException {
@@ -138,6 +354,1004 @@ public class FtpClientUnitTest {
             verify(mockFTPClient).retrieveFile("/remote/path/fileTwo.txt", out);
         }
 
+        @Test
+        @DisplayName("Test downloadAllFiles call with several sessions")
+        public void testFTPDownloadAllFilesInParallel() throws IOException {
+
+            // additional session to share the files with
+            FTPClient secondFTPClient = mock(FTPClient.class);
+            when(secondFTPClient.getReplyCode()).thenReturn(230);
+            when(secondFTPClient.login(anyString(), anyString())).thenReturn(true);
+            when(secondFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+
+            client.setSessionFactory(() -> secondFTPClient);
+            client.setThreads(2);
+
+            // sessions share a streamed listing
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+
+            // create a simple output provider
+            OutputStream out = mock(OutputStream.class);
+            List<Path> opened = new CopyOnWriteArrayList<>();
+            Function<Path, OutputStream> outputProvider = file -> {
+                opened.add(file);
+                return out;
+            };
+
+            // collect progress messages
+            List<String> messages = new ArrayList<>();
+
+            client.downloadAllFiles
+                    (Path.of("/remote/path"), outputProvider, messages::add);
+
+            // each file is retrieved exactly once by one of the sessions
+            assertEquals(List.of(Path.of("fileOne.txt"), Path.of("fileTwo.txt"))
+                    , opened.stream().sorted().collect(Collectors.toList()));
+            verify(mockFTPClient, atMost(2)).retrieveFile(anyString(), any(OutputStream.class));
+            verify(secondFTPClient, atMost(2)).retrieveFile(anyString(), any(OutputStream.class));
+
+            // progress is numbered consistently across sessions
+            assertAll(
+                    () -> assertEquals(2, messages.size())
+                    , () -> assertTrue(messages.get(0).startsWith("Downloading (1 of 2)"))
+                    , () -> assertTrue(messages.get(1).startsWith("Downloading (2 of 2)")));
+
+            // the additional session is closed after the run
+            verify(secondFTPClient).logout();
+            verify(secondFTPClient).disconnect();
+        }
+
+        @Test
+        @DisplayName("Test recursive downloadAllFiles call")
+        public void testFTPDownloadAllFilesRecursive() throws IOException {
+
+            // a subdirectory next to the first file
+            FTPFile subDir = new FTPFile();
+            subDir.setName("sub");
+            subDir.setType(FTPFile.DIRECTORY_TYPE);
+            FTPFile parentDir = new FTPFile();
+            parentDir.setName("..");
+            parentDir.setType(FTPFile.DIRECTORY_TYPE);
+
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles[0], subDir, parentDir));
+            when(mockFTPClient.initiateListParsing("/remote/path/sub"))
+                    .thenAnswer(invocation -> listing(ftpFiles[1]));
+
+            OutputStream out = mock(OutputStream.class);
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(out);
+
+            client.setRecursive(true);
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, message -> {});
+
+            // output paths mirror the remote tree
+            verify(outputProvider).open(Path.of("fileOne.txt"), 0);
+            verify(outputProvider).open(Path.of("sub/fileTwo.txt"), 0);
+
+            verify(mockFTPClient).retrieveFile("/remote/path/fileOne.txt", out);
+            verify(mockFTPClient).retrieveFile("/remote/path/sub/fileTwo.txt", out);
+
+            // the parent directory entry is not followed
+            verify(mockFTPClient, never()).initiateListParsing("/remote/path/..");
+        }
+
+        @Test
+        @DisplayName("Test that the number of threads should be positive")
+        public void testBadThreads() {
+            assertThrows(IllegalArgumentException.class, () -> client.setThreads(0));
+        }
+
+        @Test
+        @DisplayName("Test downloadAllFiles resumes partially downloaded files")
+        public void testFTPResumeDownload() throws IOException {
+
+            ftpFiles[0].setSize(10);
+            ftpFiles[1].setSize(10);
+
+            // first file is half way there, the second one is complete
+            OutputStream out = mock(OutputStream.class);
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(out);
+            when(outputProvider.resumeOffset(Path.of("fileOne.txt"))).thenReturn(5L);
+            when(outputProvider.resumeOffset(Path.of("fileTwo.txt"))).thenReturn(10L);
+
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, message -> {});
+
+            // REST is sent for the partial file and reset afterwards
+            InOrder inOrder = inOrder(mockFTPClient);
+            inOrder.verify(mockFTPClient).setRestartOffset(5);
+            inOrder.verify(mockFTPClient).retrieveFile("/remote/path/fileOne.txt", out);
+            inOrder.verify(mockFTPClient).setRestartOffset(0);
+
+            // the local file is appended to, knowing the size it will have
+            verify(outputProvider).open(Path.of("fileOne.txt"), 5, 10);
+            verify(outputProvider).open(Path.of("fileOne.txt"), 5);
+
+            // nothing left to download for the complete file
+            verify(outputProvider, never()).open(eq(Path.of("fileTwo.txt")), anyLong());
+            verify(mockFTPClient, never()).retrieveFile(eq("/remote/path/fileTwo.txt"), any());
+        }
+
+        @Test
+        @DisplayName("Test downloadAllFiles falls back to a full download when REST is refused")
+        public void testFTPResumeRefused() throws IOException {
+
+            ftpFiles[0].setSize(10);
+
+            OutputStream out = mock(OutputStream.class);
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(out);
+            when(outputProvider.resumeOffset(Path.of("fileOne.txt"))).thenReturn(5L);
+
+            // the server does not implement REST
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(false, true);
+            when(mockFTPClient.getReplyCode()).thenReturn(502);
+
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, message -> {});
+
+            InOrder inOrder = inOrder(outputProvider);
+            inOrder.verify(outputProvider).open(Path.of("fileOne.txt"), 5);
+            inOrder.verify(outputProvider).open(Path.of("fileOne.txt"), 0);
+
+            verify(mockFTPClient, times(2)).retrieveFile("/remote/path/fileOne.txt", out);
+        }
+
+        @Test
+        @DisplayName("Test downloading a large file in ranges over several sessions")
+        public void testFTPDownloadInRanges(@TempDir Path dataDir) throws IOException {
+
+            byte[] content = "0123456789abcdefghijklmnopqrstuvwxyzABCD".getBytes(StandardCharsets.UTF_8);
+            ftpFiles[0].setSize(content.length);
+
+            // offsets of all the transfers of all the sessions
+            List<Long> offsets = new CopyOnWriteArrayList<>();
+
+            serve(mockFTPClient, content, offsets);
+            client.setSessionFactory(() -> {
+                FTPClient session = mock(FTPClient.class);
+                when(session.getReplyCode()).thenReturn(230);
+                try {
+                    when(session.login(anyString(), anyString())).thenReturn(true);
+                    serve(session, content, offsets);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return session;
+            });
+
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles[0]));
+
+            client.setThreads(2);
+            client.setSegmentThreshold(content.length);
+            client.downloadAllFiles(Path.of("/remote/path"), new LocalOutputProvider(dataDir), message -> {});
+
+            // the two halves are requested with REST and end up at their places
+            assertAll(
+                    () -> assertTrue(offsets.containsAll(List.of(0L, 20L)))
+                    , () -> assertArrayEquals(content, Files.readAllBytes(dataDir.resolve("fileOne.txt")))
+                    , () -> assertFalse(Files.exists(dataDir.resolve("fileOne.txt.part"))));
+        }
+
+        @Test
+        @DisplayName("Test range sessions of queue workers stay within the number of threads")
+        public void testFTPDownloadInRangesSessionBudget(@TempDir Path dataDir) throws IOException {
+
+            byte[] content = "0123456789abcdefghijklmnopqrstuvwxyzABCD".getBytes(StandardCharsets.UTF_8);
+            ftpFiles[0].setSize(content.length);
+            ftpFiles[1].setSize(content.length);
+
+            List<Long> offsets = new CopyOnWriteArrayList<>();
+            List<FTPClient> sessions = new CopyOnWriteArrayList<>();
+
+            serve(mockFTPClient, content, offsets);
+            client.setSessionFactory(() -> {
+                FTPClient session = mock(FTPClient.class);
+                when(session.getReplyCode()).thenReturn(230);
+                try {
+                    when(session.login(anyString(), anyString())).thenReturn(true);
+                    serve(session, content, offsets);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                sessions.add(session);
+                return session;
+            });
+
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+
+            client.setThreads(3);
+            client.setSegmentThreshold(content.length);
+            client.downloadAllFiles(Path.of("/remote/path"), new LocalOutputProvider(dataDir), message -> {});
+
+            // two queue workers and no range sessions on top of them
+            assertAll(
+                    () -> assertTrue(sessions.size() <= 2, "sessions: " + sessions.size())
+                    , () -> assertArrayEquals(content, Files.readAllBytes(dataDir.resolve("fileOne.txt")))
+                    , () -> assertArrayEquals(content, Files.readAllBytes(dataDir.resolve("fileTwo.txt"))));
+        }
+
+        @Test
+        @DisplayName("Test sessions opened by another session come from the configured session factory")
+        public void testFTPDownloadInRangesSessionFactory(@TempDir Path dataDir) throws IOException {
+
+            byte[] content = "0123456789abcdefghijklmnopqrstuvwxyzABCD".getBytes(StandardCharsets.UTF_8);
+            ftpFiles[0].setSize(content.length);
+
+            List<Long> offsets = new CopyOnWriteArrayList<>();
+            List<FTPClient> sessions = new CopyOnWriteArrayList<>();
+
+            client.setSessionFactory(() -> {
+                FTPClient session = mock(FTPClient.class);
+                when(session.getReplyCode()).thenReturn(230);
+                try {
+                    when(session.login(anyString(), anyString())).thenReturn(true);
+                    when(session.initiateListParsing("/remote/path"))
+                            .thenAnswer(invocation -> listing(ftpFiles[0]));
+                    serve(session, content, offsets);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                sessions.add(session);
+                return session;
+            });
+
+            client.setThreads(2);
+            client.setSegmentThreshold(content.length);
+
+            // a worker session downloads on its own and needs one more session for the ranges
+            List<String> messages = new CopyOnWriteArrayList<>();
+            try (FtpClient worker = client.openSession()) {
+                worker.downloadAllFiles(Path.of("/remote/path"), new LocalOutputProvider(dataDir), messages::add);
+            }
+
+            assertAll(
+                    () -> assertEquals(2, sessions.size())
+                    , () -> assertTrue(messages.stream().noneMatch(message -> message.startsWith("Unable to open"))
+                            , messages.toString())
+                    , () -> assertArrayEquals(content, Files.readAllBytes(dataDir.resolve("fileOne.txt"))));
+        }
+
+        @Test
+        @DisplayName("Test large files are downloaded over one connection without REST STREAM")
+        public void testFTPNoRangesWithoutRestart() throws IOException {
+
+            ftpFiles[0].setSize(100);
+
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles[0]));
+
+            OutputStream out = mock(OutputStream.class);
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(out);
+
+            client.setThreads(2);
+            client.setSegmentThreshold(10);
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, message -> {});
+
+            verify(outputProvider, never()).openRanges(any(Path.class), anyLong());
+            verify(outputProvider).open(Path.of("fileOne.txt"), 0);
+        }
+
+        @Test
+        @DisplayName("Test downloadAllFiles reports typed events to a listener")
+        public void testFTPDownloadListener() throws IOException {
+
+            byte[] content = "{\"id\":\"1\",\"approvedSymbol\":\"AAA\"}".getBytes(StandardCharsets.UTF_8);
+
+            when(mockFTPClient.listFiles("/remote/path")).thenReturn(new FTPFile[]{ftpFiles[0]});
+            when(mockFTPClient.retrieveFileStream("/remote/path/fileOne.txt"))
+                    .thenReturn(new ByteArrayInputStream(content));
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+
+            client.setBufferSize(8);
+
+            TransferListener listener = mock(TransferListener.class);
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> new ByteArrayOutputStream(), listener);
+
+            InOrder inOrder = inOrder(listener);
+            inOrder.verify(listener).listed(eq(Path.of("/remote/path")), eq(1), anyLong());
+            inOrder.verify(listener).fileStarted(Path.of("fileOne.txt"), 1, 1);
+            inOrder.verify(listener).firstByte(eq(Path.of("fileOne.txt")), anyLong());
+            inOrder.verify(listener).fileCompleted(eq(Path.of("fileOne.txt")), eq((long) content.length), anyLong());
+
+            verify(listener, never()).fileFailed(any(), any());
+        }
+
+        @Test
+        @DisplayName("Test byte progress is reported in steps")
+        public void testFTPDownloadProgress() throws IOException {
+
+            byte[] content = new byte[(int) (2 * FtpClient.PROGRESS_STEP + 1)];
+            ftpFiles[0].setSize(content.length);
+
+            when(mockFTPClient.listFiles("/remote/path")).thenReturn(new FTPFile[]{ftpFiles[0]});
+            when(mockFTPClient.retrieveFileStream("/remote/path/fileOne.txt"))
+                    .thenReturn(new ByteArrayInputStream(content));
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+
+            client.setBufferSize(64 * 1024);
+
+            TransferListener listener = mock(TransferListener.class);
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> new ByteArrayOutputStream(), listener);
+
+            InOrder inOrder = inOrder(listener);
+            inOrder.verify(listener).bytesTransferred
+                    (Path.of("fileOne.txt"), FtpClient.PROGRESS_STEP, content.length);
+            inOrder.verify(listener).bytesTransferred
+                    (Path.of("fileOne.txt"), 2 * FtpClient.PROGRESS_STEP, content.length);
+            inOrder.verify(listener).fileCompleted(eq(Path.of("fileOne.txt")), eq((long) content.length), anyLong());
+
+            verify(listener, times(2)).bytesTransferred(any(), anyLong(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Test a refused transfer is reported as failed")
+        public void testFTPDownloadListenerFailed() throws IOException {
+
+            when(mockFTPClient.listFiles("/remote/path")).thenReturn(new FTPFile[]{ftpFiles[0]});
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(false);
+            when(mockFTPClient.getReplyString()).thenReturn("550 Failed to open file.");
+
+            TransferListener listener = mock(TransferListener.class);
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> new ByteArrayOutputStream(), listener);
+
+            verify(listener).fileFailed(Path.of("fileOne.txt"), "550 Failed to open file.");
+            verify(listener, never()).fileCompleted(any(), anyLong(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Test a failed transfer is retried on a new connection from where it stopped")
+        public void testFTPRetry() throws IOException {
+
+            ftpFiles[0].setSize(10);
+            when(mockFTPClient.listFiles("/remote/path")).thenReturn(new FTPFile[]{ftpFiles[0]});
+
+            // the connection drops half way through the file
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class)))
+                    .thenThrow(new IOException("Connection reset"))
+                    .thenReturn(true);
+
+            OutputStream out = mock(OutputStream.class);
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(out);
+            when(outputProvider.resumeOffset(Path.of("fileOne.txt"))).thenReturn(0L, 5L);
+
+            TransferListener listener = mock(TransferListener.class);
+
+            client.setRetryPolicy(new RetryPolicy(3, Duration.ZERO, Duration.ZERO, 0));
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, listener);
+
+            // logged in again and continued at the offset
+            InOrder inOrder = inOrder(mockFTPClient, outputProvider);
+            inOrder.verify(outputProvider).open(Path.of("fileOne.txt"), 0);
+            inOrder.verify(mockFTPClient).disconnect();
+            inOrder.verify(mockFTPClient).connect("localhost", 21);
+            inOrder.verify(mockFTPClient).login("anonymous", "");
+            inOrder.verify(outputProvider).open(Path.of("fileOne.txt"), 5);
+            inOrder.verify(mockFTPClient).setRestartOffset(5);
+
+            verify(listener).fileRetried(Path.of("fileOne.txt"), "Retrying (2 of 3) after: Connection reset");
+            verify(listener).fileCompleted(eq(Path.of("fileOne.txt")), anyLong(), anyLong());
+            verify(outputProvider).completed(Path.of("fileOne.txt"), ftpFiles[0]);
+        }
+
+        @Test
+        @DisplayName("Test a file that keeps failing is left out while the others are downloaded")
+        public void testFTPRetryExhausted() throws IOException {
+
+            when(mockFTPClient.retrieveFile(eq("/remote/path/fileOne.txt"), any(OutputStream.class)))
+                    .thenThrow(new IOException("Connection reset"));
+            when(mockFTPClient.retrieveFile(eq("/remote/path/fileTwo.txt"), any(OutputStream.class)))
+                    .thenReturn(true);
+
+            OutputStream out = mock(OutputStream.class);
+            TransferListener listener = mock(TransferListener.class);
+
+            client.setRetryPolicy(new RetryPolicy(2, Duration.ZERO, Duration.ZERO, 0));
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> out, listener);
+
+            verify(mockFTPClient, times(2)).retrieveFile("/remote/path/fileOne.txt", out);
+            verify(listener).fileFailed(Path.of("fileOne.txt"), "Connection reset");
+            verify(listener).fileCompleted(eq(Path.of("fileTwo.txt")), anyLong(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Test a file left out after its retries is shown in the progress lines")
+        public void testFTPRetryExhaustedProgress() throws IOException {
+
+            when(mockFTPClient.retrieveFile(eq("/remote/path/fileOne.txt"), any(OutputStream.class)))
+                    .thenThrow(new IOException("Connection reset"));
+            when(mockFTPClient.retrieveFile(eq("/remote/path/fileTwo.txt"), any(OutputStream.class)))
+                    .thenReturn(true);
+
+            List<String> messages = new ArrayList<>();
+
+            client.setRetryPolicy(new RetryPolicy(1, Duration.ZERO, Duration.ZERO, 0));
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> mock(OutputStream.class), messages::add);
+
+            assertEquals(List.of("Downloading (1 of 2):[fileOne.txt]"
+                    , "Failed: Connection reset:[fileOne.txt]"
+                    , "Downloading (2 of 2):[fileTwo.txt]"), messages);
+        }
+
+        @Test
+        @DisplayName("Test the first failure ends the download without a retry policy")
+        public void testFTPNoRetry() throws IOException {
+
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class)))
+                    .thenThrow(new IOException("Connection reset"));
+
+            OutputStream out = mock(OutputStream.class);
+
+            assertThrows(IOException.class, () -> client.downloadAllFiles
+                    (Path.of("/remote/path"), (file, offset) -> out, TransferListener.NONE));
+
+            verify(mockFTPClient).retrieveFile("/remote/path/fileOne.txt", out);
+            verify(mockFTPClient, never()).retrieveFile("/remote/path/fileTwo.txt", out);
+        }
+
+        @Test
+        @DisplayName("Test downloads are verified with the HASH command of the server")
+        public void testFTPVerifyHash() throws IOException {
+
+            String sha256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+            when(mockFTPClient.listFiles("/remote/path")).thenReturn(new FTPFile[]{ftpFiles[0]});
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+            when(mockFTPClient.featureValues("HASH")).thenReturn(new String[]{"SHA-1*;SHA-256;MD5"});
+            when(mockFTPClient.sendCommand("OPTS", "HASH SHA-256")).thenReturn(200);
+            when(mockFTPClient.sendCommand("HASH", "/remote/path/fileOne.txt")).thenReturn(213);
+            when(mockFTPClient.getReplyString())
+                    .thenReturn("213 SHA-256 0-2 " + sha256 + " /remote/path/fileOne.txt\r\n");
+
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(mock(OutputStream.class));
+            when(outputProvider.checksum(Path.of("fileOne.txt"), ChecksumAlgorithm.SHA_256)).thenReturn(sha256);
+
+            TransferListener listener = mock(TransferListener.class);
+
+            client.setChecksumAlgorithm(ChecksumAlgorithm.SHA_256);
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, listener);
+
+            verify(listener).fileVerified(Path.of("fileOne.txt"), ChecksumAlgorithm.SHA_256);
+            verify(outputProvider).completed(Path.of("fileOne.txt"), ftpFiles[0]);
+        }
+
+        @Test
+        @DisplayName("Test a file that does not match its checksum is downloaded again from the start")
+        public void testFTPVerifyMismatch() throws IOException {
+
+            String md5 = "900150983cd24fb0d6963f7d28e17f72";
+
+            when(mockFTPClient.listFiles("/remote/path")).thenReturn(new FTPFile[]{ftpFiles[0]});
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+            when(mockFTPClient.hasFeature("XMD5")).thenReturn(true);
+            when(mockFTPClient.sendCommand("XMD5", "/remote/path/fileOne.txt")).thenReturn(250);
+            when(mockFTPClient.getReplyString()).thenReturn("250 " + md5.toUpperCase() + "\r\n");
+
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(mock(OutputStream.class));
+            // what has been written would be resumed if it could be trusted
+            when(outputProvider.resumeOffset(Path.of("fileOne.txt"))).thenReturn(0L, 3L);
+            when(outputProvider.checksum(Path.of("fileOne.txt"), ChecksumAlgorithm.MD5))
+                    .thenReturn("00000000000000000000000000000000", md5);
+
+            TransferListener listener = mock(TransferListener.class);
+
+            client.setChecksumAlgorithm(ChecksumAlgorithm.MD5);
+            client.setRetryPolicy(new RetryPolicy(3, Duration.ZERO, Duration.ZERO, 0));
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, listener);
+
+            verify(outputProvider, times(2)).open(Path.of("fileOne.txt"), 0);
+            verify(outputProvider, never()).open(Path.of("fileOne.txt"), 3);
+            verify(outputProvider, times(1)).completed(Path.of("fileOne.txt"), ftpFiles[0]);
+            verify(listener).fileRetried(Path.of("fileOne.txt"), "Retrying (2 of 3) after: MD5 checksum mismatch: "
+                    + "expected " + md5 + " got 00000000000000000000000000000000");
+            verify(listener).fileVerified(Path.of("fileOne.txt"), ChecksumAlgorithm.MD5);
+            verify(outputProvider).discard(Path.of("fileOne.txt"));
+        }
+
+        @Test
+        @DisplayName("Test a file that does not match its checksum is discarded without a retry policy")
+        public void testFTPVerifyMismatchNoRetry() throws IOException {
+
+            when(mockFTPClient.listFiles("/remote/path")).thenReturn(new FTPFile[]{ftpFiles[0]});
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+            when(mockFTPClient.hasFeature("XMD5")).thenReturn(true);
+            when(mockFTPClient.sendCommand("XMD5", "/remote/path/fileOne.txt")).thenReturn(250);
+            when(mockFTPClient.getReplyString()).thenReturn("250 900150983CD24FB0D6963F7D28E17F72\r\n");
+
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(mock(OutputStream.class));
+            when(outputProvider.checksum(Path.of("fileOne.txt"), ChecksumAlgorithm.MD5))
+                    .thenReturn("00000000000000000000000000000000");
+
+            client.setChecksumAlgorithm(ChecksumAlgorithm.MD5);
+
+            assertThrows(ChecksumMismatchException.class, () -> client.downloadAllFiles(Path.of("/remote/path")
+                    , outputProvider, mock(TransferListener.class)));
+
+            // a later run starts the file from scratch
+            verify(outputProvider).discard(Path.of("fileOne.txt"));
+            verify(outputProvider, never()).completed(any(), any());
+        }
+
+        @Test
+        @DisplayName("Test downloads are verified with a checksum file of the directory")
+        public void testFTPVerifyChecksumFile() throws IOException {
+
+            String sums = "0a1b2c3d  fileOne.txt\n"
+                    + "CRC32 (fileTwo.txt) = 4e5f6a7b\n";
+
+            when(mockFTPClient.retrieveFile(eq("/remote/path/CRC32SUMS"), any(OutputStream.class)))
+                    .thenAnswer(invocation -> {
+                        invocation.<OutputStream>getArgument(1).write(sums.getBytes(StandardCharsets.UTF_8));
+                        return true;
+                    });
+            when(mockFTPClient.retrieveFile(eq("/remote/path/fileOne.txt"), any(OutputStream.class))).thenReturn(true);
+            when(mockFTPClient.retrieveFile(eq("/remote/path/fileTwo.txt"), any(OutputStream.class))).thenReturn(true);
+
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(mock(OutputStream.class));
+            when(outputProvider.checksum(Path.of("fileOne.txt"), ChecksumAlgorithm.CRC32)).thenReturn("0a1b2c3d");
+            when(outputProvider.checksum(Path.of("fileTwo.txt"), ChecksumAlgorithm.CRC32)).thenReturn("4e5f6a7b");
+
+            TransferListener listener = mock(TransferListener.class);
+
+            client.setChecksumAlgorithm(ChecksumAlgorithm.CRC32);
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, listener);
+
+            // the checksum file is read once for the whole directory
+            verify(mockFTPClient, times(1)).retrieveFile(eq("/remote/path/CRC32SUMS"), any(OutputStream.class));
+            verify(listener).fileVerified(Path.of("fileOne.txt"), ChecksumAlgorithm.CRC32);
+            verify(listener).fileVerified(Path.of("fileTwo.txt"), ChecksumAlgorithm.CRC32);
+        }
+
+        @Test
+        @DisplayName("Test files without a checksum on the server are not verified")
+        public void testFTPVerifyUnavailable() throws IOException {
+
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+            when(mockFTPClient.retrieveFile(eq("/remote/path/SHA256SUMS"), any(OutputStream.class))).thenReturn(false);
+
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenReturn(mock(OutputStream.class));
+
+            TransferListener listener = mock(TransferListener.class);
+
+            client.setChecksumAlgorithm(ChecksumAlgorithm.SHA_256);
+            client.downloadAllFiles(Path.of("/remote/path"), outputProvider, listener);
+
+            verify(outputProvider, never()).checksum(any(), any());
+            verify(listener, never()).fileVerified(any(), any());
+            verify(listener, times(2)).fileCompleted(any(), anyLong(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Test a task per file with the sessions limited by the host semaphore")
+        public void testFTPVirtualThreads() throws IOException {
+
+            FTPFile[] files = new FTPFile[20];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = new FTPFile();
+                files[i].setName("file" + i + ".json");
+                files[i].setType(FTPFile.FILE_TYPE);
+            }
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(files));
+
+            // transfer sessions that keep track of how many of them are busy
+            AtomicInteger busy = new AtomicInteger();
+            AtomicInteger maxBusy = new AtomicInteger();
+            List<FTPClient> sessions = new CopyOnWriteArrayList<>();
+
+            client.setSessionFactory(() -> {
+                FTPClient session = mock(FTPClient.class);
+                when(session.getReplyCode()).thenReturn(230);
+                try {
+                    when(session.login(anyString(), anyString())).thenReturn(true);
+                    when(session.sendNoOp()).thenReturn(true);
+                    when(session.retrieveFile(anyString(), any(OutputStream.class))).thenAnswer(invocation -> {
+                        maxBusy.accumulateAndGet(busy.incrementAndGet(), Math::max);
+                        Thread.sleep(10);
+                        busy.decrementAndGet();
+                        return true;
+                    });
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                sessions.add(session);
+                return session;
+            });
+
+            // platform threads stand in for virtual ones on older JDKs
+            client.setVirtualThreadExecutors(Executors::newCachedThreadPool);
+            client.setVirtualThreads(true);
+            client.setThreads(3);
+
+            TransferListener listener = mock(TransferListener.class);
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> mock(OutputStream.class), listener);
+
+            verify(listener, times(20)).fileCompleted(any(), anyLong(), anyLong());
+            verify(listener).fileStarted(any(), eq(20), eq(20));
+
+            // the session of the client only lists
+            verify(mockFTPClient, never()).retrieveFile(anyString(), any(OutputStream.class));
+
+            assertAll(
+                    () -> assertTrue(maxBusy.get() <= 2, "busy sessions: " + maxBusy.get())
+                    , () -> assertTrue(sessions.size() <= 2, "sessions: " + sessions.size()));
+
+            // the sessions of the run are closed with it
+            for (FTPClient session : sessions) {
+                verify(session).disconnect();
+            }
+        }
+
+        @Test
+        @DisplayName("Test that tasks use the session of the client when the pool has none left")
+        public void testFTPVirtualThreadsPoolExhausted() throws IOException {
+
+            FTPFile[] files = new FTPFile[5];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = new FTPFile();
+                files[i].setName("file" + i + ".json");
+                files[i].setType(FTPFile.FILE_TYPE);
+            }
+
+            // one session per host, held by the client itself
+            FtpSessionPool pool = new FtpSessionPool(() -> {
+                FTPClient session = mock(FTPClient.class);
+                when(session.getReplyCode()).thenReturn(230);
+                try {
+                    when(session.login(anyString(), anyString())).thenReturn(true);
+                    when(session.initiateListParsing("/remote/path"))
+                            .thenAnswer(invocation -> listing(files));
+                    when(session.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                return session;
+            }, 1, Duration.ofMinutes(1));
+
+            try (FtpClient pooled = pool.borrow(URI.create("localhost"))) {
+                pooled.setVirtualThreadExecutors(Executors::newCachedThreadPool);
+                pooled.setVirtualThreads(true);
+                pooled.setThreads(3);
+
+                TransferListener listener = mock(TransferListener.class);
+                assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pooled.downloadAllFiles
+                        (Path.of("/remote/path"), (file, offset) -> mock(OutputStream.class), listener));
+
+                verify(listener, times(5)).fileCompleted(any(), anyLong(), anyLong());
+            } finally {
+                pool.close();
+            }
+        }
+
+        @Test
+        @DisplayName("Test falling back to platform threads without virtual threads")
+        public void testFTPVirtualThreadsUnavailable() throws IOException {
+
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+
+            client.setVirtualThreadExecutors(() -> null);
+            client.setVirtualThreads(true);
+
+            TransferListener listener = mock(TransferListener.class);
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> mock(OutputStream.class), listener);
+
+            verify(listener).message(startsWith("Virtual threads are not available"));
+            verify(listener, times(2)).fileCompleted(any(), anyLong(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Test that virtual threads are found on JDKs that have them")
+        public void testVirtualThreadExecutor() {
+
+            ExecutorService executor = VirtualThreadDownload.newVirtualThreadExecutor();
+
+            if (Runtime.version().feature() >= 21) {
+                assertNotNull(executor);
+                executor.shutdown();
+            } else {
+                assertNull(executor);
+            }
+        }
+
+        @Test
+        @DisplayName("Test that records of the files are processed while they are downloaded")
+        public void testFTPDownloadAllRecords() throws IOException {
+
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenAnswer(invocation -> {
+                String name = Path.of(invocation.<String>getArgument(0)).getFileName().toString();
+                invocation.<OutputStream>getArgument(1).write((name + " 1\n" + name + " 2\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                return true;
+            });
+
+            List<String> records = new ArrayList<>();
+            client.downloadAllRecords(Path.of("/remote/path"), (file, record) -> records.add(record)
+                    , TransferListener.NONE);
+
+            assertEquals(List.of("fileOne.txt 1", "fileOne.txt 2", "fileTwo.txt 1", "fileTwo.txt 2"), records);
+        }
+
+        @Test
+        @DisplayName("Test that filtered entries are dropped while the listing is parsed")
+        public void testFTPFileFilter() throws IOException {
+
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+            when(mockFTPClient.retrieveFile(anyString(), any(OutputStream.class))).thenReturn(true);
+
+            client.setFileFilter(new RemoteFileFilter().exclude("fileOne.*"));
+
+            // streamed pages
+            assertEquals(List.of("fileTwo.txt"), client.streamFiles(Path.of("/remote/path"))
+                    .map(FTPFile::getName).collect(Collectors.toList()));
+
+            // the sessions of a parallel download only see the accepted files
+            client.setThreads(2);
+            TransferListener listener = mock(TransferListener.class);
+            client.downloadAllFiles(Path.of("/remote/path"), (file, offset) -> mock(OutputStream.class), listener);
+
+            verify(mockFTPClient, never()).retrieveFile(eq("/remote/path/fileOne.txt"), any(OutputStream.class));
+            verify(listener).fileStarted(Path.of("fileTwo.txt"), 1, 1);
+        }
+
+        @Test
+        @DisplayName("Test that the filter is handed to the LIST parser of commons-net")
+        public void testFTPFileFilterList() throws IOException {
+
+            when(mockFTPClient.listFiles(eq("/remote/path"), any(FTPFileFilter.class))).thenAnswer(invocation ->
+                    Arrays.stream(ftpFiles)
+                            .filter(invocation.<FTPFileFilter>getArgument(1)::accept)
+                            .toArray(FTPFile[]::new));
+
+            client.setFileFilter(new RemoteFileFilter().include("regex:fileT.*"));
+
+            assertEquals(List.of(ftpFiles[1]), client.listFiles(Path.of("/remote/path")));
+        }
+
+        @Test
+        @DisplayName("Test downloading through a transfer buffer")
+        public void testFTPDownloadBuffered() throws IOException {
+
+            byte[] content = "{\"id\":\"1\",\"approvedSymbol\":\"AAA\"}".getBytes(StandardCharsets.UTF_8);
+
+            when(mockFTPClient.retrieveFileStream("any/path"))
+                    .thenReturn(new ByteArrayInputStream(content));
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+
+            client.setBufferSize(8);
+
+            var out = new ByteArrayOutputStream();
+            client.downloadFile(Path.of("any/path"), out);
+
+            assertArrayEquals(content, out.toByteArray());
+
+            // commons-net copy is not used
+            verify(mockFTPClient, never()).retrieveFile(anyString(), any());
+            verify(mockFTPClient).setReceieveDataSocketBufferSize(8);
+        }
+
+        @Test
+        @DisplayName("Test downloading into a file channel through a direct buffer")
+        public void testFTPDownloadToChannel(@TempDir Path dataDir) throws IOException {
+
+            byte[] content = "{\"id\":\"1\",\"approvedSymbol\":\"AAA\"}".getBytes(StandardCharsets.UTF_8);
+
+            when(mockFTPClient.retrieveFileStream("any/path"))
+                    .thenReturn(new ByteArrayInputStream(content));
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+
+            // the buffer size is not a multiple of the content length
+            client.setBufferSize(7);
+
+            Path file = dataDir.resolve("test.txt");
+            try (var out = new ChannelOutputStream(FileChannel.open
+                    (file, StandardOpenOption.CREATE, StandardOpenOption.WRITE))) {
+                client.downloadFile(Path.of("any/path"), out);
+            }
+
+            assertArrayEquals(content, Files.readAllBytes(file));
+        }
+
+        @Test
+        @DisplayName("Test that an upload is stored under a temporary name and renamed into place")
+        public void testFTPUploadFile(@TempDir Path dataDir) throws IOException {
+
+            byte[] content = "{\"id\":\"1\",\"approvedSymbol\":\"AAA\"}".getBytes(StandardCharsets.UTF_8);
+            Path file = dataDir.resolve("test.txt");
+            Files.write(file, content);
+
+            var stored = new ByteArrayOutputStream();
+            when(mockFTPClient.storeFileStream("/remote/test.txt.part")).thenReturn(stored);
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+            when(mockFTPClient.rename("/remote/test.txt.part", "/remote/test.txt")).thenReturn(true);
+
+            // read in chunks smaller than the file
+            client.setBufferSize(7);
+            client.uploadFile(file, Path.of("/remote/test.txt"));
+
+            InOrder inOrder = inOrder(mockFTPClient);
+            inOrder.verify(mockFTPClient).storeFileStream("/remote/test.txt.part");
+            inOrder.verify(mockFTPClient).completePendingCommand();
+            inOrder.verify(mockFTPClient).rename("/remote/test.txt.part", "/remote/test.txt");
+
+            assertArrayEquals(content, stored.toByteArray());
+            verify(mockFTPClient, never()).deleteFile(anyString());
+        }
+
+        @Test
+        @DisplayName("Test that the previous file is replaced when the server does not rename over it")
+        public void testFTPUploadReplace(@TempDir Path dataDir) throws IOException {
+
+            Files.writeString(dataDir.resolve("test.txt"), "content");
+
+            when(mockFTPClient.storeFileStream(anyString())).thenReturn(new ByteArrayOutputStream());
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+            when(mockFTPClient.rename("/remote/test.txt.part", "/remote/test.txt")).thenReturn(false, true);
+            when(mockFTPClient.deleteFile("/remote/test.txt")).thenReturn(true);
+
+            client.uploadFile(dataDir.resolve("test.txt"), Path.of("/remote/test.txt"));
+
+            InOrder inOrder = inOrder(mockFTPClient);
+            inOrder.verify(mockFTPClient).rename("/remote/test.txt.part", "/remote/test.txt");
+            inOrder.verify(mockFTPClient).deleteFile("/remote/test.txt");
+            inOrder.verify(mockFTPClient).rename("/remote/test.txt.part", "/remote/test.txt");
+        }
+
+        @Test
+        @DisplayName("Test that a failed upload does not leave its temporary file on the server")
+        public void testFTPUploadFailed(@TempDir Path dataDir) throws IOException {
+
+            Files.writeString(dataDir.resolve("test.txt"), "content");
+
+            when(mockFTPClient.storeFileStream(anyString())).thenReturn(new ByteArrayOutputStream());
+            when(mockFTPClient.completePendingCommand()).thenReturn(false);
+
+            assertThrows(IOException.class, () -> client.uploadFile(dataDir.resolve("test.txt"), Path.of("/remote/test.txt")));
+
+            verify(mockFTPClient).deleteFile("/remote/test.txt.part");
+            verify(mockFTPClient, never()).rename(anyString(), anyString());
+        }
+
+        @Test
+        @DisplayName("Test uploading a directory tree into the remote directory")
+        public void testFTPUploadAllFiles(@TempDir Path dataDir) throws IOException {
+
+            Files.createDirectories(dataDir.resolve("sub/deeper"));
+            Files.writeString(dataDir.resolve("one.txt"), "one");
+            Files.writeString(dataDir.resolve("sub/deeper/two.txt"), "two");
+            // bookkeeping of this utility stays local
+            Files.writeString(dataDir.resolve(Manifest.FILE_NAME), "manifest");
+
+            when(mockFTPClient.storeFileStream(anyString())).thenAnswer(invocation -> new ByteArrayOutputStream());
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+            when(mockFTPClient.rename(anyString(), anyString())).thenReturn(true);
+
+            TransferListener listener = mock(TransferListener.class);
+
+            client.setRecursive(true);
+            client.uploadAllFiles(dataDir, Path.of("/remote"), listener);
+
+            // parents are created before their children
+            InOrder inOrder = inOrder(mockFTPClient);
+            inOrder.verify(mockFTPClient).makeDirectory("/remote/sub");
+            inOrder.verify(mockFTPClient).makeDirectory("/remote/sub/deeper");
+
+            verify(mockFTPClient).rename("/remote/one.txt.part", "/remote/one.txt");
+            verify(mockFTPClient).rename("/remote/sub/deeper/two.txt.part", "/remote/sub/deeper/two.txt");
+            verify(mockFTPClient, times(2)).storeFileStream(anyString());
+
+            verify(listener).fileCompleted(eq(Path.of("one.txt")), eq(3L), anyLong());
+            verify(listener).fileCompleted(eq(Path.of("sub/deeper/two.txt")), eq(3L), anyLong());
+        }
+
+        @Test
+        @DisplayName("Test watching downloads only new or changed files and adapts the interval")
+        public void testWatchPolls() throws IOException {
+
+            ftpFiles[0].setSize(3);
+            ftpFiles[1].setSize(3);
+
+            when(mockFTPClient.sendNoOp()).thenReturn(true);
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles));
+            when(mockFTPClient.retrieveFileStream(anyString()))
+                    .thenAnswer(invocation -> new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+
+            // streamed transfers
+            client.setBufferSize(8);
+
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenAnswer(invocation -> new ByteArrayOutputStream());
+
+            // listened to through andThen
+            TransferListener listener = mock(TransferListener.class, CALLS_REAL_METHODS);
+
+            var watcher = new RemoteWatcher(client, Path.of("/remote/path"), outputProvider, listener
+                    , Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+            // everything is new on the first poll
+            assertEquals(2, watcher.poll());
+            assertEquals(Duration.ofSeconds(10), watcher.getInterval());
+            verify(listener).polled(Path.of("/remote/path"), 2, 0, Duration.ofSeconds(10).toNanos());
+
+            // nothing changed, the polls back off up to the longest interval
+            assertEquals(0, watcher.poll());
+            assertEquals(Duration.ofSeconds(20), watcher.getInterval());
+            assertEquals(0, watcher.poll());
+            assertEquals(Duration.ofSeconds(30), watcher.getInterval());
+
+            // a grown file is downloaded again and the interval starts over
+            FTPFile grown = new FTPFile();
+            grown.setName("fileTwo.txt");
+            grown.setType(FTPFile.FILE_TYPE);
+            grown.setSize(4);
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles[0], grown));
+            assertEquals(1, watcher.poll());
+            assertEquals(Duration.ofSeconds(10), watcher.getInterval());
+
+            verify(outputProvider).open(Path.of("fileOne.txt"), 0, 3);
+            verify(outputProvider).open(Path.of("fileTwo.txt"), 0, 3);
+            verify(outputProvider).open(Path.of("fileTwo.txt"), 0, 4);
+            verify(mockFTPClient, times(3)).retrieveFileStream(anyString());
+
+            // a removed file is reported, not downloaded
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles[0]));
+            assertEquals(0, watcher.poll());
+            assertEquals(1, watcher.getSnapshotSize());
+            verify(listener).polled(Path.of("/remote/path"), 0, 1, Duration.ofSeconds(20).toNanos());
+        }
+
+        @Test
+        @DisplayName("Test watching tries failed files again on the next poll")
+        public void testWatchRetriesFailed() throws IOException {
+
+            when(mockFTPClient.sendNoOp()).thenReturn(true);
+            when(mockFTPClient.initiateListParsing("/remote/path"))
+                    .thenAnswer(invocation -> listing(ftpFiles[0]));
+            // refused once, then served
+            when(mockFTPClient.retrieveFileStream("/remote/path/fileOne.txt"))
+                    .thenReturn(null)
+                    .thenAnswer(invocation -> new ByteArrayInputStream(new byte[0]));
+            when(mockFTPClient.completePendingCommand()).thenReturn(true);
+
+            // streamed transfers
+            client.setBufferSize(8);
+
+            OutputProvider outputProvider = mock(OutputProvider.class, CALLS_REAL_METHODS);
+            when(outputProvider.open(any(Path.class), anyLong())).thenAnswer(invocation -> new ByteArrayOutputStream());
+
+            var watcher = new RemoteWatcher(client, Path.of("/remote/path"), outputProvider
+                    , mock(TransferListener.class, CALLS_REAL_METHODS), Duration.ofSeconds(1), Duration.ofSeconds(1));
+
+            assertEquals(1, watcher.poll());
+            assertEquals(0, watcher.getSnapshotSize());
+
+            assertEquals(1, watcher.poll());
+            assertEquals(1, watcher.getSnapshotSize());
+            verify(outputProvider).completed(eq(Path.of("fileOne.txt")), any(FTPFile.class));
+
+            // the session is opened again when the server dropped it between polls
+            when(mockFTPClient.sendNoOp()).thenReturn(false);
+            assertEquals(0, watcher.poll());
+            verify(mockFTPClient, atLeastOnce()).connect(anyString(), anyInt());
+        }
+
         @Test
         @DisplayName("Test downloading a file call")
         public void testFTPDownloadFile(@TempDir Path dataDir) throws IOException {
@@ -153,6 +1367,35 @@ public class FtpClientUnitTest {
         }
     }
 
+    // makes the mock session serve the content from the restart offset it is given
+    private static void serve(FTPClient session, byte[] content, List<Long> offsets) throws IOException {
+        long[] restart = {0};
+
+        when(session.hasFeature("REST", "STREAM")).thenReturn(true);
+        doAnswer(invocation -> restart[0] = invocation.getArgument(0))
+                .when(session).setRestartOffset(anyLong());
+        when(session.retrieveFileStream(anyString())).thenAnswer(invocation -> {
+            offsets.add(restart[0]);
+            return new ByteArrayInputStream(content, (int) restart[0], content.length - (int) restart[0]);
+        });
+    }
+
+    // listing parse engine that hands out the given entries page by page
+    private static FTPListParseEngine listing(FTPFile... entries) {
+        FTPListParseEngine engine = mock(FTPListParseEngine.class);
+        int[] position = {0};
+
+        when(engine.hasNext()).thenAnswer(invocation -> position[0] < entries.length);
+        when(engine.getNext(anyInt())).thenAnswer(invocation -> {
+            int from = position[0];
+            int to = Math.min(entries.length, from + (int) invocation.getArgument(0));
+            position[0] = to;
+            return Arrays.copyOfRange(entries, from, to);
+        });
+
+        return engine;
+    }
+
     @Nested
     @DisplayName("Test unsuccessful open connection cases")
     public class unsuccessfulCases {
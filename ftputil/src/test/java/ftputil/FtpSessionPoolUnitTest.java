@@ -0,0 +1,201 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class FtpSessionPoolUnitTest {
+
+    private final URI server = URI.create("localhost");
+
+    // every FTPClient handed out by the factory
+    private final List<FTPClient> created = new ArrayList<>();
+
+    private FTPClient newMockFTPClient() {
+        FTPClient mockFTPClient = mock(FTPClient.class);
+
+        try {
+            // set up a happy path for connecting / login sequence
+            when(mockFTPClient.getReplyCode()).thenReturn(230);
+            when(mockFTPClient.login(anyString(), anyString())).thenReturn(true);
+            when(mockFTPClient.sendNoOp()).thenReturn(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        created.add(mockFTPClient);
+        return mockFTPClient;
+    }
+
+    private FtpSessionPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new FtpSessionPool(this::newMockFTPClient, 2, Duration.ofMinutes(1));
+    }
+
+    @Test
+    @DisplayName("Test that a returned session is reused after a NOOP check")
+    public void testReuse() throws IOException {
+
+        FtpClient first = pool.borrow(server);
+        first.close();
+
+        FtpClient second = pool.borrow(server);
+
+        assertAll(
+                () -> assertSame(first, second)
+                , () -> assertEquals(1, created.size()));
+
+        verify(created.get(0)).sendNoOp();
+        verify(created.get(0), never()).logout();
+    }
+
+    @Test
+    @DisplayName("Test that a returned session does not keep the settings of its borrower")
+    public void testReuseResetsSettings() throws IOException {
+
+        FtpClient first = pool.borrow(server);
+        first.setThreads(4);
+        first.setRecursive(true);
+        first.setListPageSize(10);
+        first.setMachineListing(false);
+        first.setFileFilter(new RemoteFileFilter().include("*.json"));
+        first.setListingCache(new ListingCache(8, Duration.ofMinutes(1)));
+        first.setRetryPolicy(RetryPolicy.of(3));
+        first.setChecksumAlgorithm(ChecksumAlgorithm.SHA_256);
+        first.close();
+
+        FtpClient second = pool.borrow(server);
+
+        assertAll(
+                () -> assertSame(first, second)
+                , () -> assertEquals(1, second.getThreads())
+                , () -> assertFalse(second.isRecursive())
+                , () -> assertEquals(1000, second.getListPageSize())
+                , () -> assertTrue(second.isMachineListing())
+                , () -> assertNull(second.getFileFilter())
+                , () -> assertNull(second.getListingCache())
+                , () -> assertNull(second.getRetryPolicy())
+                , () -> assertNull(second.getChecksumAlgorithm()));
+    }
+
+    @Test
+    @DisplayName("Test that a dead idle session is replaced")
+    public void testDeadSession() throws IOException {
+
+        pool.borrow(server).close();
+
+        // the control connection has been dropped while idle
+        when(created.get(0).sendNoOp()).thenThrow(new IOException("Connection closed"));
+
+        FtpClient client = pool.borrow(server);
+
+        assertEquals(2, created.size());
+        verify(created.get(0)).disconnect();
+        verify(created.get(1)).connect("localhost", 21);
+
+        client.close();
+    }
+
+    @Test
+    @DisplayName("Test the cap on sessions per host")
+    public void testSessionLimit() throws IOException {
+
+        FtpClient first = pool.borrow(server);
+        FtpClient second = pool.borrow(server);
+
+        assertTrue(pool.tryBorrow(server, 21, "anonymous", "").isEmpty());
+
+        // other users have their own limit
+        assertTrue(pool.tryBorrow(server, 21, "userOne", "secret").isPresent());
+
+        second.close();
+
+        assertTrue(pool.tryBorrow(server, 21, "anonymous", "").isPresent());
+
+        first.close();
+    }
+
+    @Test
+    @DisplayName("Test the cap on sessions over all hosts")
+    public void testTotalSessionLimit() throws IOException {
+
+        pool = new FtpSessionPool(this::newMockFTPClient, 2, 2, Duration.ofMinutes(1));
+
+        FtpClient first = pool.borrow(server);
+        FtpClient second = pool.borrow(URI.create("otherhost"));
+
+        // neither host is at its own limit
+        assertTrue(pool.tryBorrow(server, 21, "anonymous", "").isEmpty());
+
+        second.close();
+
+        FtpClient third = pool.tryBorrow(server, 21, "anonymous", "").orElseThrow();
+        assertTrue(pool.tryBorrow(URI.create("otherhost"), 21, "anonymous", "").isEmpty());
+
+        third.close();
+        first.close();
+    }
+
+    @Test
+    @DisplayName("Test that additional sessions are taken from the pool")
+    public void testOpenSession() throws IOException {
+
+        FtpClient first = pool.borrow(server);
+        FtpClient second = first.openSession();
+
+        assertAll(
+                () -> assertNotSame(first, second)
+                , () -> assertThrows(IOException.class, first::openSession));
+
+        second.close();
+        first.close();
+
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    @DisplayName("Test idle eviction")
+    public void testIdleEviction() throws IOException {
+
+        pool = new FtpSessionPool(this::newMockFTPClient, 2, Duration.ZERO);
+
+        pool.borrow(server).close();
+
+        assertEquals(0, pool.getIdleCount());
+        verify(created.get(0)).logout();
+        verify(created.get(0)).disconnect();
+    }
+
+    @Test
+    @DisplayName("Test close of the pool")
+    public void testClose() throws IOException {
+
+        FtpClient idle = pool.borrow(server);
+        FtpClient borrowed = pool.borrow(server);
+        idle.close();
+
+        pool.close();
+
+        // idle sessions are closed right away
+        verify(created.get(0)).disconnect();
+
+        // borrowed ones when they are returned
+        borrowed.close();
+        verify(created.get(1)).disconnect();
+
+        assertThrows(IOException.class, () -> pool.borrow(server));
+    }
+}
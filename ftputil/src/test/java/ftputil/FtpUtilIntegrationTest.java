@@ -3,6 +3,7 @@ package ftputil;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockftpserver.core.command.ConnectCommandHandler;
+import org.mockftpserver.core.command.StaticReplyCommandHandler;
 import org.mockftpserver.fake.FakeFtpServer;
 import org.mockftpserver.fake.UserAccount;
 import org.mockftpserver.fake.filesystem.DirectoryEntry;
@@ -21,7 +22,9 @@ import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -313,6 +316,254 @@ public class FtpUtilIntegrationTest {
                 );
             }
 
+            @Test
+            @DisplayName("Then a batch of jobs runs in one process with shared sessions")
+            public void testBatch() throws Exception {
+
+                FileSystem fileSystem = fakeFtpServer.getFileSystem();
+                fileSystem.add(new DirectoryEntry("/pub/other"));
+                fileSystem.add(new FileEntry("/pub/other/" + fileOnePath, fileOneContent));
+
+                Properties properties = new Properties();
+                properties.setProperty("server", server.toString());
+                properties.setProperty("remotedir", remoteBase.toString());
+                properties.setProperty("localdir", localBase.toString());
+                properties.setProperty("jobs", "data other missing");
+                properties.setProperty("data.dir", dataDir.toString());
+                properties.setProperty("other.dir", "other");
+                properties.setProperty("missing.dir", "missing");
+                properties.setProperty("missing.retries", "0");
+                properties.setProperty("batch.sessions", "2");
+
+                // redirect standard output stream
+                final PrintStream standardOut = System.out;
+                final ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+                System.setOut(new PrintStream(outputStreamCaptor));
+
+                List<BatchRun.Result> results;
+                try {
+                    results = new BatchRun(BatchConfig.parse(properties)).run();
+                } finally {
+                    System.setOut(standardOut);
+                }
+
+                assertAll(
+                        () -> assertEquals(List.of("data", "other", "missing")
+                                , results.stream().map(BatchRun.Result::getName).collect(Collectors.toList()))
+                        , () -> assertEquals(2, results.get(0).getFiles())
+                        , () -> assertEquals(1, results.get(1).getFiles())
+                        , () -> assertEquals(fileOneContent, Files.readString
+                                (localBase.resolve("other").resolve(fileOnePath)))
+                        , () -> assertTrue(outputStreamCaptor.toString().contains("[other] "))
+                        , () -> assertTrue(outputStreamCaptor.toString().contains("total: 3 files")));
+            }
+
+            @Test
+            @DisplayName("Then only local files changed since the last push are uploaded")
+            public void testPush() throws IOException {
+
+                Path local = ftpUtil.getFullLocalPath();
+                Files.createDirectories(local);
+                Files.writeString(local.resolve("out_one.json"), fileOneContent);
+                Files.writeString(local.resolve("out_two.json"), fileTwoContent);
+
+                FileSystem fileSystem = fakeFtpServer.getFileSystem();
+                String remoteOne = ftpUtil.getFullRemotePath().resolve("out_one.json").toString();
+                String remoteTwo = ftpUtil.getFullRemotePath().resolve("out_two.json").toString();
+
+                ftpUtil.setThreads(2);
+
+                final PrintStream standardOut = System.out;
+                final ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+                System.setOut(new PrintStream(outputStreamCaptor));
+
+                try {
+                    ftpUtil.ConnectAndUpload();
+                } finally {
+                    System.setOut(standardOut);
+                }
+
+                assertAll(
+                        () -> assertTrue(outputStreamCaptor.toString().contains("Uploading (1 of 2)"))
+                        , () -> assertFalse(outputStreamCaptor.toString().contains("Downloading ("))
+                        , () -> assertTrue(fileSystem.isFile(remoteOne))
+                        , () -> assertTrue(fileSystem.isFile(remoteTwo))
+                        , () -> assertFalse(fileSystem.exists(remoteOne + FtpClient.UPLOAD_SUFFIX))
+                        , () -> assertTrue(Files.exists(local.resolve(Manifest.PUSH_FILE_NAME))));
+
+                // the unchanged file is not uploaded again
+                fileSystem.delete(remoteOne);
+                Files.writeString(local.resolve("out_two.json"), fileTwoContent + fileTwoContent);
+
+                ftpUtil.ConnectAndUpload();
+
+                assertAll(
+                        () -> assertFalse(fileSystem.exists(remoteOne))
+                        , () -> assertEquals(2L * fileTwoContent.length()
+                                , ((FileEntry) fileSystem.getEntry(remoteTwo)).getSize()));
+            }
+
+            @Test
+            @DisplayName("Then consecutive runs can share a pooled session")
+            public void testPooledDownload() throws IOException {
+
+                // prepare necessary directory structure
+                Files.createDirectories(ftpUtil.getFullLocalPath());
+
+                try (var pool = new FtpSessionPool()) {
+                    ftpUtil.setSessionPool(pool);
+
+                    ftpUtil.ConnectAndDownload();
+                    ftpUtil.ConnectAndDownload();
+
+                    // the session went back to the pool instead of logging out
+                    assertEquals(1, pool.getIdleCount());
+                }
+
+                try (var reader = Files.newBufferedReader
+                        (ftpUtil.getFullLocalPath().resolve(fileOnePath))) {
+                    assertEquals(fileOneContent, reader.readLine());
+                }
+            }
+
+            @Test
+            @DisplayName("Then partial files are downloaded again when the server refuses to resume")
+            public void testResumeRefused() throws IOException {
+
+                // the server does not implement REST
+                fakeFtpServer.setCommandHandler("REST", new StaticReplyCommandHandler(502, "Not implemented"));
+
+                // leave a partial local file from a previous run
+                Files.createDirectories(ftpUtil.getFullLocalPath());
+                Files.writeString(ftpUtil.getFullLocalPath().resolve(fileOnePath)
+                        , fileOneContent.substring(0, 10));
+
+                ftpUtil.setResume(true);
+                ftpUtil.ConnectAndDownload();
+
+                assertEquals(fileOneContent
+                        , Files.readString(ftpUtil.getFullLocalPath().resolve(fileOnePath)));
+            }
+
+            @Test
+            @DisplayName("Then files the server refuses to send are summarized at the end")
+            public void testFailureSummary() throws IOException {
+
+                fakeFtpServer.setCommandHandler("RETR", new StaticReplyCommandHandler(550, "Failed to open file."));
+
+                Files.createDirectories(ftpUtil.getFullLocalPath());
+
+                // redirect standard output stream
+                final PrintStream standardOut = System.out;
+                final ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+                System.setOut(new PrintStream(outputStreamCaptor));
+
+                ftpUtil.ConnectAndDownload();
+
+                // restore standard output
+                System.setOut(standardOut);
+
+                assertAll(
+                        () -> assertTrue(outputStreamCaptor.toString().contains("failed: 2 files"))
+                        , () -> assertTrue(outputStreamCaptor.toString().contains
+                                ("[" + fileOnePath + "] 550 Failed to open file."))
+                        , () -> assertFalse(outputStreamCaptor.toString()
+                                .contains("Communication with FTP server failed...")));
+            }
+
+            @Test
+            @DisplayName("Then files that are up to date are not downloaded again in sync mode")
+            public void testSync() throws IOException {
+
+                // prepare necessary directory structure
+                Files.createDirectories(ftpUtil.getFullLocalPath());
+
+                ftpUtil.setSync(true);
+
+                // first run downloads everything
+                ftpUtil.ConnectAndDownload();
+
+                // redirect standard output stream
+                final PrintStream standardOut = System.out;
+                final ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+                System.setOut(new PrintStream(outputStreamCaptor));
+
+                // second run has nothing to do
+                ftpUtil.ConnectAndDownload();
+
+                // restore standard output
+                System.setOut(standardOut);
+
+                assertAll(
+                        () -> assertTrue(outputStreamCaptor.toString().contains("Up to date:[" + fileOnePath + "]"))
+                        , () -> assertTrue(outputStreamCaptor.toString().contains
+                                ("up to date: 2 files, "
+                                        + (fileOneContent.length() + fileTwoContent.length()) + " bytes saved"))
+                        , () -> assertEquals(fileOneContent
+                                , Files.readString(ftpUtil.getFullLocalPath().resolve(fileOnePath)))
+                        // downloads are recorded for the next run
+                        , () -> assertEquals(2, Manifest.load(ftpUtil.getFullLocalPath()).size()));
+            }
+
+            @Test
+            @DisplayName("Then the remote tree is mirrored in recursive mode")
+            public void testRecursive() throws IOException {
+
+                // nested directories on the server
+                Path nestedFile = Path.of("nested", "deeper", "file_three.json");
+                fakeFtpServer.getFileSystem().add(new FileEntry
+                        (remoteBase.resolve(dataDir).resolve(nestedFile).toString(), fileTwoContent));
+
+                // prepare necessary directory structure
+                Files.createDirectories(ftpUtil.getFullLocalPath());
+
+                ftpUtil.setRecursive(true);
+                ftpUtil.setThreads(2);
+                ftpUtil.ConnectAndDownload();
+
+                assertAll(
+                        () -> assertEquals(fileOneContent
+                                , Files.readString(ftpUtil.getFullLocalPath().resolve(fileOnePath)))
+                        , () -> assertEquals(fileTwoContent
+                                , Files.readString(ftpUtil.getFullLocalPath().resolve(nestedFile))));
+            }
+
+            @Test
+            @DisplayName("Then the run is summarized in transfer metrics")
+            public void testMetrics() throws IOException {
+
+                // prepare necessary directory structure
+                Files.createDirectories(ftpUtil.getFullLocalPath());
+
+                ftpUtil.ConnectAndDownload();
+
+                TransferMetrics metrics = ftpUtil.getMetrics();
+
+                assertAll(
+                        () -> assertEquals(1, metrics.getSessions())
+                        , () -> assertEquals(1, metrics.getListings())
+                        , () -> assertEquals(2, metrics.getFilesCompleted())
+                        , () -> assertEquals(fileOneContent.length() + fileTwoContent.length(), metrics.getBytes())
+                        , () -> assertEquals(0, metrics.getFilesFailed()));
+            }
+
+            @Test
+            @DisplayName("Then we can download content of remote files through file channels")
+            public void testChannelDownload() throws IOException {
+
+                // prepare necessary directory structure
+                Files.createDirectories(ftpUtil.getFullLocalPath());
+
+                ftpUtil.setBufferSize(16);
+                ftpUtil.ConnectAndDownload();
+
+                assertAll(
+                        () -> assertEquals(fileOneContent
+                                , Files.readString(ftpUtil.getFullLocalPath().resolve(fileOnePath)))
+                        , () -> assertEquals(fileTwoContent
+                                , Files.readString(ftpUtil.getFullLocalPath().resolve(fileTwoPath))));
+            }
+
             @Test
             @DisplayName("Then it quits if the ftp server communications fails")
             public void testFTPError() throws IOException {
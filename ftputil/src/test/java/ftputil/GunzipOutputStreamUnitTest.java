@@ -0,0 +1,102 @@
+package ftputil;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GunzipOutputStreamUnitTest {
+
+    private final String content = "{\"id\":\"1\",\"approvedSymbol\":\"AAA\"}\n".repeat(1000);
+
+    @Test
+    @DisplayName("Test that gzip content is decompressed whatever the size of the writes")
+    public void testDecompress() throws IOException {
+        byte[] gzip = gzip(content);
+
+        for (int chunk : new int[]{1, 7, 4096, gzip.length}) {
+            var out = new ByteArrayOutputStream();
+            try (var gunzip = new GunzipOutputStream(out)) {
+                for (int i = 0; i < gzip.length; i += chunk) {
+                    gunzip.write(gzip, i, Math.min(chunk, gzip.length - i));
+                }
+            }
+
+            assertEquals(content, out.toString(StandardCharsets.UTF_8), "chunk " + chunk);
+        }
+    }
+
+    @Test
+    @DisplayName("Test that concatenated members are decompressed one after the other")
+    public void testMembers() throws IOException {
+        byte[] first = gzip("first\n");
+        byte[] second = gzip("second\n");
+
+        byte[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+
+        var out = new ByteArrayOutputStream();
+        try (var gunzip = new GunzipOutputStream(out)) {
+            gunzip.write(both);
+        }
+
+        assertEquals("first\nsecond\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Test that a header with a file name and comment is skipped")
+    public void testHeaderFields() throws IOException {
+        byte[] gzip = gzip(content);
+
+        // FNAME and FCOMMENT flags with their zero terminated values after the fixed header
+        byte[] name = "file.json\0a comment\0".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] withName = new byte[gzip.length + name.length];
+        System.arraycopy(gzip, 0, withName, 0, 10);
+        withName[3] = 8 | 16;
+        System.arraycopy(name, 0, withName, 10, name.length);
+        System.arraycopy(gzip, 10, withName, 10 + name.length, gzip.length - 10);
+
+        var out = new ByteArrayOutputStream();
+        try (var gunzip = new GunzipOutputStream(out)) {
+            gunzip.write(withName);
+        }
+
+        assertEquals(content, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Test that corrupt and truncated content is reported")
+    public void testCorrupt() throws IOException {
+        byte[] gzip = gzip(content);
+
+        // checksum in the trailer
+        byte[] corrupt = gzip.clone();
+        corrupt[corrupt.length - 8] ^= 1;
+
+        var crc = new GunzipOutputStream(new ByteArrayOutputStream());
+        assertThrows(ZipException.class, () -> crc.write(corrupt));
+
+        var notGzip = new GunzipOutputStream(new ByteArrayOutputStream());
+        assertThrows(ZipException.class, () -> notGzip.write(content.getBytes(StandardCharsets.UTF_8)));
+
+        var truncated = new GunzipOutputStream(new ByteArrayOutputStream());
+        truncated.write(gzip, 0, gzip.length / 2);
+        assertThrows(EOFException.class, truncated::close);
+    }
+
+    static byte[] gzip(String content) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+}
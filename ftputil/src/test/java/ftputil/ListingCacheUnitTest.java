@@ -0,0 +1,83 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ListingCacheUnitTest {
+
+    private static FTPFile file(String name) {
+        FTPFile file = new FTPFile();
+        file.setName(name);
+        file.setType(FTPFile.FILE_TYPE);
+        return file;
+    }
+
+    @Test
+    @DisplayName("Test that the least recently used listing makes room")
+    public void testEviction() {
+        var cache = new ListingCache(2, Duration.ofMinutes(1));
+
+        cache.put(Path.of("/one"), List.of(file("a")), null);
+        cache.put(Path.of("/two"), List.of(file("b")), null);
+        // used since, so the second one goes
+        cache.get(Path.of("/one"));
+        cache.put(Path.of("/three"), List.of(file("c")), null);
+
+        assertAll(
+                () -> assertEquals(2, cache.size())
+                , () -> assertNotNull(cache.get(Path.of("/one")))
+                , () -> assertNull(cache.get(Path.of("/two")))
+                , () -> assertNotNull(cache.get(Path.of("/three"))));
+    }
+
+    @Test
+    @DisplayName("Test invalidation of one and of every listing")
+    public void testInvalidate() {
+        var cache = new ListingCache();
+
+        cache.put(Path.of("/one"), List.of(file("a")), null);
+        cache.put(Path.of("/two"), List.of(file("b")), null);
+
+        cache.invalidate(Path.of("/one"));
+        assertNull(cache.get(Path.of("/one")));
+        assertNotNull(cache.get(Path.of("/two")));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Test that listings expire after the time to live and can be renewed")
+    public void testExpiry() {
+        var cache = new ListingCache(1, Duration.ZERO);
+        cache.put(Path.of("/one"), List.of(file("a")), "20220730123456");
+
+        ListingCache.Entry entry = cache.get(Path.of("/one"));
+        assertTrue(cache.isExpired(entry));
+        assertEquals("20220730123456", entry.getModified());
+
+        // renewed listings keep their files and directory time
+        cache.renew(Path.of("/one"), entry);
+        ListingCache.Entry renewed = cache.get(Path.of("/one"));
+        assertAll(
+                () -> assertNotSame(entry, renewed)
+                , () -> assertSame(entry.getFiles(), renewed.getFiles())
+                , () -> assertEquals("20220730123456", renewed.getModified())
+                , () -> assertEquals(1, cache.getRevalidations())
+                , () -> assertFalse(new ListingCache(1, Duration.ofMinutes(1)).isExpired(renewed)));
+    }
+
+    @Test
+    @DisplayName("Test that bad limits are rejected")
+    public void testBadLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new ListingCache(0, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> new ListingCache(1, Duration.ofSeconds(-1)));
+    }
+}
@@ -0,0 +1,422 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Calendar;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalOutputProviderUnitTest {
+
+    @TempDir
+    public Path localDir;
+
+    private final Path file = Path.of("file_one.json");
+    private final String content = "{\"id\":\"1\",\"approvedSymbol\":\"AAA\"}";
+
+    private LocalOutputProvider provider;
+    private FTPFile remote;
+
+    @BeforeEach
+    public void setUp() {
+        provider = new LocalOutputProvider(localDir);
+
+        // remote file as listed by the server
+        Calendar timestamp = Calendar.getInstance();
+        timestamp.setTimeInMillis(1_600_000_000_000L);
+
+        remote = new FTPFile();
+        remote.setName(file.toString());
+        remote.setType(FTPFile.FILE_TYPE);
+        remote.setSize(content.length());
+        remote.setTimestamp(timestamp);
+    }
+
+    @Test
+    @DisplayName("Test that a partial file is appended to when resuming")
+    public void testResume() throws IOException {
+
+        Files.writeString(localDir.resolve(file), content.substring(0, 10));
+
+        // nothing to resume unless asked to
+        assertEquals(0, provider.resumeOffset(file));
+
+        provider.setResume(true);
+        assertEquals(10, provider.resumeOffset(file));
+
+        try (var out = provider.open(file, 10)) {
+            out.write(content.substring(10).getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(content, Files.readString(localDir.resolve(file)));
+    }
+
+    @Test
+    @DisplayName("Test that files left unfinished by this provider can be continued")
+    public void testPartialResume() throws IOException {
+
+        try (var out = provider.open(file, 0)) {
+            out.write(content.substring(0, 10).getBytes(StandardCharsets.UTF_8));
+        }
+
+        // known to be a part of the remote file without the resume mode
+        assertEquals(10, provider.resumeOffset(file));
+
+        Files.writeString(localDir.resolve(file), content);
+        provider.completed(file, remote);
+
+        assertEquals(0, provider.resumeOffset(file));
+    }
+
+    @Test
+    @DisplayName("Test that discarded content is not resumed, even in resume mode")
+    public void testDiscard() throws IOException {
+
+        provider.setResume(true);
+        provider.setAtomic(true);
+
+        try (var out = provider.open(file, 0)) {
+            out.write(content.substring(0, 10).getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(10, provider.resumeOffset(file));
+
+        provider.discard(file);
+
+        assertAll(
+                () -> assertEquals(0, provider.resumeOffset(file))
+                , () -> assertFalse(Files.exists(localDir.resolve(file + LocalOutputProvider.PART_SUFFIX))));
+    }
+
+    @Test
+    @DisplayName("Test that a file is rewritten from the start with zero offset")
+    public void testOverwrite() throws IOException {
+
+        Files.writeString(localDir.resolve(file), "stale content of some length");
+
+        try (var out = provider.open(file, 0)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(content, Files.readString(localDir.resolve(file)));
+    }
+
+    @Test
+    @DisplayName("Test that files are written through file channels with a buffer size")
+    public void testChannelOutput() throws IOException {
+
+        Files.writeString(localDir.resolve(file), content.substring(0, 10));
+
+        provider.setBufferSize(64 * 1024);
+
+        try (var out = provider.open(file, 10)) {
+            assertTrue(out instanceof ChannelOutputStream);
+            out.write(content.substring(10).getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(content, Files.readString(localDir.resolve(file)));
+    }
+
+    @Test
+    @DisplayName("Test that ranges written in any order replace the file on commit")
+    public void testRanges() throws IOException {
+
+        Files.writeString(localDir.resolve(file), "stale content");
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Path part = localDir.resolve(file + LocalOutputProvider.PART_SUFFIX);
+
+        try (var out = provider.openRanges(file, bytes.length)) {
+            // the part file has its full size before any range is written
+            assertEquals(bytes.length, Files.size(part));
+
+            out.write(ByteBuffer.wrap(bytes, 10, bytes.length - 10), 10);
+            out.write(ByteBuffer.wrap(bytes, 0, 10), 0);
+
+            // the previous content is still in place until all ranges are there
+            assertEquals("stale content", Files.readString(localDir.resolve(file)));
+
+            out.commit();
+        }
+
+        assertAll(
+                () -> assertEquals(content, Files.readString(localDir.resolve(file)))
+                , () -> assertFalse(Files.exists(part)));
+    }
+
+    @Test
+    @DisplayName("Test that unfinished ranges are discarded")
+    public void testRangesDiscarded() throws IOException {
+
+        try (var out = provider.openRanges(file, content.length())) {
+            out.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8), 0, 10), 0);
+        }
+
+        assertAll(
+                () -> assertFalse(Files.exists(localDir.resolve(file)))
+                , () -> assertFalse(Files.exists(localDir.resolve(file + LocalOutputProvider.PART_SUFFIX))));
+    }
+
+    @Test
+    @DisplayName("Test that files appear under their name only once completed in atomic mode")
+    public void testAtomic() throws IOException {
+
+        provider.setAtomic(true);
+        provider.setChecksumAlgorithm(ChecksumAlgorithm.SHA_256);
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Path part = localDir.resolve(file + LocalOutputProvider.PART_SUFFIX);
+
+        try (var out = provider.open(file, 0, bytes.length)) {
+            // reserved at the expected size before any content arrives
+            assertEquals(bytes.length, Files.size(part));
+
+            out.write(bytes);
+        }
+
+        // verified before the file is moved into place
+        assertFalse(Files.exists(localDir.resolve(file)));
+        assertEquals(sha256(content), provider.checksum(file, ChecksumAlgorithm.SHA_256));
+
+        provider.completed(file, remote);
+
+        assertAll(
+                () -> assertEquals(content, Files.readString(localDir.resolve(file)))
+                , () -> assertFalse(Files.exists(part))
+                , () -> assertEquals(FileTime.fromMillis(1_600_000_000_000L)
+                        , Files.getLastModifiedTime(localDir.resolve(file))));
+    }
+
+    @Test
+    @DisplayName("Test that an unfinished part file is cut back to what was written and continued")
+    public void testAtomicResume() throws IOException {
+
+        provider.setAtomic(true);
+        provider.setBufferSize(64 * 1024);
+        provider.setForceInterval(4);
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Path part = localDir.resolve(file + LocalOutputProvider.PART_SUFFIX);
+
+        try (var out = provider.open(file, 0, bytes.length)) {
+            // the direct buffer path is kept
+            assertTrue(out instanceof ChannelOutputStream);
+            out.write(bytes, 0, 10);
+        }
+
+        assertAll(
+                () -> assertEquals(10, Files.size(part))
+                , () -> assertEquals(10, provider.resumeOffset(file)));
+
+        try (var out = provider.open(file, 10, bytes.length)) {
+            out.write(bytes, 10, bytes.length - 10);
+        }
+        provider.completed(file, remote);
+
+        assertEquals(content, Files.readString(localDir.resolve(file)));
+    }
+
+    @Test
+    @DisplayName("Test that ranges stay under their temporary name until completed in atomic mode")
+    public void testAtomicRanges() throws IOException {
+
+        provider.setAtomic(true);
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+        try (var out = provider.openRanges(file, bytes.length)) {
+            out.write(ByteBuffer.wrap(bytes), 0);
+            out.commit();
+        }
+
+        assertAll(
+                () -> assertFalse(Files.exists(localDir.resolve(file)))
+                , () -> assertEquals(sha256(content), provider.checksum(file, ChecksumAlgorithm.SHA_256)));
+
+        provider.completed(file, remote);
+
+        assertAll(
+                () -> assertEquals(content, Files.readString(localDir.resolve(file)))
+                , () -> assertFalse(Files.exists(localDir.resolve(file + LocalOutputProvider.PART_SUFFIX))));
+    }
+
+    @Test
+    @DisplayName("Test that the checksum is computed while the content is written")
+    public void testChecksum() throws IOException {
+
+        provider.setChecksumAlgorithm(ChecksumAlgorithm.SHA_256);
+
+        try (var out = provider.open(file, 0)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // the local file is not read again
+        Files.writeString(localDir.resolve(file), "changed afterwards");
+
+        assertEquals(sha256(content), provider.checksum(file, ChecksumAlgorithm.SHA_256));
+    }
+
+    @Test
+    @DisplayName("Test that the checksum of a resumed file covers the partial content")
+    public void testChecksumResume() throws IOException {
+
+        Files.writeString(localDir.resolve(file), content.substring(0, 10));
+
+        provider.setChecksumAlgorithm(ChecksumAlgorithm.SHA_256);
+        provider.setBufferSize(64 * 1024);
+
+        try (var out = provider.open(file, 10)) {
+            // the channel output is kept for the direct buffer path
+            assertTrue(out instanceof ChannelOutputStream);
+            ((ChannelOutputStream) out).write(ByteBuffer.wrap(content.substring(10).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        assertEquals(sha256(content), provider.checksum(file, ChecksumAlgorithm.SHA_256));
+    }
+
+    @Test
+    @DisplayName("Test that the checksum of a file written in ranges is computed from the file")
+    public void testChecksumRanges() throws IOException {
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+        try (var out = provider.openRanges(file, bytes.length)) {
+            out.write(ByteBuffer.wrap(bytes), 0);
+            out.commit();
+        }
+
+        assertEquals(sha256(content), provider.checksum(file, ChecksumAlgorithm.SHA_256));
+    }
+
+    private static String sha256(String content) {
+        try {
+            return ChecksumAlgorithm.toHex(MessageDigest.getInstance("SHA-256")
+                    .digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    @Test
+    @DisplayName("Test that a completed file gets the remote modification time")
+    public void testCompleted() throws IOException {
+
+        Files.writeString(localDir.resolve(file), content);
+
+        provider.completed(file, remote);
+
+        assertEquals(FileTime.fromMillis(1_600_000_000_000L)
+                , Files.getLastModifiedTime(localDir.resolve(file)));
+    }
+
+    @Test
+    @DisplayName("Test sync decisions by size and modification time")
+    public void testUpToDate() throws IOException {
+
+        Path local = localDir.resolve(file);
+        Files.writeString(local, content);
+        provider.completed(file, remote);
+
+        // nothing is skipped unless asked to
+        assertFalse(provider.isUpToDate(file, remote));
+
+        provider.setSync(true);
+        assertTrue(provider.isUpToDate(file, remote));
+
+        // modified on the server since the download
+        remote.getTimestamp().add(Calendar.MINUTE, 1);
+        assertFalse(provider.isUpToDate(file, remote));
+        remote.getTimestamp().add(Calendar.MINUTE, -1);
+
+        // different size
+        remote.setSize(content.length() + 1);
+        assertFalse(provider.isUpToDate(file, remote));
+
+        // only the skipped file is accounted for
+        assertAll(
+                () -> assertEquals(1, provider.getUpToDateFiles())
+                , () -> assertEquals(content.length(), provider.getUpToDateBytes()));
+    }
+
+    @Test
+    @DisplayName("Test that completed downloads are recorded in the manifest with their checksum")
+    public void testManifestRecord() throws IOException {
+
+        Manifest manifest = Manifest.load(localDir);
+        provider.setManifest(manifest);
+
+        try (var out = provider.open(file, 0)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        provider.completed(file, remote);
+
+        CRC32C expected = new CRC32C();
+        expected.update(content.getBytes(StandardCharsets.UTF_8));
+
+        Manifest.Entry entry = manifest.get(file.toString());
+
+        assertAll(
+                () -> assertEquals(content.length(), entry.getSize())
+                , () -> assertEquals(1_600_000_000_000L, entry.getModified())
+                , () -> assertEquals(expected.getValue(), entry.getChecksum()));
+    }
+
+    @Test
+    @DisplayName("Test that the checksum of a resumed file covers the partial content")
+    public void testManifestResume() throws IOException {
+
+        Files.writeString(localDir.resolve(file), content.substring(0, 10));
+
+        Manifest manifest = Manifest.load(localDir);
+        provider.setManifest(manifest);
+
+        try (var out = provider.open(file, 10)) {
+            out.write(content.substring(10).getBytes(StandardCharsets.UTF_8));
+        }
+        provider.completed(file, remote);
+
+        CRC32C expected = new CRC32C();
+        expected.update(content.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(expected.getValue(), manifest.get(file.toString()).getChecksum());
+    }
+
+    @Test
+    @DisplayName("Test that sync decisions use the manifest instead of local files")
+    public void testManifestUpToDate() {
+
+        Manifest manifest = Manifest.empty(localDir);
+        manifest.put(file.toString(), new Manifest.Entry
+                (content.length(), 1_600_000_000_000L, 0, System.currentTimeMillis()));
+
+        provider.setManifest(manifest);
+        provider.setSync(true);
+
+        // no local file is needed
+        assertTrue(provider.isUpToDate(file, remote));
+
+        // modified on the server since the download
+        remote.getTimestamp().add(Calendar.MINUTE, 1);
+        assertFalse(provider.isUpToDate(file, remote));
+    }
+
+    @Test
+    @DisplayName("Test that a missing local file is never up to date")
+    public void testMissingFile() {
+        provider.setSync(true);
+
+        assertFalse(provider.isUpToDate(file, remote));
+    }
+}
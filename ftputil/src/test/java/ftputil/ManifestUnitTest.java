@@ -0,0 +1,61 @@
+package ftputil;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManifestUnitTest {
+
+    @TempDir
+    public Path localDir;
+
+    @Test
+    @DisplayName("Test that a missing manifest loads empty")
+    public void testMissing() throws IOException {
+
+        Manifest manifest = Manifest.load(localDir);
+
+        assertAll(
+                () -> assertEquals(0, manifest.size())
+                , () -> assertNull(manifest.get("file_one.json"))
+                , () -> assertEquals(localDir.resolve(Manifest.FILE_NAME), manifest.getFile()));
+    }
+
+    @Test
+    @DisplayName("Test that saved entries are loaded back")
+    public void testRoundTrip() throws IOException {
+
+        Manifest manifest = Manifest.load(localDir);
+        manifest.put("file_one.json", new Manifest.Entry(33, 1_600_000_000_000L, 0xCAFEL, 1_700_000_000_000L));
+        manifest.put("sub/file_two.json", new Manifest.Entry(44, -1, 0xBEEFL, 1_700_000_000_001L));
+        manifest.save();
+
+        Manifest loaded = Manifest.load(localDir);
+        Manifest.Entry entry = loaded.get("file_one.json");
+
+        assertAll(
+                () -> assertEquals(2, loaded.size())
+                , () -> assertEquals(33, entry.getSize())
+                , () -> assertEquals(1_600_000_000_000L, entry.getModified())
+                , () -> assertEquals(0xCAFEL, entry.getChecksum())
+                , () -> assertEquals(1_700_000_000_000L, entry.getDownloaded())
+                , () -> assertEquals(-1, loaded.get("sub/file_two.json").getModified())
+                // no temporary file is left behind
+                , () -> assertFalse(Files.exists(localDir.resolve(Manifest.FILE_NAME + ".tmp"))));
+    }
+
+    @Test
+    @DisplayName("Test that a manifest in an unknown format is refused")
+    public void testUnknownFormat() throws IOException {
+
+        Files.writeString(localDir.resolve(Manifest.FILE_NAME), "not a manifest");
+
+        assertThrows(IOException.class, () -> Manifest.load(localDir));
+    }
+}
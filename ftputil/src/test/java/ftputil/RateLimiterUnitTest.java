@@ -0,0 +1,148 @@
+package ftputil;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterUnitTest {
+
+    @Test
+    @DisplayName("Test parsing of rates with unit suffixes")
+    public void testParseRate() {
+        assertAll(
+                () -> assertEquals(1000, RateLimiter.parseRate("1000"))
+                , () -> assertEquals(512 * 1024, RateLimiter.parseRate("512k"))
+                , () -> assertEquals(10L * 1024 * 1024, RateLimiter.parseRate("10M"))
+                , () -> assertEquals(2L * 1024 * 1024 * 1024, RateLimiter.parseRate("2G"))
+                , () -> assertThrows(IllegalArgumentException.class, () -> RateLimiter.parseRate("-1"))
+                , () -> assertThrows(IllegalArgumentException.class, () -> RateLimiter.parseRate("fast")));
+    }
+
+    @Test
+    @DisplayName("Test that transfers are held to the rate")
+    public void testRate() throws IOException {
+
+        RateLimiter limiter = new RateLimiter(10 * 1024 * 1024, Duration.ZERO);
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(1024 * 1024);
+        }
+        long millis = (System.nanoTime() - started) / 1_000_000;
+
+        // five tenths of a second worth of bytes
+        assertTrue(millis >= 450, "took " + millis + " ms");
+        assertTrue(limiter.getThrottledMillis() >= 450);
+    }
+
+    @Test
+    @DisplayName("Test that the rate is shared by parallel transfers")
+    public void testSharedRate() throws Exception {
+
+        RateLimiter limiter = new RateLimiter(10 * 1024 * 1024, Duration.ZERO);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> transfers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                transfers.add(executor.submit(() -> {
+                    for (int chunk = 0; chunk < 8; chunk++) {
+                        limiter.acquire(128 * 1024);
+                    }
+                    return null;
+                }));
+            }
+            for (var transfer : transfers) {
+                transfer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long millis = (System.nanoTime() - started) / 1_000_000;
+
+        // four MiB together at ten MiB per second
+        assertTrue(millis >= 350, "took " + millis + " ms");
+    }
+
+    @Test
+    @DisplayName("Test that an idle limiter lets a burst through and zero means unlimited")
+    public void testBurstAndUnlimited() throws IOException {
+
+        RateLimiter limiter = new RateLimiter(1024 * 1024, Duration.ofSeconds(1));
+
+        long started = System.nanoTime();
+        limiter.acquire(512 * 1024);
+        limiter.setRate(0);
+        limiter.acquire(Long.MAX_VALUE / 2);
+
+        assertTrue((System.nanoTime() - started) / 1_000_000 < 200);
+        assertEquals(0, limiter.getThrottledMillis());
+    }
+
+    @Test
+    @DisplayName("Test that the schedule sets the rate for the time of day")
+    public void testSchedule() {
+
+        RateLimiter limiter = new RateLimiter(1000);
+        limiter.setSchedule(RateSchedule.parse("08:00-18:00=1K,22:00-06:00=0"));
+
+        limiter.setClock(clockAt("12:00"));
+        assertEquals(1024, limiter.getEffectiveRate());
+
+        limiter.setClock(clockAt("23:30"));
+        assertEquals(0, limiter.getEffectiveRate());
+
+        limiter.setClock(clockAt("19:00"));
+        assertEquals(1000, limiter.getEffectiveRate());
+    }
+
+    @Test
+    @DisplayName("Test parsing of bad schedules")
+    public void testBadSchedule() {
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> RateSchedule.parse("08:00=1M"))
+                , () -> assertThrows(IllegalArgumentException.class, () -> RateSchedule.parse("8am-6pm=1M"))
+                , () -> assertThrows(IllegalArgumentException.class, () -> RateSchedule.parse("08:00-18:00=lots")));
+    }
+
+    @Test
+    @DisplayName("Test that limited output keeps writing through file channels")
+    public void testLimitedOutput(@TempDir Path localDir) throws IOException {
+
+        var provider = new LocalOutputProvider(localDir);
+        provider.setBufferSize(1024);
+
+        var limited = new RateLimitedOutputProvider(provider, new RateLimiter(1024 * 1024));
+        byte[] content = "{\"id\":\"1\",\"approvedSymbol\":\"AAA\"}".getBytes(StandardCharsets.UTF_8);
+
+        try (var out = limited.open(Path.of("file.json"), 0)) {
+            assertTrue(out instanceof ChannelOutputStream);
+            ((ChannelOutputStream) out).write(ByteBuffer.wrap(content));
+        }
+
+        assertArrayEquals(content, Files.readAllBytes(localDir.resolve("file.json")));
+    }
+
+    private static Clock clockAt(String time) {
+        return Clock.fixed(Instant.parse("2024-01-01T" + LocalTime.parse(time) + ":00Z"), ZoneOffset.UTC);
+    }
+}
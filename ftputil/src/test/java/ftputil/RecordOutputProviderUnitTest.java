@@ -0,0 +1,135 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordOutputProviderUnitTest {
+
+    private final Path file = Path.of("part-0001.json");
+    private final String content = "{\"id\":\"1\",\"approvedSymbol\":\"\u00c4\u00c4\u00c4\"}\r\n"
+            + "\n"
+            + "{\"id\":\"2\",\"approvedSymbol\":\"BBB\"}\n"
+            + "{\"id\":\"3\",\"approvedSymbol\":\"CCC\"}";
+
+    @Test
+    @DisplayName("Test that lines are split whatever the size of the writes")
+    public void testLines() throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+        for (int chunk : new int[]{1, 5, bytes.length}) {
+            List<String> lines = new ArrayList<>();
+            var copy = new ByteArrayOutputStream();
+
+            try (var out = new LineOutputStream(copy, lines::addAll)) {
+                for (int i = 0; i < bytes.length; i += chunk) {
+                    out.write(bytes, i, Math.min(chunk, bytes.length - i));
+                }
+                out.finish();
+            }
+
+            assertAll(
+                    () -> assertEquals(List.of("{\"id\":\"1\",\"approvedSymbol\":\"\u00c4\u00c4\u00c4\"}"
+                            , "{\"id\":\"2\",\"approvedSymbol\":\"BBB\"}"
+                            , "{\"id\":\"3\",\"approvedSymbol\":\"CCC\"}"), lines, "chunk " + chunk)
+                    , () -> assertArrayEquals(bytes, copy.toByteArray()));
+        }
+    }
+
+    @Test
+    @DisplayName("Test that records reach the consumer thread and the file is kept")
+    public void testRecords(@TempDir Path localDir) throws IOException {
+        List<String> events = new ArrayList<>();
+
+        var consumer = new RecordConsumer() {
+            @Override
+            public void accept(Path file, String record) {
+                events.add(record.substring(0, 9));
+            }
+
+            @Override
+            public void fileStarted(Path file) {
+                events.add("started " + file);
+            }
+
+            @Override
+            public void fileCompleted(Path file, long records) {
+                events.add("completed " + file + " " + records);
+            }
+        };
+
+        FTPFile remote = new FTPFile();
+        remote.setName(file.toString());
+
+        try (var provider = new RecordOutputProvider(consumer, new LocalOutputProvider(localDir), 4)) {
+            // nothing to resume, the consumer has to see every record
+            assertEquals(0, provider.resumeOffset(file));
+
+            try (var out = provider.open(file, 0)) {
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+            provider.completed(file, remote);
+        }
+
+        assertAll(
+                () -> assertEquals(List.of("started part-0001.json"
+                        , "{\"id\":\"1\"", "{\"id\":\"2\"", "{\"id\":\"3\""
+                        , "completed part-0001.json 3"), events)
+                , () -> assertEquals(content, Files.readString(localDir.resolve(file))));
+    }
+
+    @Test
+    @DisplayName("Test that the unterminated last line of a failed transfer is dropped")
+    public void testAbortedLastLine() throws IOException {
+        List<String> records = new ArrayList<>();
+
+        try (var provider = new RecordOutputProvider((file, record) -> records.add(record))) {
+            // the transfer fails in the middle of the third record
+            try (var out = provider.open(file, 0)) {
+                out.write(content.substring(0, content.length() - 5).getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(2, records.size());
+
+            // the retry delivers every record and completes the file
+            records.clear();
+            try (var out = provider.open(file, 0)) {
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(2, records.size());
+
+            provider.completed(file, new FTPFile());
+        }
+
+        assertEquals("{\"id\":\"3\",\"approvedSymbol\":\"CCC\"}", records.get(2));
+    }
+
+    @Test
+    @DisplayName("Test that a failing consumer fails the transfer")
+    public void testConsumerFailure() throws IOException {
+        var provider = new RecordOutputProvider((file, record) -> {
+            throw new IllegalStateException("Database is down");
+        }, null, 4);
+
+        var out = provider.open(file, 0);
+        out.write("{}\n".getBytes(StandardCharsets.UTF_8));
+
+        // the consumer thread fails on the first record
+        var ex = assertThrows(IllegalStateException.class, () -> {
+            provider.close();
+        });
+        assertEquals("Database is down", ex.getMessage());
+
+        assertThrows(IllegalStateException.class, () -> out.write("{}\n".getBytes(StandardCharsets.UTF_8)));
+    }
+}
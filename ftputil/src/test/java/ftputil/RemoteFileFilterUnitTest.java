@@ -0,0 +1,88 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Calendar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RemoteFileFilterUnitTest {
+
+    private final Path dir = Path.of("/pub/data");
+
+    @Test
+    @DisplayName("Test glob and regex patterns on names and remote paths")
+    public void testPatterns() {
+        var filter = new RemoteFileFilter()
+                .include("part-000[1-3].json")
+                .include("regex:.*/sub/.*\\.csv")
+                .exclude("*-0002.json");
+
+        assertAll(
+                () -> assertTrue(filter.accepts(dir, file("part-0001.json", 10)))
+                , () -> assertFalse(filter.accepts(dir, file("part-0002.json", 10)))
+                , () -> assertFalse(filter.accepts(dir, file("part-0004.json", 10)))
+                , () -> assertTrue(filter.accepts(dir.resolve("sub"), file("table.csv", 10)))
+                , () -> assertFalse(filter.accepts(dir, file("table.csv", 10))));
+    }
+
+    @Test
+    @DisplayName("Test that only excluded directories are left out")
+    public void testDirectories() {
+        var filter = new RemoteFileFilter()
+                .include("*.json")
+                .exclude("tmp");
+
+        FTPFile sub = file("sub", 0);
+        sub.setType(FTPFile.DIRECTORY_TYPE);
+        FTPFile tmp = file("tmp", 0);
+        tmp.setType(FTPFile.DIRECTORY_TYPE);
+
+        assertAll(
+                () -> assertTrue(filter.accepts(dir, sub))
+                , () -> assertFalse(filter.accepts(dir, tmp)));
+    }
+
+    @Test
+    @DisplayName("Test size and modification time bounds")
+    public void testBounds() {
+        var filter = new RemoteFileFilter()
+                .minSize(10)
+                .maxSize(100)
+                .modifiedAfter(Instant.ofEpochMilli(1_600_000_000_000L))
+                .modifiedBefore(Instant.ofEpochMilli(1_700_000_000_000L));
+
+        FTPFile old = file("old.json", 50);
+        old.getTimestamp().setTimeInMillis(1_500_000_000_000L);
+        FTPFile recent = file("recent.json", 50);
+        recent.getTimestamp().setTimeInMillis(1_700_000_000_000L);
+
+        // no size in the listing
+        FTPFile unknown = file("unknown.json", -1);
+
+        assertAll(
+                () -> assertTrue(filter.accepts(dir, file("fits.json", 50)))
+                , () -> assertFalse(filter.accepts(dir, file("small.json", 9)))
+                , () -> assertFalse(filter.accepts(dir, file("large.json", 101)))
+                , () -> assertFalse(filter.accepts(dir, old))
+                , () -> assertFalse(filter.accepts(dir, recent))
+                , () -> assertTrue(filter.accepts(dir, unknown))
+                , () -> assertFalse(filter.accepts(dir, null)));
+    }
+
+    private static FTPFile file(String name, long size) {
+        Calendar timestamp = Calendar.getInstance();
+        timestamp.setTimeInMillis(1_650_000_000_000L);
+
+        FTPFile file = new FTPFile();
+        file.setName(name);
+        file.setType(FTPFile.FILE_TYPE);
+        file.setSize(size);
+        file.setTimestamp(timestamp);
+        return file;
+    }
+}
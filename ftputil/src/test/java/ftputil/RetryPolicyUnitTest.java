@@ -0,0 +1,48 @@
+package ftputil;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetryPolicyUnitTest {
+
+    @Test
+    @DisplayName("Test that the backoff doubles up to the maximum without jitter")
+    public void testBackoff() {
+
+        RetryPolicy policy = new RetryPolicy(5, Duration.ofMillis(100), Duration.ofMillis(300), 0);
+
+        assertAll(
+                () -> assertEquals(Duration.ofMillis(100), policy.backoff(1))
+                , () -> assertEquals(Duration.ofMillis(200), policy.backoff(2))
+                , () -> assertEquals(Duration.ofMillis(300), policy.backoff(3))
+                , () -> assertEquals(Duration.ofMillis(300), policy.backoff(40)));
+    }
+
+    @Test
+    @DisplayName("Test that jitter only shortens the backoff")
+    public void testJitter() {
+
+        RetryPolicy policy = new RetryPolicy(5, Duration.ofMillis(1000), Duration.ofMillis(1000), 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.backoff(1).toMillis();
+            assertTrue(delay >= 500 && delay <= 1000, () -> "Unexpected backoff: " + delay);
+        }
+    }
+
+    @Test
+    @DisplayName("Test that bad settings are refused")
+    public void testBadSettings() {
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class
+                        , () -> new RetryPolicy(0, Duration.ZERO, Duration.ZERO, 0))
+                , () -> assertThrows(IllegalArgumentException.class
+                        , () -> new RetryPolicy(1, Duration.ofSeconds(2), Duration.ofSeconds(1), 0))
+                , () -> assertThrows(IllegalArgumentException.class
+                        , () -> new RetryPolicy(1, Duration.ZERO, Duration.ZERO, 1.5)));
+    }
+}
@@ -0,0 +1,73 @@
+package ftputil;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransferMetricsUnitTest {
+
+    private final Path file = Path.of("file_one.json");
+
+    @Test
+    @DisplayName("Test that events are aggregated into counters and averages")
+    public void testAggregation() {
+
+        TransferMetrics metrics = new TransferMetrics();
+
+        metrics.sessionOpened(URI.create("localhost"), 2_000_000, 4_000_000);
+        metrics.sessionOpened(URI.create("localhost"), 4_000_000, 6_000_000);
+        metrics.listed(Path.of("/remote/path"), 10, 3_000_000);
+        metrics.firstByte(file, 1_000_000);
+        metrics.firstByte(file, 3_000_000);
+        metrics.fileCompleted(file, 100, 5_000_000);
+        metrics.fileCompleted(file, 200, 5_000_000);
+        metrics.fileSkipped(file, "Up to date");
+        metrics.fileRetried(file, "Resume refused, downloading from the start");
+        metrics.fileFailed(file, "550 Failed to open file.");
+
+        assertAll(
+                () -> assertEquals(2, metrics.getSessions())
+                , () -> assertEquals(3.0, metrics.getAverageConnectMillis())
+                , () -> assertEquals(5.0, metrics.getAverageLoginMillis())
+                , () -> assertEquals(1, metrics.getListings())
+                , () -> assertEquals(10, metrics.getListedEntries())
+                , () -> assertEquals(3.0, metrics.getAverageListMillis())
+                , () -> assertEquals(2.0, metrics.getAverageFirstByteMillis())
+                , () -> assertEquals(3.0, metrics.getMaxFirstByteMillis())
+                , () -> assertEquals(2, metrics.getFilesCompleted())
+                , () -> assertEquals(300, metrics.getBytes())
+                , () -> assertEquals(1, metrics.getFilesSkipped())
+                , () -> assertEquals(1, metrics.getRetries())
+                , () -> assertEquals(1, metrics.getFilesFailed())
+                , () -> assertTrue(metrics.getBytesPerSecond() > 0));
+    }
+
+    @Test
+    @DisplayName("Test that metrics can be read over JMX while registered")
+    public void testJmx() throws JMException {
+
+        TransferMetrics metrics = new TransferMetrics();
+        metrics.fileCompleted(file, 100, 5_000_000);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("ftputil:type=TransferMetrics,name=" + ObjectName.quote("/remote/path"));
+
+        metrics.register("/remote/path");
+        try {
+            assertEquals(100L, server.getAttribute(name, "Bytes"));
+            assertEquals(1L, server.getAttribute(name, "FilesCompleted"));
+        } finally {
+            metrics.unregister();
+        }
+
+        assertFalse(server.isRegistered(name));
+    }
+}
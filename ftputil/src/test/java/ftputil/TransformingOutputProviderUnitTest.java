@@ -0,0 +1,121 @@
+package ftputil;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Calendar;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransformingOutputProviderUnitTest {
+
+    @TempDir
+    public Path localDir;
+
+    private final Path file = Path.of("part-0001.json.gz");
+    private final String content = "{\"id\":\"1\",\"approvedSymbol\":\"AAA\"}\n".repeat(100);
+
+    private LocalOutputProvider local;
+    private FTPFile remote;
+    private byte[] gzip;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        local = new LocalOutputProvider(localDir);
+        gzip = GunzipOutputStreamUnitTest.gzip(content);
+
+        Calendar timestamp = Calendar.getInstance();
+        timestamp.setTimeInMillis(1_600_000_000_000L);
+
+        remote = new FTPFile();
+        remote.setName(file.toString());
+        remote.setType(FTPFile.FILE_TYPE);
+        remote.setSize(gzip.length);
+        remote.setTimestamp(timestamp);
+    }
+
+    @Test
+    @DisplayName("Test that .gz files land decompressed under their name without the extension")
+    public void testGunzip() throws IOException {
+        var provider = new TransformingOutputProvider(local, OutputTransform.gunzip());
+
+        try (var out = provider.open(file, 0)) {
+            out.write(gzip);
+        }
+        provider.completed(file, remote);
+
+        assertAll(
+                () -> assertEquals(content, Files.readString(localDir.resolve("part-0001.json")))
+                , () -> assertFalse(Files.exists(localDir.resolve(file))));
+    }
+
+    @Test
+    @DisplayName("Test that transformed files are neither resumed nor written in ranges")
+    public void testNoResumeOrRanges() throws IOException {
+        local.setResume(true);
+        Files.writeString(localDir.resolve("part-0001.json"), content.substring(0, 10));
+        Files.write(localDir.resolve("other.json"), new byte[10]);
+
+        var provider = new TransformingOutputProvider(local, OutputTransform.gunzip());
+
+        assertAll(
+                () -> assertEquals(0, provider.resumeOffset(file))
+                , () -> assertNull(provider.openRanges(file, gzip.length))
+                // other files are left to the local provider
+                , () -> assertEquals(10, provider.resumeOffset(Path.of("other.json"))));
+    }
+
+    @Test
+    @DisplayName("Test that the checksum covers the content as the server has it")
+    public void testChecksum() throws IOException, NoSuchAlgorithmException {
+        var provider = new TransformingOutputProvider(local, OutputTransform.gunzip());
+        provider.setChecksumAlgorithm(ChecksumAlgorithm.SHA_256);
+
+        try (var out = provider.open(file, 0)) {
+            out.write(gzip);
+        }
+
+        assertEquals(ChecksumAlgorithm.toHex(MessageDigest.getInstance("SHA-256").digest(gzip))
+                , provider.checksum(file, ChecksumAlgorithm.SHA_256));
+    }
+
+    @Test
+    @DisplayName("Test that sync decisions use the manifest entry of the local name")
+    public void testUpToDate() throws IOException {
+        local.setManifest(Manifest.empty(localDir));
+        local.setSync(true);
+
+        var provider = new TransformingOutputProvider(local, OutputTransform.gunzip());
+
+        try (var out = provider.open(file, 0)) {
+            out.write(gzip);
+        }
+        provider.completed(file, remote);
+
+        assertTrue(provider.isUpToDate(file, remote));
+    }
+
+    @Test
+    @DisplayName("Test that plain files are compressed into .gz files")
+    public void testGzip() throws IOException {
+        var provider = new TransformingOutputProvider(local, OutputTransform.gzip(1));
+
+        try (var out = provider.open(Path.of("file.json"), 0)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (var in = new GZIPInputStream(Files.newInputStream(localDir.resolve("file.json.gz")))) {
+            assertEquals(content, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}